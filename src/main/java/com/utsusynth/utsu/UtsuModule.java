@@ -7,6 +7,7 @@ import com.google.inject.*;
 import com.utsusynth.utsu.common.StatusBar;
 import com.utsusynth.utsu.common.data.EnvelopeData;
 import com.utsusynth.utsu.common.data.PitchbendData;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
 import com.utsusynth.utsu.common.i18n.Localizer;
 import com.utsusynth.utsu.common.i18n.NativeLocale;
 import com.utsusynth.utsu.common.quantize.DiscreteScaler;
@@ -15,7 +16,9 @@ import com.utsusynth.utsu.common.quantize.Scaler;
 import com.utsusynth.utsu.controller.common.IconManager;
 import com.utsusynth.utsu.engine.*;
 import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
-import com.utsusynth.utsu.engine.resampler.Resampler;
+import com.utsusynth.utsu.engine.common.RenderScheduler;
+import com.utsusynth.utsu.engine.resampler.ResamplerConverter;
+import com.utsusynth.utsu.engine.resampler.UtsuResampler;
 import com.utsusynth.utsu.engine.wavtool.UtsuWavtool;
 import com.utsusynth.utsu.engine.wavtool.Wavtool;
 import com.utsusynth.utsu.engine.wavtool.WavtoolConverter;
@@ -75,6 +78,8 @@ public class UtsuModule extends AbstractModule {
         bind(FileNameFixer.class).asEagerSingleton();
         bind(IconManager.class).asEagerSingleton();
         bind(VoicebankReader.class).asEagerSingleton();
+        bind(SampleBufferPool.class).asEagerSingleton();
+        bind(UtsuResampler.class).asEagerSingleton();
         bind(ReclistConverterMap.class).asEagerSingleton();
         bind(Scaler.class).to(DiscreteScaler.class);
         bind(Wavtool.class).to(UtsuWavtool.class);
@@ -150,6 +155,7 @@ public class UtsuModule extends AbstractModule {
         defaultBuilder.put("showVoicebankBody", "true");
         defaultBuilder.put("locale", "en");
         defaultBuilder.put("cache", PreferencesManager.CacheMode.ENABLED.name());
+        defaultBuilder.put("streaming", PreferencesManager.StreamingMode.ENABLED.name());
         defaultBuilder.put("resampler", assetManager.getResamplerFile().getAbsolutePath());
         defaultBuilder.put("wavtool", "Default");
         defaultBuilder.put("voicebank", assetManager.getVoicePath().getAbsolutePath());
@@ -211,34 +217,57 @@ public class UtsuModule extends AbstractModule {
 
     @Provides
     private Engine provideEngine(
-            Resampler resampler,
+            ResamplerConverter resamplerConverter,
             WavtoolConverter wavtoolConverter,
             StatusBar statusBar,
+            RenderScheduler renderScheduler,
+            ExternalProcessRunner processRunner,
             CacheManager cacheManager,
-            PreferencesManager preferencesManager) {
-        // Engine is not a singleton--each instance has its own thread pool.
+            PreferencesManager preferencesManager,
+            SoundFileReader soundFileReader) {
         return new Engine(
-                resampler,
+                resamplerConverter,
                 wavtoolConverter,
                 statusBar,
-                /* threadPoolSize= */ 10,
+                renderScheduler,
+                processRunner,
                 cacheManager,
-                preferencesManager);
+                preferencesManager,
+                soundFileReader);
     }
 
     @Provides
-    private UtsuWavtool provideUtsuWavtool(
-            StatusBar statusBar, SoundFileReader soundFileReader, SoundFileWriter soundFileWriter) {
-        // UtsuWavtool is not a singleton--each instance has its own thread pool.
-        return new UtsuWavtool(
-                statusBar, /* threadPoolSize= */ 10, soundFileReader, soundFileWriter);
+    @Singleton
+    private RenderScheduler provideRenderScheduler() {
+        // Shared by every render, so that renders started at the same time take turns.
+        return new RenderScheduler(
+                /* numThreads= */ Runtime.getRuntime().availableProcessors());
+    }
+
+    @Provides
+    @Singleton
+    private ExternalProcessRunner provideExternalProcessRunner() {
+        // Shared by everything that runs external tools, so that they don't oversubscribe the CPU.
+        return new ExternalProcessRunner(
+                /* maxProcesses= */ Runtime.getRuntime().availableProcessors());
     }
 
     @Provides
     @Singleton
     private FrqGenerator provideFrqGenerator(
-            ExternalProcessRunner runner, FileNameFixer fileNameFixer, AssetManager assetManager) {
-        return new FrqGenerator(runner, fileNameFixer, assetManager, 256);
+            ExternalProcessRunner runner,
+            RenderScheduler scheduler,
+            FileNameFixer fileNameFixer,
+            SoundFileReader soundFileReader,
+            AssetManager assetManager) {
+        return new FrqGenerator(
+                runner,
+                scheduler,
+                fileNameFixer,
+                soundFileReader,
+                new SoundFileWriter(),
+                assetManager,
+                256);
     }
 
     @Provides
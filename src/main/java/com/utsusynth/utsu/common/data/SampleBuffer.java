@@ -0,0 +1,49 @@
+package com.utsusynth.utsu.common.data;
+
+/**
+ * Mono samples in the range [-1, 1], backed by a float array that may be reused once the buffer
+ * is released.
+ */
+public class SampleBuffer {
+    private final float[] samples;
+    private final SampleBufferPool pool; // Pool to return the array to, if any.
+    private int length = 0;
+    private double sampleRate = 44100;
+
+    SampleBuffer(float[] samples, SampleBufferPool pool) {
+        this.samples = samples;
+        this.pool = pool;
+    }
+
+    /** The backing array, which may be longer than the number of valid samples. */
+    public float[] getSamples() {
+        return samples;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = Math.min(length, samples.length);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public double getLengthMs() {
+        return length * 1000.0 / sampleRate;
+    }
+
+    /** Gives the backing array back to its pool. The buffer should not be used afterwards. */
+    public void release() {
+        if (pool != null) {
+            pool.release(samples);
+        }
+    }
+}
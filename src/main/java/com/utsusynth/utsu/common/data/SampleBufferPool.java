@@ -0,0 +1,61 @@
+package com.utsusynth.utsu.common.data;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Thread-safe pool of sample arrays, grouped by power-of-two capacity so that arrays from
+ * similarly-sized notes can be reused.
+ */
+public class SampleBufferPool {
+    private static final int MIN_BUCKET = 10; // Smallest array holds 1024 samples.
+    private static final int MAX_BUCKET = 20; // Larger arrays are never pooled.
+    private static final int MAX_ARRAYS_PER_BUCKET = 16;
+
+    private final ConcurrentLinkedQueue<float[]>[] buckets;
+    private final AtomicIntegerArray bucketSizes;
+
+    @SuppressWarnings("unchecked")
+    public SampleBufferPool() {
+        buckets = new ConcurrentLinkedQueue[MAX_BUCKET + 1];
+        for (int i = MIN_BUCKET; i <= MAX_BUCKET; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        bucketSizes = new AtomicIntegerArray(MAX_BUCKET + 1);
+    }
+
+    /**
+     * Returns an empty buffer that can hold at least minSamples samples. The backing array may
+     * contain stale data beyond the buffer's length.
+     */
+    public SampleBuffer acquire(int minSamples) {
+        int bucket = getBucket(minSamples);
+        if (bucket > MAX_BUCKET) {
+            return new SampleBuffer(new float[minSamples], null);
+        }
+        float[] samples = buckets[bucket].poll();
+        if (samples == null) {
+            samples = new float[1 << bucket];
+        } else {
+            bucketSizes.decrementAndGet(bucket);
+        }
+        return new SampleBuffer(samples, this);
+    }
+
+    void release(float[] samples) {
+        int bucket = getBucket(samples.length);
+        if (bucket > MAX_BUCKET || samples.length != 1 << bucket) {
+            return; // Not created by this pool.
+        }
+        if (bucketSizes.incrementAndGet(bucket) <= MAX_ARRAYS_PER_BUCKET) {
+            buckets[bucket].offer(samples);
+        } else {
+            bucketSizes.decrementAndGet(bucket);
+        }
+    }
+
+    private static int getBucket(int numSamples) {
+        int bucket = 32 - Integer.numberOfLeadingZeros(Math.max(numSamples, 1) - 1);
+        return Math.max(MIN_BUCKET, bucket);
+    }
+}
@@ -1,11 +1,11 @@
 package com.utsusynth.utsu.common.data;
 
-/** Data for a single wav file. */
+/** Data for a single wav file, as mono samples in the range [-1, 1]. */
 public class WavData {
     private final double lengthMs;
-    private final double[] samples;
+    private final float[] samples; // Floats are precise enough for audio, at half the size.
 
-    public WavData(double lengthMs, double[] samples) {
+    public WavData(double lengthMs, float[] samples) {
         this.lengthMs = lengthMs;
         this.samples = samples;
     }
@@ -14,7 +14,7 @@ public class WavData {
         return lengthMs;
     }
 
-    public double[] getSamples() {
+    public float[] getSamples() {
         return samples;
     }
 
@@ -0,0 +1,104 @@
+package com.utsusynth.utsu.common.utils;
+
+/**
+ * Iterative, in-place FFT for real signals of one fixed size. Twiddle factors, bit-reversal order
+ * and the hamming window are computed once, and each thread reuses its own scratch space, so
+ * transforms allocate nothing. Safe to share between threads.
+ */
+public class RealFFT {
+    private final int size; // Number of real samples per transform. Must be a power of 2.
+    private final int halfSize; // Size of the complex FFT the real samples are packed into.
+    private final double[] cos; // cos(2πk / size) for k in [0, halfSize).
+    private final double[] sin; // sin(2πk / size) for k in [0, halfSize).
+    private final int[] bitReversed;
+    private final double[] hammingWindow;
+    private final ThreadLocal<double[][]> workspaces;
+
+    public RealFFT(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2: " + size);
+        }
+        this.size = size;
+        this.halfSize = size / 2;
+        cos = new double[halfSize];
+        sin = new double[halfSize];
+        for (int k = 0; k < halfSize; k++) {
+            cos[k] = Math.cos(2 * Math.PI * k / size);
+            sin[k] = Math.sin(2 * Math.PI * k / size);
+        }
+        bitReversed = new int[halfSize];
+        int numBits = Integer.numberOfTrailingZeros(halfSize);
+        for (int i = 0; i < halfSize; i++) {
+            bitReversed[i] = numBits == 0 ? 0 : Integer.reverse(i) >>> (32 - numBits);
+        }
+        hammingWindow = new double[size];
+        for (int i = 0; i < size; i++) {
+            hammingWindow[i] = 0.54 - (0.46 * Math.cos(2.0 * i * Math.PI / size));
+        }
+        workspaces = ThreadLocal.withInitial(() -> new double[][] {
+                new double[halfSize], new double[halfSize]});
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Applies a hamming window to size samples of a signal and writes the magnitude of each
+     * frequency bin of its FFT.
+     *
+     * @param magnitudes Filled with size / 2 + 1 magnitudes, from 0 Hz to the Nyquist frequency.
+     */
+    public void windowedMagnitudes(float[] signal, int startIndex, double[] magnitudes) {
+        double[][] workspace = workspaces.get();
+        double[] real = workspace[0];
+        double[] imaginary = workspace[1];
+
+        // Pack even samples into the real part and odd samples into the imaginary part.
+        for (int i = 0; i < halfSize; i++) {
+            int j = bitReversed[i];
+            real[j] = signal[startIndex + 2 * i] * hammingWindow[2 * i];
+            imaginary[j] = signal[startIndex + 2 * i + 1] * hammingWindow[2 * i + 1];
+        }
+        transform(real, imaginary);
+
+        // Separate the transforms of the even and odd samples and combine them.
+        magnitudes[0] = Math.abs(real[0] + imaginary[0]);
+        magnitudes[halfSize] = Math.abs(real[0] - imaginary[0]);
+        for (int k = 1; k < halfSize; k++) {
+            int mirror = halfSize - k;
+            double evenReal = (real[k] + real[mirror]) / 2;
+            double evenImaginary = (imaginary[k] - imaginary[mirror]) / 2;
+            double oddReal = (imaginary[k] + imaginary[mirror]) / 2;
+            double oddImaginary = -(real[k] - real[mirror]) / 2;
+            double resultReal = evenReal + cos[k] * oddReal + sin[k] * oddImaginary;
+            double resultImaginary = evenImaginary + cos[k] * oddImaginary - sin[k] * oddReal;
+            magnitudes[k] =
+                    Math.sqrt(resultReal * resultReal + resultImaginary * resultImaginary);
+        }
+    }
+
+    // Radix-2 complex FFT of halfSize values that are already in bit-reversed order.
+    private void transform(double[] real, double[] imaginary) {
+        for (int length = 2; length <= halfSize; length *= 2) {
+            int halfLength = length / 2;
+            int twiddleStep = size / length;
+            for (int start = 0; start < halfSize; start += length) {
+                for (int i = 0; i < halfLength; i++) {
+                    double twiddleReal = cos[i * twiddleStep];
+                    double twiddleImaginary = -sin[i * twiddleStep];
+                    int even = start + i;
+                    int odd = even + halfLength;
+                    double oddReal =
+                            real[odd] * twiddleReal - imaginary[odd] * twiddleImaginary;
+                    double oddImaginary =
+                            real[odd] * twiddleImaginary + imaginary[odd] * twiddleReal;
+                    real[odd] = real[even] - oddReal;
+                    imaginary[odd] = imaginary[even] - oddImaginary;
+                    real[even] += oddReal;
+                    imaginary[even] += oddImaginary;
+                }
+            }
+        }
+    }
+}
@@ -6,17 +6,27 @@ import org.apache.commons.io.FileUtils;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.nodes.*;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class UtsuFileUtils {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    // Number of bytes read from the start of a file to guess its charset.
+    private static final int CHARSET_SNIFF_BYTES = 64 * 1024;
+    private static final char BYTE_ORDER_MARK = '\uFEFF';
 
     public static String guessCharset(byte[] bytes) {
         CharsetDecoder utf8Decoder =
@@ -30,6 +40,52 @@ public class UtsuFileUtils {
         return "UTF-8";
     }
 
+    /**
+     * Guesses the charset of a file from its first few bytes only. Files that look like UTF-8 at
+     * the start can still have invalid bytes later on, which {@link #openConfigFile} reports.
+     */
+    public static String guessCharset(File file) throws IOException {
+        byte[] prefix = new byte[CHARSET_SNIFF_BYTES];
+        int length;
+        try (InputStream input = new FileInputStream(file)) {
+            length = input.readNBytes(prefix, 0, prefix.length);
+        }
+        CharsetDecoder utf8Decoder =
+                StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // If the file continues past the prefix, a character cut off at the end isn't an error.
+        CoderResult result = utf8Decoder.decode(
+                ByteBuffer.wrap(prefix, 0, length),
+                CharBuffer.allocate(length),
+                length < prefix.length);
+        if (result.isError()) {
+            return "SJIS";
+        }
+        return "UTF-8";
+    }
+
+    /**
+     * Opens a text file to be read line by line, without a leading byte order mark. If the charset
+     * is UTF-8, invalid bytes throw a {@link CharacterCodingException} while reading.
+     */
+    public static BufferedReader openConfigFile(File file, String charset) throws IOException {
+        CharsetDecoder decoder = Charset.forName(charset).newDecoder();
+        if (charset.equals("UTF-8")) {
+            decoder.onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+        } else {
+            decoder.onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(new FileInputStream(file), decoder));
+        reader.mark(1);
+        if (reader.read() != BYTE_ORDER_MARK) {
+            reader.reset();
+        }
+        return reader;
+    }
+
     public static String readConfigFile(File file) {
         if (!file.canRead() || !file.isFile()) {
             // This is often okay.
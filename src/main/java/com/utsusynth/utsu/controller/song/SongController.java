@@ -29,6 +29,7 @@ import com.utsusynth.utsu.files.ThemeManager;
 import com.utsusynth.utsu.files.song.*;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
 import com.utsusynth.utsu.model.song.NoteIterator;
+import com.utsusynth.utsu.model.song.Song;
 import com.utsusynth.utsu.model.song.SongContainer;
 import com.utsusynth.utsu.model.song.converters.ReclistConverter;
 import com.utsusynth.utsu.view.song.Piano;
@@ -36,7 +37,6 @@ import com.utsusynth.utsu.view.song.SongCallback;
 import com.utsusynth.utsu.view.song.SongEditor;
 import com.utsusynth.utsu.view.song.track.TrackItemSet;
 import javafx.animation.PauseTransition;
-import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.concurrent.Task;
@@ -469,7 +469,8 @@ public class SongController implements EditorController, Localizable {
 
         // Reloads current song.
         anchorCenter.getChildren().clear();
-        anchorCenter.getChildren().addAll(noteTrack, voicebankPortrait);
+        anchorCenter.getChildren().addAll(
+                noteTrack, songEditor.getPlaybackElement(), voicebankPortrait);
         anchorBottom.getChildren().clear();
         anchorBottom.getChildren().add(dynamicsTrack);
     }
@@ -590,7 +591,7 @@ public class SongController implements EditorController, Localizable {
 
     @Override
     public void onThemeChanged() {
-        // No manual theme handling needed for songs right now.
+        songEditor.onThemeChanged();
     }
 
     @Override
@@ -717,14 +718,15 @@ public class SongController implements EditorController, Localizable {
         String charset = saveFormat.contains("Shift JIS") ? "SJIS" : "UTF-8";
         File saveLocation = song.getLocation();
         statusBar.setText("Saving...");
+        Song songToSave = song.get().snapshot(); // Can keep editing while this is written.
         Task<Void> fileWriteTask = new Task<>() {
             @Override
             protected Void call() throws Exception {
                 PrintStream ps = new PrintStream(saveLocation, charset);
                 if (saveFormat.contains("UST 1.2")) {
-                    ust12Writer.writeSong(song.get(), ps);
+                    ust12Writer.writeSong(songToSave, ps);
                 } else {
-                    ust20Writer.writeSong(song.get(), ps, charset);
+                    ust20Writer.writeSong(songToSave, ps, charset);
                 }
                 ps.flush();
                 ps.close();
@@ -779,14 +781,15 @@ public class SongController implements EditorController, Localizable {
         }
         ExtensionFilter chosenFormat = fc.getSelectedExtensionFilter();
         String charset = chosenFormat.getDescription().contains("Shift JIS") ? "SJIS" : "UTF-8";
+        Song songToSave = song.get().snapshot(); // Can keep editing while this is written.
         Task<Void> fileWriteTask = new Task<>() {
             @Override
             protected Void call() throws FileNotFoundException, UnsupportedEncodingException {
                 PrintStream ps = new PrintStream(file, charset);
                 if (chosenFormat.getDescription().contains("UST 1.2")) {
-                    ust12Writer.writeSong(song.get(), ps);
+                    ust12Writer.writeSong(songToSave, ps);
                 } else {
-                    ust20Writer.writeSong(song.get(), ps, charset);
+                    ust20Writer.writeSong(songToSave, ps, charset);
                 }
                 ps.flush();
                 ps.close();
@@ -917,7 +920,10 @@ public class SongController implements EditorController, Localizable {
         RegionBounds regionToPlay = songEditor.getPlayableTrack();
 
         Function<Duration, Void> startPlaybackFn = duration -> {
-            songEditor.startPlayback(regionToPlay, duration);
+            songEditor.startPlayback(regionToPlay, duration, engine::getPlaybackPositionMs);
+            // A streamed render is still going at this point, but it can already be paused.
+            iconManager.setPauseIcon(playPauseIcon);
+            playPauseIcon.setDisable(false);
             return null;
         };
         Runnable endPlaybackFn = () -> {
@@ -928,25 +934,34 @@ public class SongController implements EditorController, Localizable {
         playPauseIcon.setDisable(true);
 
         statusBar.setText("Rendering...");
+        Song songToPlay = song.get().snapshot(); // Can keep editing while this is rendered.
         Task<Boolean> renderTask = new Task<>() {
 
             @Override
             protected Boolean call() {
                 return engine.startPlayback(
-                        song.get(), regionToPlay, startPlaybackFn, endPlaybackFn);
+                        songToPlay, regionToPlay, startPlaybackFn, endPlaybackFn);
             }
 
             @Override
             protected void succeeded() {
                 super.succeeded();
                 if (getValue()) {
-                    iconManager.setPauseIcon(playPauseIcon);
                     statusBar.setText("Render complete.");
                 } else {
                     statusBar.setText("Render produced no output.");
                 }
                 playPauseIcon.setDisable(false);
             }
+
+            @Override
+            protected void failed() {
+                super.failed();
+                statusBar.setText("Error: Unable to render song.");
+                errorLogger.logError(getException());
+                iconManager.setPlayIcon(playPauseIcon);
+                playPauseIcon.setDisable(false);
+            }
         };
         new Thread(renderTask).start();
     }
@@ -979,10 +994,11 @@ public class SongController implements EditorController, Localizable {
             return;
         }
         statusBar.setText("Exporting...");
+        Song songToExport = song.get().snapshot(); // Can keep editing while this is rendered.
         Task<Boolean> renderWavTask = new Task<>() {
             @Override
             protected Boolean call() throws Exception {
-                return engine.renderWav(song.get(), file);
+                return engine.renderWav(songToExport, file);
             }
 
             @Override
@@ -1273,15 +1289,22 @@ public class SongController implements EditorController, Localizable {
                                             voicebankReader.getDefaultPresampConfig().getReader());
                             statusBar.setText("Converting...");
                             StringBuilder result = new StringBuilder("Converted: ");
+                            // Convert a copy of the song, then apply the result all at once.
+                            Song converted = song.get().snapshot();
+                            List<NoteData> oldNotes = converted.getNotes(regionToUpdate);
                             Task<String> convertReclistTask = new Task<>() {
+                                List<NoteData> newNotes;
+
                                 @Override
                                 protected String call() {
                                     for (ReclistConverter converter : path) {
-                                        List<NoteContextData> oldNotes =
-                                                song.get().getNotesInContext(regionToUpdate);
-                                        List<NoteData> newNotes =
-                                                converter.apply(oldNotes, voicebankData);
-                                        updateNotes(song.get().getNotes(regionToUpdate), newNotes);
+                                        List<NoteData> convertedNotes = converter.apply(
+                                                converted.getNotesInContext(regionToUpdate),
+                                                voicebankData);
+                                        replaceNotes(
+                                                converted,
+                                                converted.getNotes(regionToUpdate),
+                                                convertedNotes);
                                         result.append(converter.getFrom());
                                         result.append("->");
                                         result.append(converter.getTo());
@@ -1290,17 +1313,23 @@ public class SongController implements EditorController, Localizable {
                                     if (!path.isEmpty()) {
                                         result.deleteCharAt(result.length() - 1); // Delete comma.
                                     }
+                                    newNotes = converted.getNotes(regionToUpdate);
                                     return result.toString();
                                 }
 
                                 @Override
                                 protected void succeeded() {
                                     super.succeeded();
-                                    if (!path.isEmpty()) {
-                                        onSongChange();
-                                        refreshView();
-                                        statusBar.setText(getValue());
+                                    if (path.isEmpty()) {
+                                        return;
                                     }
+                                    if (converted.isStale()) {
+                                        statusBar.setText(
+                                                "Error: Song changed while converting.");
+                                        return;
+                                    }
+                                    updateNotes(oldNotes, newNotes);
+                                    statusBar.setText(getValue());
                                 }
                             };
                             new Thread(convertReclistTask).start();
@@ -1333,52 +1362,46 @@ public class SongController implements EditorController, Localizable {
                 newNotes.stream().sorted(noteComparator).collect(Collectors.toList());
 
         Runnable redoAction = () -> {
-            MutateResponse removeResponse = song.get().removeNotes(
-                    sortedOldNotes.stream().map(NoteData::getPosition).collect(Collectors.toSet()));
-            song.get().addNotes(sortedNewNotes);
-
-            // Standardize all impacted notes.
-            int newMinPos = sortedNewNotes.get(0).getPosition();
-            int minPos = removeResponse.getPrev()
-                    .map(prev -> Math.min(prev.getPosition(), newMinPos)).orElse(newMinPos);
-            int newMaxPos = sortedNewNotes.get(sortedNewNotes.size() - 1).getPosition();
-            int maxPos = removeResponse.getNext()
-                    .map(next -> Math.max(next.getPosition(), newMaxPos)).orElse(newMaxPos);
-            song.get().standardizeNotes(minPos, maxPos);
-
-            // If run from a separate thread, leave refreshing the view for later.
-            if (Platform.isFxApplicationThread()) {
-                onSongChange();
-                refreshView();
-            }
+            replaceSortedNotes(song.get(), sortedOldNotes, sortedNewNotes);
+            onSongChange();
+            refreshView();
         };
         Runnable undoAction = () -> {
-            MutateResponse removeResponse = song.get().removeNotes(
-                    sortedNewNotes.stream().map(NoteData::getPosition).collect(Collectors.toSet()));
-            song.get().addNotes(sortedOldNotes);
-
-            // Standardize all impacted notes.
-            int newMinPos = sortedOldNotes.get(0).getPosition();
-            int minPos = removeResponse.getPrev()
-                    .map(prev -> Math.min(prev.getPosition(), newMinPos)).orElse(newMinPos);
-            int newMaxPos = sortedOldNotes.get(sortedOldNotes.size() - 1).getPosition();
-            int maxPos = removeResponse.getNext()
-                    .map(next -> Math.max(next.getPosition(), newMaxPos)).orElse(newMaxPos);
-            song.get().standardizeNotes(minPos, maxPos);
-
-            // If run from a separate thread, leave refreshing th
-            if (Platform.isFxApplicationThread()) {
-                onSongChange();
-                refreshView();
-            }
+            replaceSortedNotes(song.get(), sortedNewNotes, sortedOldNotes);
+            onSongChange();
+            refreshView();
         };
         // Apply changes and save redo/undo for these changes.
         redoAction.run();
-        if (Platform.isFxApplicationThread()) {
-            undoService.setMostRecentAction(redoAction, undoAction);
-        } else {
-            Platform.runLater(() -> undoService.setMostRecentAction(redoAction, undoAction));
+        undoService.setMostRecentAction(redoAction, undoAction);
+    }
+
+    /** Replaces notes in a song without touching the view, so it can be used on any thread. */
+    private void replaceNotes(Song target, List<NoteData> oldNotes, List<NoteData> newNotes) {
+        if (newNotes.isEmpty()) {
+            return;
         }
+        Comparator<NoteData> noteComparator = Comparator.comparingInt(NoteData::getPosition);
+        replaceSortedNotes(
+                target,
+                oldNotes.stream().sorted(noteComparator).collect(Collectors.toList()),
+                newNotes.stream().sorted(noteComparator).collect(Collectors.toList()));
+    }
+
+    private void replaceSortedNotes(
+            Song target, List<NoteData> sortedOldNotes, List<NoteData> sortedNewNotes) {
+        MutateResponse removeResponse = target.removeNotes(
+                sortedOldNotes.stream().map(NoteData::getPosition).collect(Collectors.toSet()));
+        target.addNotes(sortedNewNotes);
+
+        // Standardize all impacted notes.
+        int newMinPos = sortedNewNotes.get(0).getPosition();
+        int minPos = removeResponse.getPrev()
+                .map(prev -> Math.min(prev.getPosition(), newMinPos)).orElse(newMinPos);
+        int newMaxPos = sortedNewNotes.get(sortedNewNotes.size() - 1).getPosition();
+        int maxPos = removeResponse.getNext()
+                .map(next -> Math.max(next.getPosition(), newMaxPos)).orElse(newMaxPos);
+        target.standardizeNotes(minPos, maxPos);
     }
 
     @Override
@@ -6,6 +6,8 @@ import com.utsusynth.utsu.common.i18n.Localizable;
 import com.utsusynth.utsu.common.i18n.Localizer;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.engine.Engine;
+import com.utsusynth.utsu.engine.resampler.Resampler;
+import com.utsusynth.utsu.engine.resampler.ResamplerConverter;
 import com.utsusynth.utsu.engine.wavtool.Wavtool;
 import com.utsusynth.utsu.engine.wavtool.WavtoolConverter;
 import com.utsusynth.utsu.files.PreferencesManager;
@@ -43,12 +45,13 @@ public class SongPropertiesController implements Localizable {
     private final Localizer localizer;
     private final VoicebankContainer voicebankContainer;
     private final PreferencesManager preferencesManager;
+    private final ResamplerConverter resamplerConverter;
     private final WavtoolConverter wavtoolConverter;
     private final Preferences utsuPreferences;
 
     private SongContainer songContainer;
     private Engine engine;
-    private File resamplerPath;
+    private Resampler resampler;
     private Wavtool wavtool;
     // private Optional<File> instrumentalPath;
     private Runnable onSongChange; // Call when applying properties.
@@ -78,7 +81,7 @@ public class SongPropertiesController implements Localizable {
     private Label resamplerLabel; // Value injected by FXMLLoader
 
     @FXML // fx:id="resamplerChoiceBox"
-    private ChoiceBox<File> resamplerChoiceBox; // Value injected by FXMLLoader
+    private ChoiceBox<Resampler> resamplerChoiceBox; // Value injected by FXMLLoader
 
     @FXML // fx:id="importResamplerButton"
     private Button importResamplerButton; // Value injected by FXMLLoader
@@ -130,10 +133,12 @@ public class SongPropertiesController implements Localizable {
             Localizer localizer,
             VoicebankContainer voicebankContainer,
             PreferencesManager preferencesManager,
+            ResamplerConverter resamplerConverter,
             WavtoolConverter wavtoolConverter) {
         this.localizer = localizer;
         this.voicebankContainer = voicebankContainer;
         this.preferencesManager = preferencesManager;
+        this.resamplerConverter = resamplerConverter;
         this.wavtoolConverter = wavtoolConverter;
         utsuPreferences = Preferences.userRoot().node("utsu");
     }
@@ -160,21 +165,10 @@ public class SongPropertiesController implements Localizable {
         // instrumentalName.setText(instrumentalPath.orElse(new File("")).getName());
 
         // Set choice boxes.
-        resamplerChoiceBox.setConverter(new StringConverter<>() {
-            @Override
-            public String toString(File file) {
-                return file == null ? "" : file.getName();
-            }
-
-            @Override
-            public File fromString(String s) {
-                return null; // Never used.
-            }
-        });
-        resamplerChoiceBox.setItems(
-                FXCollections.observableArrayList(getFileList(RESAMPLER_CATEGORY)));
-        resamplerChoiceBox.getItems().add(0, preferencesManager.getResamplerDefault());
-        resamplerChoiceBox.setValue(engine.getResamplerPath());
+        ArrayList<File> allResamplerFiles = getFileList(RESAMPLER_CATEGORY);
+        ImmutableList<Resampler> allResamplers = createResamplerList(allResamplerFiles);
+        resamplerChoiceBox.setItems(FXCollections.observableArrayList(allResamplers));
+        resamplerChoiceBox.setValue(engine.getResampler());
         ArrayList<File> allWavtoolFiles = getFileList(WAVTOOL_CATEGORY);
         ImmutableList<Wavtool> allWavtools = createWavtoolList(allWavtoolFiles);
         wavtoolChoiceBox.setItems(FXCollections.observableArrayList(allWavtools));
@@ -289,12 +283,25 @@ public class SongPropertiesController implements Localizable {
                 new ExtensionFilter("All Files", "*.*"));
         File file = fc.showOpenDialog(null);
         if (file != null) {
-            resamplerPath = file;
+            resampler = resamplerConverter.fromString(file.getAbsolutePath());
             ArrayList<File> allResamplerFiles = updateFileList(RESAMPLER_CATEGORY, file);
-            resamplerChoiceBox.setItems(FXCollections.observableArrayList(allResamplerFiles));
-            resamplerChoiceBox.getItems().add(0, preferencesManager.getResamplerDefault());
-            resamplerChoiceBox.setValue(resamplerPath);
+            ImmutableList<Resampler> allResamplers = createResamplerList(allResamplerFiles);
+            resamplerChoiceBox.setItems(FXCollections.observableList(allResamplers));
+            resamplerChoiceBox.setValue(resampler);
+        }
+    }
+
+    private ImmutableList<Resampler> createResamplerList(List<File> resamplerFiles) {
+        List<Resampler> externalResamplers = resamplerFiles.stream()
+                .map(file -> resamplerConverter.fromString(file.getAbsolutePath()))
+                .collect(Collectors.toList());
+        ImmutableList.Builder<Resampler> builder = ImmutableList.<Resampler>builder()
+                .add(resamplerConverter.fromString(preferencesManager.getResamplerDefault()));
+        Resampler builtInResampler = resamplerConverter.getBuiltInResampler();
+        if (!preferencesManager.getResamplerDefault().equals(builtInResampler.toString())) {
+            builder.add(builtInResampler);
         }
+        return builder.addAll(externalResamplers).build();
     }
 
     @FXML
@@ -373,7 +380,8 @@ public class SongPropertiesController implements Localizable {
         Task<Void> applyPropertiesTask = new Task<>() {
             @Override
             protected Void call() throws Exception {
-                boolean shouldClearCache = !engine.getResamplerPath().equals(resamplerPath)
+                boolean shouldClearCache = !resamplerConverter.toString(engine.getResampler())
+                        .equals(resamplerConverter.toString(resamplerChoiceBox.getValue()))
                         || !songContainer.get().getFlags().equals(flagsTF.getText())
                         || !songContainer.get().getVoiceDir().equals(voicebankContainer.getLocation());
                 songContainer.setSong(
@@ -384,7 +392,7 @@ public class SongPropertiesController implements Localizable {
                                 .setTempo(RoundUtils.round(tempoSlider.getValue()))
                                 //.setInstrumental(instrumentalPath)
                                 .build());
-                engine.setResamplerPath(resamplerChoiceBox.getValue());
+                engine.setResampler(resamplerChoiceBox.getValue());
                 engine.setWavtool(wavtoolChoiceBox.getValue());
                 if (shouldClearCache) {
                     // Should only be called after song changes are applied.
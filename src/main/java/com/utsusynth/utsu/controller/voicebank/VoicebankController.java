@@ -185,7 +185,7 @@ public class VoicebankController implements EditorController, Localizable {
                 Task<Void> generateFrqsTask = new Task<>() {
                     @Override
                     protected Void call() {
-                        voicebank.get().generateFrqs(lyricIterator);
+                        voicebank.get().generateFrqs(lyricIterator, Platform::runLater);
                         return null;
                     }
 
@@ -324,6 +324,7 @@ public class VoicebankController implements EditorController, Localizable {
 
     @Override
     public void closeEditor() {
+        voicebank.get().cancelFrqGeneration();
         // Remove this voicebank from memory, forcing songs using it to reload.
         if (openForEdit) {
             voicebank.removeVoicebankForEdit();
@@ -360,6 +361,7 @@ public class VoicebankController implements EditorController, Localizable {
 
     @Override
     public void onThemeChanged() {
+        configEditor.redrawWaveform();
         configEditor.redrawSpectrogram();
     }
 
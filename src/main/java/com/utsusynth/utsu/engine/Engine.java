@@ -4,20 +4,31 @@ import com.google.common.base.Function;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 import com.utsusynth.utsu.common.StatusBar;
 import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.common.data.SampleBuffer;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.quantize.Quantizer;
 import com.utsusynth.utsu.common.utils.PitchUtils;
+import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
+import com.utsusynth.utsu.engine.common.RenderJob;
+import com.utsusynth.utsu.engine.common.RenderScheduler;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import com.utsusynth.utsu.engine.playback.SampleRingBuffer;
+import com.utsusynth.utsu.engine.playback.StreamingPlayer;
 import com.utsusynth.utsu.engine.resampler.Resampler;
+import com.utsusynth.utsu.engine.resampler.ResamplerConverter;
 import com.utsusynth.utsu.engine.wavtool.Wavtool;
 import com.utsusynth.utsu.engine.wavtool.WavtoolConverter;
 import com.utsusynth.utsu.files.CacheManager;
 import com.utsusynth.utsu.files.PreferencesManager;
 import com.utsusynth.utsu.files.PreferencesManager.CacheMode;
+import com.utsusynth.utsu.files.PreferencesManager.StreamingMode;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
 import com.utsusynth.utsu.model.song.Note;
 import com.utsusynth.utsu.model.song.NoteIterator;
 import com.utsusynth.utsu.model.song.Song;
 import com.utsusynth.utsu.model.voicebank.LyricConfig;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
+import javafx.application.Platform;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
 import javafx.scene.media.MediaPlayer.Status;
@@ -32,47 +43,44 @@ import java.util.concurrent.*;
 
 public class Engine {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int STREAM_BUFFER_SAMPLES = 44100 * 4; // 4 seconds of audio.
+    private static final double STREAM_PREBUFFER_MS = 250;
 
     public enum PlaybackStatus {
         PLAYING, PAUSED, STOPPED,
     }
 
     private final StatusBar statusBar;
-    private final int threadPoolSize;
+    private final RenderScheduler renderScheduler;
+    private final ExternalProcessRunner processRunner;
     private final CacheManager cacheManager;
     private final PreferencesManager preferencesManager;
+    private final SoundFileReader soundFileReader;
     private Resampler resampler;
     private Wavtool wavtool;
-    private File resamplerPath;
 
     private MediaPlayer instrumentalPlayer; // Used for background music.
     private MediaPlayer mediaPlayer; // Used for audio playback.
+    private StreamingPlayer streamingPlayer; // Used for audio playback while rendering.
+    private RenderJob playbackRender; // Canceled if playback is started again before it finishes.
 
     public Engine(
-            Resampler resampler,
+            ResamplerConverter resamplerConverter,
             WavtoolConverter wavtoolConverter,
             StatusBar statusBar,
-            int threadPoolSize,
+            RenderScheduler renderScheduler,
+            ExternalProcessRunner processRunner,
             CacheManager cacheManager,
-            PreferencesManager preferencesManager) {
+            PreferencesManager preferencesManager,
+            SoundFileReader soundFileReader) {
         this.statusBar = statusBar;
-        this.threadPoolSize = threadPoolSize;
+        this.renderScheduler = renderScheduler;
+        this.processRunner = processRunner;
         this.cacheManager = cacheManager;
         this.preferencesManager = preferencesManager;
-        this.resampler = resampler;
+        this.soundFileReader = soundFileReader;
+        resampler = resamplerConverter.fromString(preferencesManager.getResampler());
         wavtool = wavtoolConverter.fromString(preferencesManager.getWavtool());
-        resamplerPath = preferencesManager.getResampler();
-    }
-
-    public File getResamplerPath() {
-        if (resamplerPath != null) {
-            return resamplerPath;
-        }
-        return preferencesManager.getResampler();
-    }
-
-    public void setResamplerPath(File resamplerPath) {
-        this.resamplerPath = resamplerPath;
     }
 
     public Resampler getResampler() {
@@ -97,7 +105,8 @@ public class Engine {
      * @return Whether or not there is any sound to export.
      */
     public boolean renderWav(Song song, File finalDestination) {
-        Optional<File> finalSong = render(song, RegionBounds.WHOLE_SONG);
+        Optional<File> finalSong = render(
+                song, RegionBounds.WHOLE_SONG, Optional.empty(), Priority.EXPORT);
         if (finalSong.isPresent()) {
             try {
                 FileUtils.copyFile(finalSong.get(), finalDestination);
@@ -119,8 +128,11 @@ public class Engine {
             Function<Duration, Void> startCallback,
             Runnable endCallback) {
         stopPlayback(); // Clear existing playback, if present.
+        if (canStream(song, bounds)) {
+            return startStreamingPlayback(song, bounds, startCallback, endCallback);
+        }
         long start = System.currentTimeMillis();
-        Optional<File> finalSong = render(song, bounds);
+        Optional<File> finalSong = render(song, bounds, Optional.empty(), Priority.PLAYBACK);
         long time = System.currentTimeMillis() - start;
         System.out.println("Rendering took " + (time / 1000.0) + " seconds.");
         if (finalSong.isPresent() && finalSong.get().canRead()) {
@@ -150,7 +162,75 @@ public class Engine {
         return finalSong.isPresent();
     }
 
+    /**
+     * Plays a region of a song while it is being rendered, starting as soon as the first few
+     * notes are ready.
+     */
+    private boolean startStreamingPlayback(
+            Song song,
+            RegionBounds bounds,
+            Function<Duration, Void> startCallback,
+            Runnable endCallback) {
+        final MediaPlayer instrumental = song.getInstrumental().isPresent()
+                ? new MediaPlayer(new Media(song.getInstrumental().get().toURI().toString()))
+                : null;
+        StreamingPlayer player = new StreamingPlayer(
+                new SampleRingBuffer(STREAM_BUFFER_SAMPLES),
+                STREAM_PREBUFFER_MS,
+                lengthMs -> Platform.runLater(() -> {
+                    if (instrumental != null) {
+                        instrumental.play();
+                    }
+                    startCallback.apply(Duration.millis(lengthMs));
+                }),
+                () -> Platform.runLater(() -> {
+                    endCallback.run();
+                    if (instrumental != null) {
+                        instrumental.stop();
+                        instrumental.dispose();
+                    }
+                }));
+        streamingPlayer = player;
+        instrumentalPlayer = instrumental;
+        long start = System.currentTimeMillis();
+        Optional<File> finalSong =
+                render(song, bounds, Optional.of(player), Priority.PLAYBACK);
+        long time = System.currentTimeMillis() - start;
+        System.out.println("Rendering took " + (time / 1000.0) + " seconds.");
+        if (finalSong.isEmpty()) {
+            player.stop();
+        }
+        return finalSong.isPresent();
+    }
+
+    // Whether a region can be streamed, rather than rendered to a file before playback.
+    private boolean canStream(Song song, RegionBounds bounds) {
+        if (!preferencesManager.getStreaming().equals(StreamingMode.ENABLED)
+                || !wavtool.supportsStreaming()) {
+            return false;
+        }
+        if (preferencesManager.getCache().equals(CacheMode.DISABLED)) {
+            return true;
+        }
+        // A cached render can be played immediately without streaming, and a render that reuses
+        // most of the previous one is ready almost as quickly.
+        boolean hasCachedRender = bounds.equals(song.getCacheRegion())
+                && song.getCacheFile().isPresent()
+                && song.getCacheFile().get().exists();
+        return !hasCachedRender
+                && !canReusePreviousMix(bounds.getMinMs() * 125.0 / song.getTempo());
+    }
+
+    // Whether only the edited parts of the previous render need to be mixed again.
+    private boolean canReusePreviousMix(double startDelta) {
+        return preferencesManager.getCache().equals(CacheMode.ENABLED)
+                && wavtool.hasReusableRender(startDelta);
+    }
+
     public void pausePlayback() {
+        if (streamingPlayer != null) {
+            streamingPlayer.pause();
+        }
         if (mediaPlayer != null) {
             mediaPlayer.pause();
         }
@@ -160,6 +240,9 @@ public class Engine {
     }
 
     public void resumePlayback() {
+        if (streamingPlayer != null) {
+            streamingPlayer.resume();
+        }
         if (mediaPlayer != null) {
             mediaPlayer.play();
         }
@@ -169,12 +252,19 @@ public class Engine {
     }
 
     public void stopPlayback() {
+        if (streamingPlayer != null) {
+            streamingPlayer.stop();
+            streamingPlayer = null;
+        }
         if (mediaPlayer != null) {
             mediaPlayer.stop();
         }
     }
 
     public PlaybackStatus getStatus() {
+        if (streamingPlayer != null) {
+            return streamingPlayer.getStatus();
+        }
         if (mediaPlayer != null) {
             switch (mediaPlayer.getStatus()) {
                 case PLAYING:
@@ -188,6 +278,31 @@ public class Engine {
         return PlaybackStatus.STOPPED;
     }
 
+    /**
+     * How far the current playback has gotten, measured by the audio that has actually been
+     * played rather than by time passed.
+     *
+     * @return Position in ms, or -1 if nothing is playing or paused.
+     */
+    public double getPlaybackPositionMs() {
+        if (streamingPlayer != null) {
+            return streamingPlayer.getStatus() == PlaybackStatus.STOPPED
+                    ? -1 : streamingPlayer.getPositionMs();
+        }
+        if (mediaPlayer != null) {
+            switch (mediaPlayer.getStatus()) {
+                case READY:
+                case PLAYING:
+                case PAUSED:
+                case STALLED:
+                    return mediaPlayer.getCurrentTime().toMillis();
+                default:
+                    return -1;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Play a note from a voicebank, using the current resampler.
      */
@@ -199,14 +314,23 @@ public class Engine {
         note.setDuration(2000); // Unnecessary.
         note.setModulation(modulation);
         renderedNote = cacheManager.createNoteCache();
-        resampler.resampleNote(
-                getResamplerPath(),
-                note,
-                2000.0,
-                lyricData,
-                renderedNote,
-                "",
-                120);
+        // Jumps ahead of any notes from songs that are rendering in the background.
+        Future<?> preview = renderScheduler.startJob(Priority.INTERACTIVE).submit(() -> {
+            resampler.resampleNote(
+                    note,
+                    2000.0,
+                    lyricData,
+                    renderedNote,
+                    "",
+                    120);
+            return null;
+        });
+        try {
+            preview.get();
+        } catch (InterruptedException | ExecutionException e) {
+            errorLogger.logError(e);
+            return;
+        }
 
         try {
             Media media = new Media(renderedNote.toURI().toString());
@@ -219,7 +343,16 @@ public class Engine {
         }
     }
 
-    private Optional<File> render(Song song, RegionBounds bounds) {
+    /**
+     * Renders a region of a song to a file.
+     *
+     * @param stream If present, rendered samples are also played as soon as they are mixed.
+     */
+    private Optional<File> render(
+            Song song,
+            RegionBounds bounds,
+            Optional<StreamingPlayer> stream,
+            Priority priority) {
         // Use cached render if it exists and cache is enabled.
         if (preferencesManager.getCache().equals(CacheMode.DISABLED)) {
             song.clearCache();
@@ -229,21 +362,34 @@ public class Engine {
             return song.getCacheFile();
         }
 
-        // Set up a thread pool for asynchronous rendering.
-        ExecutorService executor = Executors.newFixedThreadPool(threadPoolSize);
-        ArrayList<Future<Runnable>> futures = new ArrayList<>();
-
         NoteIterator notes = song.getNoteIterator(bounds);
         if (!notes.hasNext()) {
             return Optional.empty();
         }
 
+        // Render notes asynchronously on the shared scheduler.
+        RenderJob renderJob = renderScheduler.startJob(priority);
+        if (priority == Priority.PLAYBACK) {
+            synchronized (this) {
+                if (playbackRender != null) {
+                    playbackRender.cancel(); // Nobody is waiting to hear the old render anymore.
+                }
+                playbackRender = renderJob;
+            }
+        }
+        ArrayList<Future<Runnable>> futures = new ArrayList<>();
+
         int startPosition = bounds.getMinMs();
         int totalDelta = notes.getCurDelta(); // Absolute position of current note.
         double scaleFactor = 125.0 / song.getTempo(); // TODO: Override with note tempo.
         Voicebank voicebank = song.getVoicebank();
+        double renderEndMs = startPosition * scaleFactor; // Where the final note ends.
         boolean isFirstNote = true;
         final File finalSong = cacheManager.createRenderedCache();
+        // Unchanged notes are read by the wavtool only if it turns out to need them.
+        final boolean preloadSamples = wavtool.supportsSampleInput()
+                && (priority == Priority.EXPORT
+                        || !canReusePreviousMix(startPosition * scaleFactor));
 
         while (notes.hasNext()) {
             Note note = notes.next();
@@ -277,7 +423,7 @@ public class Engine {
                 if (notes.getCurDelta() - preutter > bounds.getMinMs()) {
                     double firstNoteDelta =
                             (notes.getCurDelta() - bounds.getMinMs()) * scaleFactor - preutter;
-                    addSilence(firstNoteDelta, 0, finalSong, executor, futures);
+                    addSilence(firstNoteDelta, 0, finalSong, futures);
                 }
                 isFirstNote = false;
             }
@@ -291,7 +437,6 @@ public class Engine {
                                     - notes.peekNext().get().getRealPreutter(),
                             totalDelta * scaleFactor,
                             finalSong,
-                            executor,
                             futures);
                 } else {
                     // Case where the last note in the song is silent.
@@ -299,9 +444,10 @@ public class Engine {
                             note.getLength() * scaleFactor,
                             totalDelta * scaleFactor,
                             finalSong,
-                            executor,
                             futures);
                 }
+                renderEndMs = Math.max(
+                        renderEndMs, (totalDelta + note.getLength()) * scaleFactor);
                 continue;
             }
             // System.out.println(config.get());
@@ -331,30 +477,42 @@ public class Engine {
             final boolean isLastNote = notes.peekNext().isEmpty();
             final int currentTotalDelta = totalDelta;
             final double expectedDelta = totalDelta - preutter;
-            futures.add(executor.submit(() -> {
+            renderEndMs = Math.max(
+                    renderEndMs, totalDelta * scaleFactor - preutter + adjustedLength);
+            Callable<Runnable> resampleNote = () -> {
                 // Re-samples lyric and puts result into renderedNote file.
                 File renderedNote;
                 if (preferencesManager.getCache().equals(CacheMode.DISABLED)) {
                     song.clearNoteCache(currentTotalDelta, currentTotalDelta);
                 }
                 if (note.getCacheFile() == null || !note.getCacheFile().exists()) {
-                    renderedNote = cacheManager.createNoteCache();
-                    resampler.resample(
-                            getResamplerPath(),
-                            note,
-                            adjustedLength,
-                            curConfig,
-                            renderedNote,
-                            pitchString,
-                            song);
-                    // Wait up to one second for file to become readable.
-                    waitUntilFileReadable(renderedNote);
+                    renderedNote = renderNote(note, adjustedLength, curConfig, pitchString, song);
+                    // Only kept on this song. When it's a snapshot, the live song's next render
+                    // finds the same file through the persistent note cache instead.
                     if (preferencesManager.getCache().equals(CacheMode.ENABLED)) {
                         note.setCacheFile(renderedNote);
                     }
                 } else {
                     renderedNote = note.getCacheFile();
                 }
+                if (preloadSamples) {
+                    // Read the rendered note here, in parallel with other notes.
+                    Optional<SampleBuffer> samples = soundFileReader.loadSamples(renderedNote);
+                    if (samples.isEmpty()) {
+                        System.out.println(
+                                "Warning: Unable to read WAV data: " + renderedNote.getName());
+                    }
+                    return () -> wavtool.addNewNote(
+                            song,
+                            note,
+                            adjustedLength,
+                            expectedDelta,
+                            samples,
+                            renderedNote,
+                            finalSong,
+                            includeOverlap,
+                            isLastNote);
+                }
                 return () -> wavtool.addNewNote(
                         song,
                         note,
@@ -364,7 +522,14 @@ public class Engine {
                         finalSong,
                         includeOverlap,
                         isLastNote);
-            }));
+            };
+            try {
+                futures.add(renderJob.submit(resampleNote));
+            } catch (CancellationException e) {
+                // A newer render has already replaced this one.
+                System.out.println("Render was canceled.");
+                return Optional.empty();
+            }
 
             // Possible silence after each note.
             if (notes.peekNext().isPresent() && !areNotesTouching(
@@ -381,15 +546,27 @@ public class Engine {
                         silenceLength,
                         (totalDelta + note.getDuration()) * scaleFactor,
                         finalSong,
-                        executor,
                         futures);
+                renderEndMs = Math.max(
+                        renderEndMs,
+                        (totalDelta + note.getDuration()) * scaleFactor + silenceLength);
             }
         }
 
+        // Start draining rendered samples into the audio line as soon as they arrive.
+        if (stream.isPresent()) {
+            stream.get().start(renderEndMs - startPosition * scaleFactor);
+        }
+
         // When resampler finishes, run wavtool on notes in sequential order.
         // The wavtool is given its own thread so it can be terminated separately from the engine.
         Thread wavtoolThread = new Thread(() -> {
-            wavtool.startRender(startPosition * scaleFactor);
+            if (stream.isPresent()) {
+                wavtool.startStreamingRender(
+                        startPosition * scaleFactor, stream.get().getBuffer());
+            } else {
+                wavtool.startRender(startPosition * scaleFactor, priority);
+            }
             for (int i = 0; i < futures.size(); i++) {
                 try {
                     double curProgress = i * 1.0 / futures.size();
@@ -401,7 +578,7 @@ public class Engine {
                 } catch (InterruptedException | CancellationException | ExecutionException e) {
                     System.out.println("Wavtool run failed or was canceled.");
                     errorLogger.logError(e);
-                    executor.shutdownNow(); // Shutdown all resamplers.
+                    renderJob.cancel(); // Shutdown all resamplers.
                     return; // Return early from wavtool thread.
                 }
             }
@@ -417,7 +594,8 @@ public class Engine {
             return Optional.empty();
         }
         statusBar.endProgress(); // Mark task as complete.
-        executor.shutdown(); // Shut down thread pool
+        processRunner.takeTimingSummary().ifPresent(
+                summary -> System.out.println("External processes: " + summary));
 
         if (!finalSong.canRead()) {
             System.out.println("Render did not produce a valid file.");
@@ -425,54 +603,58 @@ public class Engine {
         }
         if (preferencesManager.getCache().equals(CacheMode.ENABLED)) {
             song.setCache(bounds, finalSong); // Cache region that was played.
+            cacheManager.saveNoteCacheIndex(); // Keep note renders for future sessions.
         } else {
             cacheManager.clearNotes(); // Clear note cache if we aren't keeping caches.
         }
-        cacheManager.clearSilences(); // Clear all silence temp files.
         return Optional.of(finalSong);
     }
 
+    // Resamples a note, reusing a render from an earlier session if one exists.
+    private File renderNote(
+            Note note, double noteLength, LyricConfig config, String pitchString, Song song)
+            throws InterruptedException {
+        boolean useCache = preferencesManager.getCache().equals(CacheMode.ENABLED);
+        String cacheKey = "";
+        if (useCache) {
+            cacheKey = resampler.getCacheKey(note, noteLength, config, pitchString, song);
+            Optional<File> cachedNote = cacheManager.getNoteCache(cacheKey);
+            if (cachedNote.isPresent()) {
+                return cachedNote.get();
+            }
+        }
+        File renderedNote = cacheManager.createNoteCache();
+        resampler.resample(note, noteLength, config, renderedNote, pitchString, song);
+        // Wait up to one second for file to become readable.
+        waitUntilFileReadable(renderedNote);
+        if (useCache && renderedNote.canRead()) {
+            return cacheManager.saveNoteCache(cacheKey, renderedNote);
+        }
+        return renderedNote;
+    }
+
+    // Silence has nothing to resample, so it is ready for the wavtool immediately.
     private void addSilence(
             double duration,
             double totalDelta,
             File finalSong,
-            ExecutorService executor,
             ArrayList<Future<Runnable>> futures) {
         if (duration <= 0.0) {
             return;
         }
-        File renderedSilence = cacheManager.createSilenceCache();
-        futures.add(executor.submit(() -> {
-            resampler.resampleSilence(getResamplerPath(), renderedSilence, duration);
-            return () -> {
-                wavtool.addSilence(
-                        duration,
-                        totalDelta,
-                        renderedSilence,
-                        finalSong,
-                        false);
-            };
-        }));
+        futures.add(CompletableFuture.completedFuture(
+                () -> wavtool.addSilence(duration, totalDelta, finalSong, false)));
     }
 
     private void addFinalSilence(
             double duration,
             double totalDelta,
             File finalSong,
-            ExecutorService executor,
             ArrayList<Future<Runnable>> futures) {
         // The final note must be passed to the wavtool.
         double trueDuration = Math.max(duration, 0);
-        File renderedSilence = cacheManager.createSilenceCache();
-        futures.add(executor.submit(() -> {
-            resampler.resampleSilence(getResamplerPath(), renderedSilence, trueDuration);
-            return () -> wavtool.addSilence(
-                    trueDuration,
-                    totalDelta,
-                    renderedSilence,
-                    finalSong,
-                    true);
-        }));
+        futures.add(CompletableFuture.completedFuture(
+                () -> wavtool.addSilence(trueDuration, totalDelta, finalSong, true)));
     }
 
     // Returns empty string if there is no nearby (within DEFAULT_NOTE_DURATION) previous note.
@@ -0,0 +1,145 @@
+package com.utsusynth.utsu.engine;
+
+import com.utsusynth.utsu.common.data.FrequencyData;
+
+/**
+ * Finds the F0 of a sound with the YIN algorithm, giving the same data that an external frq
+ * generator writes to a FREQ0003 file. Blocks with no clear pitch get a frequency of 0.
+ */
+class FrqAnalyzer {
+    private static final double MIN_FREQ = 60;
+    private static final double MAX_FREQ = 1100;
+    // Highest normalized difference that still counts as a period. 0.1-0.15 is typical for YIN.
+    private static final double THRESHOLD = 0.15;
+    private static final double MIN_RMS = 0.002; // Quieter blocks are treated as unvoiced.
+    // Sounds are averaged down to about this rate first, which is plenty to find a voice's F0.
+    private static final double ANALYSIS_RATE = 11025;
+    private static final int MAX_AMPLITUDE = 32768; // Amplitudes are stored as 16-bit values.
+
+    private FrqAnalyzer() {}
+
+    /**
+     * @param samples Samples in the range [-1, 1].
+     * @param sampleRate Samples per second.
+     * @param samplesPerFrq Samples per frequency value, usually 256.
+     */
+    static FrequencyData analyze(float[] samples, double sampleRate, int samplesPerFrq) {
+        int numBlocks = (samples.length + samplesPerFrq - 1) / samplesPerFrq;
+        double[] frequencies = new double[numBlocks];
+        double[] amplitudes = new double[numBlocks];
+
+        int factor = Math.max(1, (int) Math.round(sampleRate / ANALYSIS_RATE));
+        double rate = sampleRate / factor;
+        float[] decimated = decimate(samples, factor);
+        int minPeriod = Math.max(2, (int) Math.floor(rate / MAX_FREQ));
+        int maxPeriod = (int) Math.ceil(rate / MIN_FREQ);
+        int window = maxPeriod; // Long enough to hold the lowest expected period.
+        double[] difference = new double[maxPeriod + 2];
+
+        double freqSum = 0;
+        int numVoiced = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            int blockStart = block * samplesPerFrq;
+            int blockEnd = Math.min(samples.length, blockStart + samplesPerFrq);
+            double rms = getRms(samples, blockStart, blockEnd);
+            amplitudes[block] = rms * MAX_AMPLITUDE;
+            if (rms < MIN_RMS) {
+                continue;
+            }
+            // Analyze a window centered on the middle of the block.
+            int center = (blockStart + blockEnd) / 2 / factor;
+            int start = Math.max(0, center - (window + maxPeriod) / 2);
+            if (start + window + maxPeriod + 1 >= decimated.length) {
+                start = decimated.length - window - maxPeriod - 2;
+            }
+            if (start < 0) {
+                continue; // Sound is too short to find a period in.
+            }
+            double period = findPeriod(decimated, start, window, minPeriod, maxPeriod, difference);
+            if (period > 0) {
+                frequencies[block] = rate / period;
+                freqSum += frequencies[block];
+                numVoiced++;
+            }
+        }
+        double average = numVoiced > 0 ? freqSum / numVoiced : 0;
+        return new FrequencyData(average, samplesPerFrq, frequencies, amplitudes);
+    }
+
+    // Averages each group of samples into one, which also filters out the highest frequencies.
+    private static float[] decimate(float[] samples, int factor) {
+        if (factor == 1) {
+            return samples;
+        }
+        float[] decimated = new float[samples.length / factor];
+        for (int i = 0; i < decimated.length; i++) {
+            float sum = 0;
+            for (int j = 0; j < factor; j++) {
+                sum += samples[i * factor + j];
+            }
+            decimated[i] = sum / factor;
+        }
+        return decimated;
+    }
+
+    private static double getRms(float[] samples, int start, int end) {
+        if (end <= start) {
+            return 0;
+        }
+        double sumOfSquares = 0;
+        for (int i = start; i < end; i++) {
+            sumOfSquares += samples[i] * samples[i];
+        }
+        return Math.sqrt(sumOfSquares / (end - start));
+    }
+
+    /**
+     * Finds the period of one window of samples.
+     *
+     * @param difference Scratch space of at least maxPeriod + 2 values.
+     * @return The period in samples, or 0 if there is no clear period.
+     */
+    private static double findPeriod(
+            float[] samples,
+            int start,
+            int window,
+            int minPeriod,
+            int maxPeriod,
+            double[] difference) {
+        // Difference function, normalized by its running mean.
+        difference[0] = 1;
+        double runningSum = 0;
+        for (int lag = 1; lag <= maxPeriod + 1; lag++) {
+            double sum = 0;
+            for (int i = start; i < start + window; i++) {
+                double delta = samples[i] - samples[i + lag];
+                sum += delta * delta;
+            }
+            runningSum += sum;
+            difference[lag] = runningSum > 0 ? sum * lag / runningSum : 1;
+        }
+
+        // Take the first dip below the threshold, following it down to its lowest point.
+        for (int lag = minPeriod; lag <= maxPeriod; lag++) {
+            if (difference[lag] < THRESHOLD) {
+                while (lag + 1 <= maxPeriod && difference[lag + 1] < difference[lag]) {
+                    lag++;
+                }
+                return interpolate(difference, lag);
+            }
+        }
+        return 0;
+    }
+
+    // Fits a parabola through a minimum and its neighbors to find the minimum between samples.
+    private static double interpolate(double[] difference, int lag) {
+        double before = difference[lag - 1];
+        double at = difference[lag];
+        double after = difference[lag + 1];
+        double curvature = before - 2 * at + after;
+        if (curvature <= 0) {
+            return lag;
+        }
+        return lag + (before - after) / (2 * curvature);
+    }
+}
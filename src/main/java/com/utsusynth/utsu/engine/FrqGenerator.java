@@ -1,31 +1,190 @@
 package com.utsusynth.utsu.engine;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import com.google.inject.Inject;
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
+import com.utsusynth.utsu.engine.common.ProcessTiming;
+import com.utsusynth.utsu.engine.common.RenderJob;
+import com.utsusynth.utsu.engine.common.RenderScheduler;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
 import com.utsusynth.utsu.files.AssetManager;
 import com.utsusynth.utsu.files.FileNameFixer;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
 
+/**
+ * Generates .frq files for wav files. Analysis runs inside Utsu, and the external frq generator
+ * is only used for wav files that Utsu can't read itself.
+ */
 public class FrqGenerator {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+
     private final ExternalProcessRunner runner;
+    private final RenderScheduler scheduler;
     private final FileNameFixer fileNameFixer;
+    private final SoundFileReader soundFileReader;
+    private final SoundFileWriter soundFileWriter;
     private final File frqGeneratorPath;
     private final int samplesPerFrq; // Samples per value in frq file. Currently always 256.
 
+    // Batches of frq files currently being generated.
+    private final Collection<RenderJob> batches = new ArrayList<>();
+
     @Inject
     public FrqGenerator(
-            ExternalProcessRunner runner, FileNameFixer fileNameFixer, AssetManager assetManager, int samplesPerFrq) {
+            ExternalProcessRunner runner,
+            RenderScheduler scheduler,
+            FileNameFixer fileNameFixer,
+            SoundFileReader soundFileReader,
+            SoundFileWriter soundFileWriter,
+            AssetManager assetManager,
+            int samplesPerFrq) {
         this.runner = runner;
+        this.scheduler = scheduler;
         this.fileNameFixer = fileNameFixer;
+        this.soundFileReader = soundFileReader;
+        this.soundFileWriter = soundFileWriter;
         this.frqGeneratorPath = assetManager.getFrqGeneratorFile();
         this.samplesPerFrq = samplesPerFrq;
     }
 
+    /** The frq file that goes with a wav file, whether or not it exists. */
+    public static File getFrqFile(File wavFile) {
+        String wavName = wavFile.getName();
+        String frqName = wavName.substring(0, wavName.length() - 4) + "_wav.frq";
+        return new File(wavFile.getParentFile(), frqName);
+    }
+
     public void genFrqFile(File input, File output) {
-        runner.runProcess(
+        if (!genFrqFileInProcess(input, output)) {
+            genFrqFileExternally(input, output);
+        }
+    }
+
+    /**
+     * Generates the frq files for many wav files, running several generators at once. Wav files
+     * whose frq file is newer than they are are skipped. Blocks until every file is done or the
+     * batch is canceled.
+     *
+     * @param onFinished Called once per wav file with whether its frq file can be read. May be
+     *        called from several threads at once.
+     */
+    public void genFrqFiles(Collection<File> wavFiles, BiConsumer<File, Boolean> onFinished) {
+        Set<File> started = ConcurrentHashMap.newKeySet();
+        Set<File> finished = ConcurrentHashMap.newKeySet();
+        BiConsumer<File, Boolean> finish = (wavFile, isValid) -> {
+            if (finished.add(wavFile)) {
+                onFinished.accept(wavFile, isValid);
+            }
+        };
+        RenderJob batch = scheduler.startJob(Priority.EXPORT);
+        synchronized (batches) {
+            batches.add(batch);
+        }
+        Map<File, Future<Boolean>> generating = new LinkedHashMap<>();
+        try {
+            for (File wavFile : wavFiles) {
+                File frqFile = getFrqFile(wavFile);
+                if (frqFile.canRead() && frqFile.lastModified() >= wavFile.lastModified()) {
+                    finish.accept(wavFile, true);
+                    continue;
+                }
+                try {
+                    generating.put(wavFile, batch.submit(() -> {
+                        started.add(wavFile);
+                        boolean generated = genFrqFileIfNotCanceled(wavFile, frqFile);
+                        finish.accept(wavFile, generated);
+                        return generated;
+                    }));
+                } catch (CancellationException e) {
+                    finish.accept(wavFile, frqFile.canRead());
+                }
+            }
+            for (Map.Entry<File, Future<Boolean>> entry : generating.entrySet()) {
+                try {
+                    entry.getValue().get();
+                } catch (CancellationException e) {
+                    // Files that had started report for themselves once their generator stops.
+                    if (!started.contains(entry.getKey())) {
+                        finish.accept(entry.getKey(), getFrqFile(entry.getKey()).canRead());
+                    }
+                } catch (InterruptedException e) {
+                    batch.cancel();
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    errorLogger.logError(e);
+                    finish.accept(entry.getKey(), false);
+                }
+            }
+        } finally {
+            synchronized (batches) {
+                batches.remove(batch);
+            }
+        }
+    }
+
+    /** Stops every batch of frq files being generated. */
+    public void cancelFrqFiles() {
+        synchronized (batches) {
+            for (RenderJob batch : batches) {
+                batch.cancel();
+            }
+        }
+    }
+
+    private boolean genFrqFileIfNotCanceled(File wavFile, File frqFile) {
+        if (Thread.currentThread().isInterrupted()) {
+            return frqFile.canRead(); // Canceled before the generator started.
+        }
+        if (genFrqFileInProcess(wavFile, frqFile)) {
+            return true;
+        }
+        if (!genFrqFileExternally(wavFile, frqFile).wasRun()) {
+            return frqFile.canRead(); // Canceled while waiting for the external generator.
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            // Generator was stopped partway through, so don't leave a broken frq file behind.
+            if (frqFile.exists() && !frqFile.delete()) {
+                System.out.println("Warning: Failed to delete partial frq file.");
+            }
+            return false;
+        }
+        return frqFile.canRead();
+    }
+
+    /** @return Whether the wav file could be read and its frq file was written. */
+    private boolean genFrqFileInProcess(File wavFile, File frqFile) {
+        Optional<WavData> wavData = soundFileReader.loadWavData(wavFile, status -> null);
+        if (wavData.isEmpty() || wavData.get().getLengthMs() <= 0) {
+            return false;
+        }
+        FrequencyData frqData = FrqAnalyzer.analyze(
+                wavData.get().getSamples(),
+                wavData.get().getSamplesPerMs() * 1000,
+                samplesPerFrq);
+        return soundFileWriter.writeFrqData(frqData, frqFile);
+    }
+
+    private ProcessTiming genFrqFileExternally(File wavFile, File frqFile) {
+        return runner.runProcess(
                 frqGeneratorPath.getAbsolutePath(),
-                fileNameFixer.getFixedName(input.getAbsolutePath()),
-                output.getAbsolutePath(),
+                fileNameFixer.getFixedName(wavFile.getAbsolutePath()),
+                frqFile.getAbsolutePath(),
                 Integer.toString(samplesPerFrq));
     }
 }
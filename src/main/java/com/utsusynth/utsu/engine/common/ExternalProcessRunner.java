@@ -5,54 +5,133 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 
 /**
- * Class that runs an external command-line process with the provided arguments.
+ * Class that runs external command-line processes with the provided arguments. Only a limited
+ * number of processes run at once, and the rest wait their turn. Every process this class starts
+ * can be canceled at once, and all of them are destroyed when Utsu closes.
  */
 public class ExternalProcessRunner {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
 
-    private Process curProcess;
+    private final Semaphore processPermits;
+    // Reads the output of processes so that they never block on a full pipe.
+    private final ExecutorService outputDrainers;
+    private final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger numProcesses = new AtomicInteger(0);
+    private final AtomicLong totalQueuedMs = new AtomicLong(0);
+    private final AtomicLong totalRunningMs = new AtomicLong(0);
 
-    public ExternalProcessRunner() {
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            // Destroy any ongoing processes when Utsu closes.
-            if (curProcess != null && curProcess.isAlive()) {
-                curProcess.destroy();
-            }
-        }));
+    public ExternalProcessRunner(int maxProcesses) {
+        processPermits = new Semaphore(Math.max(1, maxProcesses), /* fair= */ true);
+        AtomicInteger numDrainers = new AtomicInteger(0);
+        outputDrainers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ProcessOutput-" + numDrainers.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Destroy any ongoing processes when Utsu closes.
+        Runtime.getRuntime().addShutdownHook(new Thread(this::cancelAll));
     }
 
-    public void runProcess(String... args) {
-        runProcess(null, args);
+    public ProcessTiming runProcess(String... args) {
+        return runProcess(null, args);
     }
 
-    public void runProcess(File workingDir, String... args) {
+    /**
+     * Runs a process and waits for it to finish. If the calling thread is interrupted, the process
+     * is destroyed and the thread's interrupt status is kept.
+     *
+     * @return How long the process waited to start and how long it ran.
+     */
+    public ProcessTiming runProcess(File workingDir, String... args) {
         // Uncomment these lines to see calls to resampler/wavtool.
         //StringBuilder argString = new StringBuilder();
         //for (String arg : args) {
         //    argString.append(arg.substring(Math.max(arg.lastIndexOf('\\') + 1, 0))).append(' ');
         //}
         //System.out.println(argString);
-        ProcessBuilder builder = new ProcessBuilder(args);
-        builder.redirectErrorStream(true);
-        if (workingDir != null) {
-            builder.directory(workingDir);
+        long queuedAt = System.currentTimeMillis();
+        try {
+            processPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // This thread can be canceled.
+            return ProcessTiming.NOT_RUN;
         }
+        long startedAt = System.currentTimeMillis();
+        Process process = null;
+        int exitCode = -1;
         try {
-            curProcess = builder.start();
-            watch(curProcess.getInputStream());
-            curProcess.waitFor();
+            process = startProcess(workingDir, args);
+            exitCode = process.waitFor();
         } catch (InterruptedException e) {
-            // Do nothing. This thread can be canceled.
+            Thread.currentThread().interrupt(); // This thread can be canceled.
         } catch (IOException e) {
             errorLogger.logError(e);
+        } finally {
+            if (process != null) {
+                runningProcesses.remove(process);
+                if (process.isAlive()) {
+                    destroy(process.toHandle()); // Don't leave canceled processes running.
+                }
+            }
+            processPermits.release();
+        }
+        ProcessTiming timing = new ProcessTiming(
+                startedAt - queuedAt, System.currentTimeMillis() - startedAt, exitCode);
+        numProcesses.incrementAndGet();
+        totalQueuedMs.addAndGet(timing.getQueuedMs());
+        totalRunningMs.addAndGet(timing.getRunningMs());
+        return timing;
+    }
+
+    /** Destroys every process started by this runner that is still running. */
+    public void cancelAll() {
+        for (Process process : runningProcesses) {
+            destroy(process.toHandle());
         }
     }
 
-    private void watch(final InputStream inputStream) {
-        new Thread(() -> {
+    /**
+     * Averages for every process that has finished since the last summary, then starts counting
+     * again from zero.
+     *
+     * @return The summary, or empty if no processes finished.
+     */
+    public Optional<String> takeTimingSummary() {
+        int count = numProcesses.getAndSet(0);
+        long queuedMs = totalQueuedMs.getAndSet(0);
+        long runningMs = totalRunningMs.getAndSet(0);
+        if (count == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(count + " processes, " + queuedMs / count + " ms average wait, "
+                + runningMs / count + " ms average run time.");
+    }
+
+    private Process startProcess(File workingDir, String... args) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(args);
+        builder.redirectErrorStream(true);
+        if (workingDir != null) {
+            builder.directory(workingDir);
+        }
+        Process process = builder.start();
+        runningProcesses.add(process);
+        drain(process.getInputStream());
+        return process;
+    }
+
+    private void drain(final InputStream inputStream) {
+        outputDrainers.execute(() -> {
             BufferedReader input = new BufferedReader(new InputStreamReader(inputStream));
             String line;
             try {
@@ -61,8 +140,14 @@ public class ExternalProcessRunner {
                     // System.out.println(line);
                 }
             } catch (IOException e) {
-                errorLogger.logError(e);
+                // Stream was closed because the process was destroyed.
             }
-        }).start();
+        });
+    }
+
+    // Destroys a process along with anything it started, so no orphans are left behind.
+    private static void destroy(ProcessHandle process) {
+        process.descendants().forEach(ProcessHandle::destroy);
+        process.destroy();
     }
 }
@@ -0,0 +1,39 @@
+package com.utsusynth.utsu.engine.common;
+
+/** How long one external process waited for its turn and how long it then ran. */
+public class ProcessTiming {
+    static final ProcessTiming NOT_RUN = new ProcessTiming(0, 0, -1);
+
+    private final long queuedMs;
+    private final long runningMs;
+    private final int exitCode;
+
+    ProcessTiming(long queuedMs, long runningMs, int exitCode) {
+        this.queuedMs = queuedMs;
+        this.runningMs = runningMs;
+        this.exitCode = exitCode;
+    }
+
+    public long getQueuedMs() {
+        return queuedMs;
+    }
+
+    public long getRunningMs() {
+        return runningMs;
+    }
+
+    /** Whether the process started at all, as opposed to being canceled while it waited. */
+    public boolean wasRun() {
+        return this != NOT_RUN;
+    }
+
+    /** The process's exit code, or -1 if it never finished. */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public String toString() {
+        return "Waited " + queuedMs + " ms, ran " + runningMs + " ms, exited with " + exitCode;
+    }
+}
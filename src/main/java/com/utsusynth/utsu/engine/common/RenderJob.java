@@ -0,0 +1,60 @@
+package com.utsusynth.utsu.engine.common;
+
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+
+/** A group of tasks on the {@link RenderScheduler}, such as every note of one render. */
+public class RenderJob {
+    private final RenderScheduler scheduler;
+    private final Priority priority;
+    private final Set<Future<?>> pendingTasks = ConcurrentHashMap.newKeySet();
+    private volatile boolean canceled = false;
+
+    RenderJob(RenderScheduler scheduler, Priority priority) {
+        this.scheduler = scheduler;
+        this.priority = priority;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        if (canceled) {
+            throw new CancellationException("Render job was canceled.");
+        }
+        Future<T> future = scheduler.submit(this, task);
+        if (canceled) {
+            future.cancel(true); // Canceled while this task was being submitted.
+        }
+        return future;
+    }
+
+    /**
+     * Cancels every task in this job. Tasks that haven't started are skipped, and tasks that are
+     * running are interrupted, which stops any external process they are waiting on.
+     */
+    public void cancel() {
+        canceled = true;
+        for (Future<?> task : pendingTasks) {
+            task.cancel(true);
+        }
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    void onTaskSubmitted(Future<?> task) {
+        pendingTasks.add(task);
+    }
+
+    void onTaskDone(Future<?> task) {
+        pendingTasks.remove(task);
+    }
+}
@@ -0,0 +1,86 @@
+package com.utsusynth.utsu.engine.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs rendering work for the whole application on one fixed set of threads. Waiting tasks run in
+ * order of priority, then in the order they were submitted, so a short interactive task never
+ * waits behind a long export, even though a task that has already started is never paused.
+ */
+public class RenderScheduler {
+    /** Lanes of work, from most to least urgent. */
+    public enum Priority {
+        INTERACTIVE, // Previews the user is waiting to hear right now.
+        PLAYBACK, // Renders that will be played as soon as they are done.
+        EXPORT, // Renders to a file, which can take as long as they need.
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong numSubmitted = new AtomicLong(0);
+
+    public RenderScheduler(int numThreads) {
+        AtomicInteger numCreated = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(
+                Math.max(1, numThreads),
+                Math.max(1, numThreads),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Render-" + numCreated.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /** Starts a group of tasks that share a priority and can be canceled together. */
+    public RenderJob startJob(Priority priority) {
+        return new RenderJob(this, priority);
+    }
+
+    <T> Future<T> submit(RenderJob job, Callable<T> task) {
+        ScheduledTask<T> scheduledTask =
+                new ScheduledTask<>(job, task, numSubmitted.getAndIncrement());
+        job.onTaskSubmitted(scheduledTask);
+        executor.execute(scheduledTask);
+        return scheduledTask;
+    }
+
+    private static class ScheduledTask<T> extends FutureTask<T>
+            implements Comparable<ScheduledTask<?>> {
+        private final RenderJob job;
+        private final long order;
+
+        private ScheduledTask(RenderJob job, Callable<T> task, long order) {
+            super(task);
+            this.job = job;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            if (job.isCanceled()) {
+                cancel(false); // Skip work that is no longer wanted.
+            }
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            job.onTaskDone(this);
+        }
+
+        @Override
+        public int compareTo(ScheduledTask<?> other) {
+            int byPriority = job.getPriority().compareTo(other.job.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(order, other.order);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.utsusynth.utsu.engine.playback;
+
+/**
+ * Bounded buffer of mono samples shared between one writer (the wavtool) and one reader (the
+ * audio line). Writers block while the buffer is full and readers block while it is empty.
+ */
+public class SampleRingBuffer {
+    private final float[] samples;
+    private int readIndex = 0;
+    private int size = 0;
+    private boolean closed = false; // No more samples will be written.
+    private boolean canceled = false; // Reader has gone away, so samples should be discarded.
+
+    public SampleRingBuffer(int capacity) {
+        samples = new float[capacity];
+    }
+
+    /**
+     * Writes samples to the buffer, blocking until there is room for all of them.
+     *
+     * @return False if the buffer was canceled before all samples could be written.
+     */
+    public synchronized boolean write(float[] source, int offset, int length)
+            throws InterruptedException {
+        while (length > 0) {
+            while (size == samples.length && !canceled) {
+                wait();
+            }
+            if (canceled) {
+                return false;
+            }
+            int writeIndex = (readIndex + size) % samples.length;
+            int toWrite = Math.min(
+                    length, Math.min(samples.length - size, samples.length - writeIndex));
+            for (int i = 0; i < toWrite; i++) {
+                samples[writeIndex + i] = source[offset + i];
+            }
+            size += toWrite;
+            offset += toWrite;
+            length -= toWrite;
+            notifyAll();
+        }
+        return !canceled;
+    }
+
+    /**
+     * Reads up to length samples, blocking until at least one is available.
+     *
+     * @return The number of samples read, or -1 if there will never be any more samples.
+     */
+    public synchronized int read(float[] dest, int offset, int length)
+            throws InterruptedException {
+        while (size == 0 && !closed && !canceled) {
+            wait();
+        }
+        if (canceled || size == 0) {
+            return -1;
+        }
+        int toRead = Math.min(length, Math.min(size, samples.length - readIndex));
+        System.arraycopy(samples, readIndex, dest, offset, toRead);
+        readIndex = (readIndex + toRead) % samples.length;
+        size -= toRead;
+        notifyAll();
+        return toRead;
+    }
+
+    /** Blocks until the buffer holds numSamples samples or nothing more will be written. */
+    public synchronized void awaitAvailable(int numSamples) throws InterruptedException {
+        int target = Math.min(numSamples, samples.length);
+        while (size < target && !closed && !canceled) {
+            wait();
+        }
+    }
+
+    /** Called by the writer once every sample has been written. */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /** Called by the reader to discard all current and future samples. */
+    public synchronized void cancel() {
+        canceled = true;
+        size = 0;
+        notifyAll();
+    }
+
+    public synchronized boolean isCanceled() {
+        return canceled;
+    }
+}
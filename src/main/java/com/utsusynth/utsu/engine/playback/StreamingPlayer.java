@@ -0,0 +1,142 @@
+package com.utsusynth.utsu.engine.playback;
+
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+import com.utsusynth.utsu.engine.Engine.PlaybackStatus;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.function.Consumer;
+
+/**
+ * Plays samples from a {@link SampleRingBuffer} through a {@link SourceDataLine} while the rest of
+ * the song is still being rendered.
+ */
+public class StreamingPlayer {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int SAMPLE_RATE = 44100;
+    private static final int BLOCK_SAMPLES = 1024;
+
+    private final SampleRingBuffer buffer;
+    private final int prebufferSamples;
+    private final Consumer<Double> onStart;
+    private final Runnable onEnd;
+
+    private volatile PlaybackStatus status = PlaybackStatus.STOPPED;
+    private SourceDataLine line;
+    private Thread playbackThread;
+
+    /**
+     * @param buffer Buffer that the wavtool will write rendered samples into.
+     * @param prebufferMs How much audio to wait for before starting the line.
+     * @param onStart Called with the expected length of the audio, in ms, once sound starts.
+     * @param onEnd Called once playback finishes or is stopped.
+     */
+    public StreamingPlayer(
+            SampleRingBuffer buffer, double prebufferMs, Consumer<Double> onStart, Runnable onEnd) {
+        this.buffer = buffer;
+        this.prebufferSamples = (int) (prebufferMs / 1000 * SAMPLE_RATE);
+        this.onStart = onStart;
+        this.onEnd = onEnd;
+    }
+
+    public SampleRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Starts draining the buffer into an audio line on a separate thread.
+     *
+     * @param lengthMs Expected length of the rendered audio.
+     */
+    public synchronized boolean start(double lengthMs) {
+        if (buffer.isCanceled()) {
+            return false;
+        }
+        AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+        try {
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format);
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            errorLogger.logError(e);
+            buffer.cancel();
+            return false;
+        }
+        status = PlaybackStatus.PLAYING;
+        playbackThread = new Thread(() -> drain(lengthMs));
+        playbackThread.setDaemon(true);
+        playbackThread.start();
+        return true;
+    }
+
+    public synchronized void pause() {
+        if (line != null && status == PlaybackStatus.PLAYING) {
+            line.stop();
+            status = PlaybackStatus.PAUSED;
+        }
+    }
+
+    public synchronized void resume() {
+        if (line != null && status == PlaybackStatus.PAUSED) {
+            line.start();
+            status = PlaybackStatus.PLAYING;
+        }
+    }
+
+    public synchronized void stop() {
+        buffer.cancel();
+        if (line != null) {
+            line.stop();
+            line.flush(); // Unblocks any pending write.
+        }
+        if (playbackThread != null) {
+            playbackThread.interrupt();
+        }
+    }
+
+    public PlaybackStatus getStatus() {
+        return status;
+    }
+
+    /** How much audio the line has actually played so far, in ms. */
+    public synchronized double getPositionMs() {
+        if (line == null) {
+            return 0;
+        }
+        return line.getLongFramePosition() * 1000.0 / SAMPLE_RATE;
+    }
+
+    private void drain(double lengthMs) {
+        float[] samples = new float[BLOCK_SAMPLES];
+        byte[] bytes = new byte[BLOCK_SAMPLES * 2];
+        try {
+            buffer.awaitAvailable(prebufferSamples);
+            if (buffer.isCanceled()) {
+                return;
+            }
+            line.start();
+            onStart.accept(lengthMs);
+            int numRead;
+            while ((numRead = buffer.read(samples, 0, BLOCK_SAMPLES)) > 0) {
+                for (int i = 0; i < numRead; i++) {
+                    int scaled = Math.round(samples[i] * 32768);
+                    short bounded = (short) Math.max(
+                            Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+                    bytes[i * 2] = (byte) bounded; // Little-endian.
+                    bytes[i * 2 + 1] = (byte) (bounded >> 8);
+                }
+                line.write(bytes, 0, numRead * 2);
+            }
+            if (!buffer.isCanceled()) {
+                line.drain(); // Let the last few samples play out.
+            }
+        } catch (InterruptedException e) {
+            // Do nothing. Playback can be stopped at any time.
+        } finally {
+            status = PlaybackStatus.STOPPED;
+            line.close();
+            onEnd.run();
+        }
+    }
+}
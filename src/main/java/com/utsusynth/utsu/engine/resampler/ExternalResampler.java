@@ -0,0 +1,160 @@
+package com.utsusynth.utsu.engine.resampler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.common.utils.PitchUtils;
+import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
+import com.utsusynth.utsu.files.FileNameFixer;
+import com.utsusynth.utsu.model.song.Note;
+import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.voicebank.LyricConfig;
+
+/** Calls an external resampler executable once per note. */
+public class ExternalResampler implements Resampler {
+    private final ExternalProcessRunner runner;
+    private final FileNameFixer fileNameFixer;
+    private File resamplerPath;
+
+    @Inject
+    ExternalResampler(ExternalProcessRunner runner, FileNameFixer fileNameFixer) {
+        this.runner = runner;
+        this.fileNameFixer = fileNameFixer;
+    }
+
+    public File getResamplerPath() {
+        return resamplerPath;
+    }
+
+    public void setResamplerPath(File resamplerPath) {
+        this.resamplerPath = resamplerPath;
+    }
+
+    @Override
+    public void resample(
+            Note note,
+            double noteLength,
+            LyricConfig config,
+            File outputFile,
+            String pitchString,
+            Song song) {
+        // Call resampler.
+        runner.runProcess(getResampleArgs(
+                note,
+                noteLength,
+                config,
+                outputFile.getAbsolutePath(),
+                pitchString,
+                song));
+    }
+
+    /**
+     * Takes into account everything passed to the resampler, as well as when the sample, its
+     * frequency file, and the resampler itself were last modified.
+     */
+    @Override
+    public String getCacheKey(
+            Note note,
+            double noteLength,
+            LyricConfig config,
+            String pitchString,
+            Song song) {
+        File wavFile = config.getPathToFile();
+        String wavName = wavFile.getName();
+        File frqFile = new File(
+                wavFile.getParent(), wavName.substring(0, wavName.length() - 4) + "_wav.frq");
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (String arg : getResampleArgs(note, noteLength, config, "", pitchString, song)) {
+            hasher.putString(arg, StandardCharsets.UTF_8).putChar('\0');
+        }
+        return hasher.putLong(wavFile.lastModified())
+                .putLong(wavFile.length())
+                .putLong(frqFile.lastModified())
+                .putLong(resamplerPath.lastModified())
+                .hash()
+                .toString();
+    }
+
+    private String[] getResampleArgs(
+            Note note,
+            double noteLength,
+            LyricConfig config,
+            String outputFilePath,
+            String pitchString,
+            Song song) {
+        String inputFilePath = fileNameFixer.getFixedName(config.getPathToFile().getAbsolutePath());
+        String pitch = PitchUtils.noteNumToPitch(note.getNoteNum());
+        String consonantVelocity = Double.toString(note.getVelocity());
+        String flags = note.getNoteFlags().isEmpty() ? song.getFlags() : note.getNoteFlags();
+        String offset = Double.toString(config.getOffset());
+        double resampledLength =
+                Math.ceil((noteLength + note.getRealStartPoint() + 25.0) / 50.0 * 50.0);
+        double consonantLength = config.getConsonant(); // TODO: Cutoff?
+        String cutoff = Double.toString(config.getCutoff());
+        String intensity = Integer.toString(note.getIntensity());
+        String modulation = Integer.toString(note.getModulation()); // TODO: Set this song-wide?
+        String tempo = "T" + song.getTempo(); // TODO: Override with note tempo.
+        return new String[] {
+                resamplerPath.getAbsolutePath(),
+                inputFilePath,
+                outputFilePath,
+                pitch,
+                consonantVelocity,
+                flags.isEmpty() ? "?" : flags, // Uses placeholder value if there are no flags.
+                offset,
+                Double.toString(resampledLength),
+                Double.toString(consonantLength),
+                cutoff,
+                intensity,
+                modulation,
+                tempo,
+                pitchString};
+    }
+
+    @Override
+    public void resampleNote(
+            Note note,
+            double noteLength,
+            LyricConfigData config,
+            File outputFile,
+            String pitchString,
+            int tempo) {
+        String inputFilePath = fileNameFixer.getFixedName(config.getPathToFile().getAbsolutePath());
+        String outputFilePath = outputFile.getAbsolutePath();
+        String pitch = PitchUtils.noteNumToPitch(note.getNoteNum());
+        String consonantVelocity = Double.toString(note.getVelocity());
+        String flags = note.getNoteFlags().isEmpty() ? "?" : note.getNoteFlags();
+        String offset = Double.toString(config.offsetProperty().getValue());
+        double consonantLength = config.consonantProperty().getValue();
+        String cutoff = Double.toString(config.cutoffProperty().getValue());
+        String intensity = Integer.toString(note.getIntensity());
+        String modulation = Integer.toString(note.getModulation());
+        String tempoString = "T" + tempo;
+
+        // Call resampler.
+        runner.runProcess(
+                resamplerPath.getAbsolutePath(),
+                inputFilePath,
+                outputFilePath,
+                pitch,
+                consonantVelocity,
+                flags.isEmpty() ? "?" : flags,
+                offset,
+                Double.toString(noteLength),
+                Double.toString(consonantLength),
+                cutoff,
+                intensity,
+                modulation,
+                tempoString,
+                pitchString);
+    }
+
+    @Override
+    public String toString() {
+        return resamplerPath == null ? "" : resamplerPath.getName();
+    }
+}
@@ -0,0 +1,155 @@
+package com.utsusynth.utsu.engine.resampler;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Pitch-shifts and time-stretches a single voicebank sample with TD-PSOLA. Pitch marks are placed
+ * once per period of the sample using its frequency data, then snapped to the nearest peak so
+ * that grains taken from neighboring periods line up with each other.
+ */
+class PsolaSynthesizer {
+    static final double OUTPUT_SAMPLE_RATE = 44100;
+    private static final double MIN_FREQ = 40;
+    private static final double MAX_FREQ = 2000;
+
+    private final float[] samples;
+    private final double sampleRate;
+    private final double[] frequencies; // One F0 value per block of samples, 0 if unvoiced.
+    private final int samplesPerFrq;
+    private final double averageFreq;
+    private final int[] pitchMarks; // Sample indices of each period's peak, in order.
+
+    PsolaSynthesizer(
+            float[] samples,
+            double sampleRate,
+            double[] frequencies,
+            int samplesPerFrq,
+            double averageFreq) {
+        this.samples = samples;
+        this.sampleRate = sampleRate;
+        this.frequencies = frequencies;
+        this.samplesPerFrq = Math.max(1, samplesPerFrq);
+        this.averageFreq = averageFreq;
+        this.pitchMarks = findPitchMarks();
+    }
+
+    double getLengthMs() {
+        return samples.length / sampleRate * 1000;
+    }
+
+    double getAverageFreq() {
+        return averageFreq;
+    }
+
+    /** Whether the sample's F0 is known, rather than assumed to be the average everywhere. */
+    boolean hasFrequencies() {
+        return frequencies.length > 0;
+    }
+
+    /** Returns the sample's F0 at a position, or the average F0 where it is unvoiced. */
+    double getFreqAt(double sampleIndex) {
+        int block = (int) (sampleIndex / samplesPerFrq);
+        if (block >= 0 && block < frequencies.length) {
+            double freq = frequencies[block];
+            if (freq >= MIN_FREQ && freq <= MAX_FREQ) {
+                return freq;
+            }
+        }
+        return averageFreq;
+    }
+
+    /**
+     * Renders numSamples samples at the output sample rate.
+     *
+     * @param sourceMs Maps a time in the output, in ms, to a time in this sample, in ms.
+     * @param targetFreq Maps a time in the output, in ms, and this sample's own F0 at the
+     *        matching time to the F0 the output should have.
+     */
+    float[] render(int numSamples, DoubleUnaryOperator sourceMs, DoubleBinaryOperator targetFreq) {
+        float[] output = new float[Math.max(0, numSamples)];
+        if (samples.length == 0 || pitchMarks.length == 0) {
+            return output;
+        }
+        double sourceStep = sampleRate / OUTPUT_SAMPLE_RATE; // Source samples per output sample.
+        double position = 0; // Position of the next grain in the output.
+        while (position < numSamples) {
+            double timeMs = position / OUTPUT_SAMPLE_RATE * 1000;
+            double sourcePosition = sourceMs.applyAsDouble(timeMs) / 1000 * sampleRate;
+            int mark = pitchMarks[findNearestMark(sourcePosition)];
+            double sourcePeriod = sampleRate / getFreqAt(mark);
+            double outputFreq = targetFreq.applyAsDouble(timeMs, getFreqAt(sourcePosition));
+            double outputPeriod = OUTPUT_SAMPLE_RATE / Math.max(MIN_FREQ, outputFreq);
+
+            // Overlap-add a two-period Hann-windowed grain centered on the pitch mark.
+            double halfWidth = sourcePeriod / sourceStep; // In output samples.
+            double gain = Math.min(1, outputPeriod / halfWidth); // Grains overlap more if raised.
+            int center = (int) Math.round(position);
+            int reach = (int) Math.ceil(halfWidth) - 1;
+            for (int i = Math.max(-reach, -center); i <= reach && center + i < numSamples; i++) {
+                double window = 0.5 + 0.5 * Math.cos(Math.PI * i / halfWidth);
+                output[center + i] += (float) (gain * window * getSample(mark + i * sourceStep));
+            }
+            position += Math.max(1, outputPeriod);
+        }
+        return output;
+    }
+
+    // Linearly interpolates between samples, treating anything out of range as silence.
+    private double getSample(double index) {
+        int floor = (int) Math.floor(index);
+        if (floor < 0 || floor >= samples.length) {
+            return 0;
+        }
+        double next = floor + 1 < samples.length ? samples[floor + 1] : 0;
+        double fraction = index - floor;
+        return samples[floor] * (1 - fraction) + next * fraction;
+    }
+
+    private int findNearestMark(double sourcePosition) {
+        int index = Arrays.binarySearch(pitchMarks, (int) Math.round(sourcePosition));
+        if (index >= 0) {
+            return index;
+        }
+        int after = -index - 1;
+        if (after == 0) {
+            return 0;
+        } else if (after >= pitchMarks.length) {
+            return pitchMarks.length - 1;
+        }
+        double distanceBefore = sourcePosition - pitchMarks[after - 1];
+        double distanceAfter = pitchMarks[after] - sourcePosition;
+        return distanceBefore <= distanceAfter ? after - 1 : after;
+    }
+
+    private int[] findPitchMarks() {
+        int[] marks = new int[16];
+        int numMarks = 0;
+        double predicted = 0;
+        int lastMark = Integer.MIN_VALUE / 2;
+        while (predicted < samples.length) {
+            double period = sampleRate / getFreqAt(predicted);
+            // Snap to the highest peak within a quarter period of where the mark is expected.
+            int start = (int) Math.max(
+                    Math.max(0, lastMark + period / 2), Math.ceil(predicted - period / 4));
+            int end = (int) Math.min(samples.length - 1, Math.floor(predicted + period / 4));
+            int mark = start;
+            for (int i = start + 1; i <= end; i++) {
+                if (samples[i] > samples[mark]) {
+                    mark = i;
+                }
+            }
+            if (mark >= samples.length) {
+                break;
+            }
+            if (numMarks == marks.length) {
+                marks = Arrays.copyOf(marks, marks.length * 2);
+            }
+            marks[numMarks++] = mark;
+            lastMark = mark;
+            predicted = mark + period;
+        }
+        return Arrays.copyOf(marks, numMarks);
+    }
+}
@@ -0,0 +1,43 @@
+package com.utsusynth.utsu.engine.resampler;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import javafx.util.StringConverter;
+
+import java.io.File;
+
+/** Converts a resampler to and from a String. Useful for saving to file. */
+public class ResamplerConverter extends StringConverter<Resampler> {
+    private final UtsuResampler builtInResampler;
+    private final Provider<ExternalResampler> externalResamplerProvider;
+
+    @Inject
+    public ResamplerConverter(
+            UtsuResampler builtInResampler,
+            Provider<ExternalResampler> externalResamplerProvider) {
+        this.builtInResampler = builtInResampler;
+        this.externalResamplerProvider = externalResamplerProvider;
+    }
+
+    public Resampler getBuiltInResampler() {
+        return builtInResampler;
+    }
+
+    @Override
+    public String toString(Resampler resampler) {
+        if (resampler instanceof ExternalResampler) {
+            return ((ExternalResampler) resampler).getResamplerPath().getAbsolutePath();
+        }
+        return resampler.toString();
+    }
+
+    @Override
+    public Resampler fromString(String str) {
+        if (str.equals(builtInResampler.toString())) {
+            return builtInResampler;
+        }
+        ExternalResampler externalResampler = externalResamplerProvider.get();
+        externalResampler.setResamplerPath(new File(str));
+        return externalResampler;
+    }
+}
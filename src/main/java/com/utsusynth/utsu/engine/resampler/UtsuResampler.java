@@ -0,0 +1,317 @@
+package com.utsusynth.utsu.engine.resampler;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import com.utsusynth.utsu.model.song.Note;
+import com.utsusynth.utsu.model.song.Song;
+import com.utsusynth.utsu.model.voicebank.LyricConfig;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Resampler that runs inside Utsu instead of in a separate process. Uses the .frq file next to
+ * each sample to find its pitch, then shifts it to the note's pitch with TD-PSOLA. Resampler flags
+ * are not supported and are ignored.
+ */
+public class UtsuResampler implements Resampler {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int VERSION = 1; // Increment when output changes, to skip stale caches.
+    private static final int MAX_CACHED_SAMPLES = 64;
+    private static final double UNKNOWN_PITCH_FREQ = 100; // Grain rate for samples with no frq.
+
+    private final SoundFileReader soundFileReader;
+    private final SoundFileWriter soundFileWriter;
+    // Decoded voicebank samples, since the same few samples tend to be used over and over.
+    private final Cache<String, Optional<PsolaSynthesizer>> samples;
+
+    @Inject
+    public UtsuResampler(SoundFileReader soundFileReader, SoundFileWriter soundFileWriter) {
+        this.soundFileReader = soundFileReader;
+        this.soundFileWriter = soundFileWriter;
+        this.samples = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SAMPLES).build();
+    }
+
+    @Override
+    public void resample(
+            Note note,
+            double noteLength,
+            LyricConfig config,
+            File outputFile,
+            String pitchString,
+            Song song) {
+        render(
+                config.getPathToFile(),
+                config.getOffset(),
+                config.getConsonant(),
+                config.getCutoff(),
+                note,
+                getResampledLength(note, noteLength),
+                pitchString,
+                song.getTempo(),
+                outputFile);
+    }
+
+    @Override
+    public void resampleNote(
+            Note note,
+            double noteLength,
+            LyricConfigData config,
+            File outputFile,
+            String pitchString,
+            int tempo) {
+        render(
+                config.getPathToFile(),
+                config.offsetProperty().get(),
+                config.consonantProperty().get(),
+                config.cutoffProperty().get(),
+                note,
+                noteLength,
+                pitchString,
+                tempo,
+                outputFile);
+    }
+
+    /**
+     * Takes into account every note and voicebank value used to render, as well as when the
+     * sample and its frequency file were last modified.
+     */
+    @Override
+    public String getCacheKey(
+            Note note,
+            double noteLength,
+            LyricConfig config,
+            String pitchString,
+            Song song) {
+        File wavFile = config.getPathToFile();
+        File frqFile = getFrqFile(wavFile);
+        return Hashing.sha256().newHasher()
+                .putString(toString(), StandardCharsets.UTF_8)
+                .putInt(VERSION)
+                .putString(wavFile.getAbsolutePath(), StandardCharsets.UTF_8)
+                .putLong(wavFile.lastModified())
+                .putLong(wavFile.length())
+                .putLong(frqFile.lastModified())
+                .putDouble(config.getOffset())
+                .putDouble(config.getConsonant())
+                .putDouble(config.getCutoff())
+                .putInt(note.getNoteNum())
+                .putDouble(note.getVelocity())
+                .putInt(note.getIntensity())
+                .putInt(note.getModulation())
+                .putDouble(getResampledLength(note, noteLength))
+                .putDouble(song.getTempo())
+                .putString(pitchString, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
+    private void render(
+            File wavFile,
+            double offsetMs,
+            double consonantMs,
+            double cutoffMs,
+            Note note,
+            double lengthMs,
+            String pitchString,
+            double tempo,
+            File outputFile) {
+        Optional<PsolaSynthesizer> source = getSample(wavFile);
+        if (source.isEmpty()) {
+            System.out.println("Error: Unable to read sample: " + wavFile.getName());
+            return;
+        }
+        PsolaSynthesizer synthesizer = source.get();
+
+        // Find the region of the sample to use. Negative cutoffs are measured from the offset.
+        double sampleMs = synthesizer.getLengthMs();
+        double startMs = Math.max(0, Math.min(sampleMs, offsetMs));
+        double endMs = cutoffMs < 0 ? startMs - cutoffMs : sampleMs - cutoffMs;
+        endMs = Math.max(startMs, Math.min(sampleMs, endMs));
+        double consonantInMs = Math.max(0, Math.min(endMs - startMs, consonantMs));
+
+        // Velocity 100 leaves the consonant as-is, and every 100 above that halves its length.
+        double velocityFactor = Math.pow(2, 1 - note.getVelocity() / 100);
+        double consonantOutMs = Math.min(lengthMs, consonantInMs * velocityFactor);
+        double vowelInMs = endMs - startMs - consonantInMs;
+        double vowelOutMs = lengthMs - consonantOutMs;
+        DoubleUnaryOperator sourceMs = timeMs -> {
+            if (timeMs < consonantOutMs) {
+                return startMs + timeMs / velocityFactor;
+            }
+            double vowelStretch = vowelOutMs > 0 ? vowelInMs / vowelOutMs : 0;
+            return startMs + consonantInMs + (timeMs - consonantOutMs) * vowelStretch;
+        };
+
+        // Modulation 100 keeps all of the sample's own pitch movement, and 0 flattens it.
+        double noteFreq = 440 * Math.pow(2, (note.getNoteNum() - 69) / 12.0);
+        int[] pitchbends = decodePitchbends(pitchString);
+        double msPerPitchStep = 60000 / tempo / 96;
+        double modulation = Math.max(-200, Math.min(200, note.getModulation())) / 100.0;
+        double averageFreq = synthesizer.getAverageFreq();
+        DoubleBinaryOperator targetFreq = (timeMs, sourceFreq) -> {
+            double cents = getPitchbend(pitchbends, timeMs / msPerPitchStep);
+            double fluctuation = Math.pow(sourceFreq / averageFreq, modulation);
+            return noteFreq * Math.pow(2, cents / 1200) * fluctuation;
+        };
+        if (!synthesizer.hasFrequencies()) {
+            targetFreq = (timeMs, sourceFreq) -> sourceFreq; // Can only stretch, not shift.
+        }
+
+        int numSamples = (int) Math.ceil(lengthMs / 1000 * PsolaSynthesizer.OUTPUT_SAMPLE_RATE);
+        float[] output = synthesizer.render(numSamples, sourceMs, targetFreq);
+        float volume = note.getIntensity() / 100f;
+        for (int i = 0; i < output.length; i++) {
+            output[i] *= volume;
+        }
+        soundFileWriter.writeWavData(new WavData(lengthMs, output), outputFile);
+    }
+
+    private Optional<PsolaSynthesizer> getSample(File wavFile) {
+        String key = wavFile.getAbsolutePath() + "|" + wavFile.lastModified();
+        try {
+            return samples.get(key, () -> loadSample(wavFile));
+        } catch (ExecutionException e) {
+            errorLogger.logError(e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<PsolaSynthesizer> loadSample(File wavFile) {
+        Optional<WavData> wavData = soundFileReader.loadWavData(wavFile, status -> {
+            System.out.println(status);
+            return null;
+        });
+        if (wavData.isEmpty() || wavData.get().getLengthMs() <= 0) {
+            return Optional.empty();
+        }
+        double sampleRate = wavData.get().getSamplesPerMs() * 1000;
+        Optional<FrequencyData> frqData = Optional.empty();
+        if (hasFrqFile(wavFile)) {
+            frqData = soundFileReader.loadFrqData(getFrqFile(wavFile), status -> {
+                System.out.println(status);
+                return null;
+            });
+        }
+        if (frqData.isEmpty() || frqData.get().getAverageFreq() <= 0) {
+            System.out.println(
+                    "Warning: No frq data for " + wavFile.getName() + ", pitch will not change.");
+            return Optional.of(new PsolaSynthesizer(
+                    wavData.get().getSamples(), sampleRate, new double[0], 1, UNKNOWN_PITCH_FREQ));
+        }
+        return Optional.of(new PsolaSynthesizer(
+                wavData.get().getSamples(),
+                sampleRate,
+                frqData.get().getFrequencies(),
+                frqData.get().getSamplesPerFreqValue(),
+                frqData.get().getAverageFreq()));
+    }
+
+    private static boolean hasFrqFile(File wavFile) {
+        return getFrqFile(wavFile).canRead();
+    }
+
+    private static File getFrqFile(File wavFile) {
+        String wavName = wavFile.getName();
+        return new File(
+                wavFile.getParent(), wavName.substring(0, wavName.length() - 4) + "_wav.frq");
+    }
+
+    // Matches the rounding used for external resamplers.
+    private static double getResampledLength(Note note, double noteLength) {
+        return Math.ceil((noteLength + note.getRealStartPoint() + 25.0) / 50.0 * 50.0);
+    }
+
+    /**
+     * Decodes a resampler pitch string into one value per pitch step, in cents. Each value is two
+     * base64 characters holding a 12-bit two's complement number, and "#n#" repeats the previous
+     * value n more times.
+     */
+    static int[] decodePitchbends(String pitchString) {
+        int[] values = new int[pitchString.length() / 2 + 1];
+        int numValues = 0;
+        int index = 0;
+        while (index < pitchString.length()) {
+            if (pitchString.charAt(index) == '#') {
+                int end = pitchString.indexOf('#', index + 1);
+                if (end < 0) {
+                    break;
+                }
+                int repeats;
+                try {
+                    repeats = Integer.parseInt(pitchString.substring(index + 1, end));
+                } catch (NumberFormatException e) {
+                    break;
+                }
+                if (numValues > 0 && repeats > 0) {
+                    if (numValues + repeats > values.length) {
+                        values = Arrays.copyOf(
+                                values, Math.max(values.length * 2, numValues + repeats));
+                    }
+                    Arrays.fill(values, numValues, numValues + repeats, values[numValues - 1]);
+                    numValues += repeats;
+                }
+                index = end + 1;
+                continue;
+            }
+            if (index + 1 >= pitchString.length()) {
+                break;
+            }
+            int value = decodeSixBits(pitchString.charAt(index)) * 64
+                    + decodeSixBits(pitchString.charAt(index + 1));
+            if (numValues == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[numValues++] = value >= 2048 ? value - 4096 : value;
+            index += 2;
+        }
+        return Arrays.copyOf(values, numValues);
+    }
+
+    private static int decodeSixBits(char character) {
+        if (character >= 'A' && character <= 'Z') {
+            return character - 'A';
+        } else if (character >= 'a' && character <= 'z') {
+            return character - 'a' + 26;
+        } else if (character >= '0' && character <= '9') {
+            return character - '0' + 52;
+        } else if (character == '+') {
+            return 62;
+        } else if (character == '/') {
+            return 63;
+        }
+        return 0;
+    }
+
+    // Linearly interpolates between pitch steps, holding the first and last values.
+    private static double getPitchbend(int[] pitchbends, double step) {
+        if (pitchbends.length == 0) {
+            return 0;
+        } else if (step <= 0) {
+            return pitchbends[0];
+        } else if (step >= pitchbends.length - 1) {
+            return pitchbends[pitchbends.length - 1];
+        }
+        int floor = (int) step;
+        double fraction = step - floor;
+        return pitchbends[floor] * (1 - fraction) + pitchbends[floor + 1] * fraction;
+    }
+
+    @Override
+    public String toString() {
+        return "Built-in";
+    }
+}
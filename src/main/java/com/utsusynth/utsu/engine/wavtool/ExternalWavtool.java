@@ -1,19 +1,41 @@
 package com.utsusynth.utsu.engine.wavtool;
 
 import java.io.File;
+import java.util.Optional;
+
 import com.google.inject.Inject;
+import com.utsusynth.utsu.common.data.SampleBuffer;
 import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import com.utsusynth.utsu.engine.playback.SampleRingBuffer;
+import com.utsusynth.utsu.files.CacheManager;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
 import com.utsusynth.utsu.model.song.Song;
 import com.utsusynth.utsu.model.song.Note;
 
 public class ExternalWavtool implements Wavtool {
+    private static final int MIN_SILENCE_MS = 128;
+    private static final Object silenceLock = new Object(); // Shared by every external wavtool.
+
     private final ExternalProcessRunner runner;
+    private final CacheManager cacheManager;
+    private final SoundFileReader soundFileReader;
+    private final SoundFileWriter soundFileWriter;
     private File wavtoolPath;
     private double totalDelta = 0; // Total duration in ms, used to debug timing issues.
+    private Optional<SampleRingBuffer> streamBuffer = Optional.empty();
 
     @Inject
-    ExternalWavtool(ExternalProcessRunner runner) {
+    ExternalWavtool(
+            ExternalProcessRunner runner,
+            CacheManager cacheManager,
+            SoundFileReader soundFileReader,
+            SoundFileWriter soundFileWriter) {
         this.runner = runner;
+        this.cacheManager = cacheManager;
+        this.soundFileReader = soundFileReader;
+        this.soundFileWriter = soundFileWriter;
     }
 
     public File getWavtoolPath() {
@@ -29,8 +51,21 @@ public class ExternalWavtool implements Wavtool {
     }
 
     @Override
-    public void startRender(double startDelta) {
+    public void startRender(double startDelta, Priority priority) {
         totalDelta = startDelta;
+        streamBuffer = Optional.empty();
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    public void startStreamingRender(double startDelta, SampleRingBuffer buffer) {
+        // External wavtools only produce a file, so the buffer is filled once it is finished.
+        startRender(startDelta, Priority.PLAYBACK);
+        streamBuffer = Optional.of(buffer);
     }
 
     @Override
@@ -83,13 +118,32 @@ public class ExternalWavtool implements Wavtool {
                 envelope[10], // v5
                 triggerSynthesis ? "LAST_NOTE" : ""); // Triggers final song processing.
         totalDelta += noteLength - boundedOverlap;
+        if (triggerSynthesis) {
+            streamOutputFile(outputFile);
+        }
+    }
+
+    @Override
+    public void addNewNote(
+            Song song,
+            Note note,
+            double noteLength,
+            double expectedDelta,
+            Optional<SampleBuffer> samples,
+            File inputFile,
+            File outputFile,
+            boolean includeOverlap,
+            boolean triggerSynthesis) {
+        // External wavtools only read files, and the input file already holds these samples.
+        samples.ifPresent(SampleBuffer::release);
+        addNewNote(song, note, noteLength, expectedDelta, inputFile, outputFile,
+                includeOverlap, triggerSynthesis);
     }
 
     @Override
     public void addSilence(
             double duration,
             double expectedDelta,
-            File inputFile,
             File outputFile,
             boolean triggerSynthesis) {
         // Check that current length matches expected length and correct any discrepancies.
@@ -106,7 +160,7 @@ public class ExternalWavtool implements Wavtool {
         runner.runProcess(
                 getWavtoolPath().getAbsolutePath(),
                 outputFile.getAbsolutePath(),
-                inputFile.getAbsolutePath(),
+                getSilenceFile(duration).getAbsolutePath(),
                 startPoint,
                 noteLength,
                 envelope[0], // p1
@@ -122,10 +176,54 @@ public class ExternalWavtool implements Wavtool {
                 envelope[10], // v5
                 triggerSynthesis ? "LAST_NOTE" : ""); // Triggers final song processing.
         totalDelta += duration;
+        if (triggerSynthesis) {
+            streamOutputFile(outputFile);
+        }
     }
 
     @Override
     public String toString() {
         return wavtoolPath.getName();
     }
+
+    // Writes the finished output file to the stream buffer, if this render is being streamed.
+    private void streamOutputFile(File outputFile) {
+        if (streamBuffer.isEmpty()) {
+            return;
+        }
+        SampleRingBuffer buffer = streamBuffer.get();
+        streamBuffer = Optional.empty();
+        try {
+            Optional<SampleBuffer> samples = soundFileReader.loadSamples(outputFile);
+            if (samples.isPresent()) {
+                buffer.write(samples.get().getSamples(), 0, samples.get().getLength());
+                samples.get().release();
+            } else {
+                System.out.println("Warning: Unable to read WAV data: " + outputFile.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Let the engine know this render was stopped.
+        } finally {
+            buffer.close(); // Always let the player know that no more samples are coming.
+        }
+    }
+
+    /**
+     * Returns a silent wav at least as long as the given duration. Lengths are rounded up to a
+     * power of two so that a handful of files can be reused for every silence in a song.
+     */
+    private File getSilenceFile(double duration) {
+        int lengthMs = MIN_SILENCE_MS;
+        while (lengthMs < duration + 1 && lengthMs < Integer.MAX_VALUE / 2) {
+            lengthMs *= 2;
+        }
+        File silenceFile = cacheManager.getSilenceCache(lengthMs);
+        synchronized (silenceLock) {
+            if (!silenceFile.exists()) {
+                int numSamples = (int) (lengthMs / 1000.0 * 44100);
+                soundFileWriter.writeSilence(numSamples, silenceFile);
+            }
+        }
+        return silenceFile;
+    }
 }
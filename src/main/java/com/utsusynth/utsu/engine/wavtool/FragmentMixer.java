@@ -0,0 +1,81 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import java.util.Arrays;
+
+/**
+ * Mixes rendered notes into one continuous stream of samples, in order. Each note may overlap the
+ * end of the previous one, so samples are only emitted once no later note can overlap them.
+ */
+class FragmentMixer {
+    /** Receives finished samples in order. */
+    interface Output {
+        void write(float[] samples, int offset, int length) throws InterruptedException;
+
+        default void writeSilence(int length) throws InterruptedException {
+            while (length > 0) {
+                int toWrite = Math.min(length, SILENCE.length);
+                write(SILENCE, 0, toWrite);
+                length -= toWrite;
+            }
+        }
+    }
+
+    private static final float[] SILENCE = new float[4096];
+
+    private final Output output;
+    private float[] tail = new float[0]; // Samples that may still be overlapped.
+    private int tailLength = 0;
+
+    FragmentMixer(Output output) {
+        this.output = output;
+    }
+
+    /**
+     * Adds the first length samples of a fragment, overlapping the end of the previous fragment
+     * by overlapSamples. The fragment is copied, so it can be reused once this returns.
+     */
+    void add(float[] fragment, int overlapSamples, int length) throws InterruptedException {
+        int overlap = Math.max(0, Math.min(overlapSamples, tailLength));
+        int finished = tailLength - overlap;
+        if (finished > 0) {
+            output.write(tail, 0, finished);
+        }
+
+        // Shift the unfinished part of the tail to the front, then mix in the new fragment.
+        int newLength = Math.max(overlap, length);
+        float[] newTail = tail.length >= newLength ? tail : new float[newLength];
+        System.arraycopy(tail, finished, newTail, 0, overlap);
+        Arrays.fill(newTail, overlap, newLength, 0);
+        for (int i = 0; i < length; i++) {
+            if (i < overlap) {
+                newTail[i] += fragment[i];
+            } else {
+                newTail[i] = fragment[i];
+            }
+        }
+        tail = newTail;
+        tailLength = newLength;
+    }
+
+    /**
+     * Adds silence after the previous fragment. Nothing ever overlaps a silence, so it is emitted
+     * right away instead of being stored.
+     */
+    void addSilence(int numSamples) throws InterruptedException {
+        if (tailLength > 0) {
+            output.write(tail, 0, tailLength);
+        }
+        tailLength = 0;
+        if (numSamples > 0) {
+            output.writeSilence(numSamples);
+        }
+    }
+
+    /** Emits any remaining samples. Called once every fragment has been added. */
+    void finish() throws InterruptedException {
+        if (tailLength > 0) {
+            output.write(tail, 0, tailLength);
+        }
+        tailLength = 0;
+    }
+}
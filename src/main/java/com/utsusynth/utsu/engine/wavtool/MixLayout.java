@@ -0,0 +1,143 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Where each fragment of a render lands in the mixed output. Comparing the layouts of two renders
+ * shows which parts of the output changed, so that only those parts need to be mixed again.
+ */
+class MixLayout {
+    private final List<Placement> placements = new ArrayList<>();
+    private final Set<Placement> placementSet = new HashSet<>();
+    private int mixEnd = 0; // End of everything placed so far, in samples.
+    private int tailLength = 0; // Samples at the end that the next fragment may overlap.
+
+    /**
+     * Places a fragment the same way {@link FragmentMixer#add} does.
+     *
+     * @param key Identifies the fragment's samples, or null if they should never be reused.
+     */
+    Placement addNote(String key, int overlapSamples, int length) {
+        int overlap = Math.max(0, Math.min(overlapSamples, tailLength));
+        int start = mixEnd - overlap;
+        tailLength = Math.max(overlap, length);
+        mixEnd = start + tailLength;
+        return add(new Placement(start, length, key));
+    }
+
+    /** Places a silence the same way {@link FragmentMixer#addSilence} does. */
+    Placement addSilence(int numSamples) {
+        Placement placement = new Placement(mixEnd, 0, "silence");
+        mixEnd += Math.max(0, numSamples);
+        tailLength = 0;
+        return add(placement);
+    }
+
+    boolean contains(Placement placement) {
+        return placementSet.contains(placement);
+    }
+
+    /**
+     * Finds every region of this render that may differ from a previous render: anywhere a
+     * fragment was added, removed or changed, plus anything past the end of the previous render.
+     *
+     * @return Sorted, non-overlapping [start, end) sample ranges within [0, numSamples).
+     */
+    List<int[]> findChangedRegions(MixLayout previous, int previousSamples, int numSamples) {
+        List<int[]> regions = new ArrayList<>();
+        for (Placement placement : placements) {
+            if (!previous.contains(placement)) {
+                regions.add(new int[] {placement.start, placement.start + placement.length});
+            }
+        }
+        for (Placement placement : previous.placements) {
+            if (!contains(placement)) {
+                regions.add(new int[] {placement.start, placement.start + placement.length});
+            }
+        }
+        if (previousSamples < numSamples) {
+            regions.add(new int[] {previousSamples, numSamples});
+        }
+        return mergeRegions(regions, numSamples);
+    }
+
+    static List<int[]> mergeRegions(List<int[]> regions, int numSamples) {
+        List<int[]> sorted = new ArrayList<>();
+        for (int[] region : regions) {
+            int start = Math.max(0, region[0]);
+            int end = Math.min(numSamples, region[1]);
+            if (start < end) {
+                sorted.add(new int[] {start, end});
+            }
+        }
+        sorted.sort(Comparator.comparingInt(region -> region[0]));
+        List<int[]> merged = new ArrayList<>();
+        for (int[] region : sorted) {
+            int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && region[0] <= last[1]) {
+                last[1] = Math.max(last[1], region[1]);
+            } else {
+                merged.add(region);
+            }
+        }
+        return Collections.unmodifiableList(merged);
+    }
+
+    private Placement add(Placement placement) {
+        placements.add(placement);
+        if (placement.key != null) {
+            placementSet.add(placement);
+        }
+        return placement;
+    }
+
+    /** One fragment's position in the mix. Fragments with no key never match each other. */
+    static class Placement {
+        private final int start;
+        private final int length;
+        private final String key;
+
+        private Placement(int start, int length, String key) {
+            this.start = start;
+            this.length = length;
+            this.key = key;
+        }
+
+        int getStart() {
+            return start;
+        }
+
+        /** Whether any of this fragment's samples fall within one of the regions. */
+        boolean intersects(List<int[]> regions) {
+            for (int[] region : regions) {
+                if (region[0] < start + length && start < region[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Placement)) {
+                return false;
+            }
+            Placement placement = (Placement) other;
+            return key != null
+                    && start == placement.start
+                    && length == placement.length
+                    && key.equals(placement.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, length, key);
+        }
+    }
+}
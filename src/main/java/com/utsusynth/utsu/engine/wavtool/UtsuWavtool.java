@@ -3,54 +3,127 @@ package com.utsusynth.utsu.engine.wavtool;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.StatusBar;
 import com.utsusynth.utsu.common.data.EnvelopeData;
+import com.utsusynth.utsu.common.data.SampleBuffer;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.utils.RoundUtils;
+import com.utsusynth.utsu.engine.common.RenderJob;
+import com.utsusynth.utsu.engine.common.RenderScheduler;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import com.utsusynth.utsu.engine.playback.SampleRingBuffer;
+import com.utsusynth.utsu.engine.wavtool.MixLayout.Placement;
 import com.utsusynth.utsu.files.voicebank.SoundFileReader;
 import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import com.utsusynth.utsu.files.voicebank.WavFileWriter;
 import com.utsusynth.utsu.model.song.Note;
 import com.utsusynth.utsu.model.song.Song;
-import javafx.util.Pair;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.*;
 
 public class UtsuWavtool implements Wavtool {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    // Marks the end of a streaming render.
+    private static final Future<Fragment> END_OF_RENDER =
+            CompletableFuture.completedFuture(null);
 
     private final StatusBar statusBar;
-    private final int threadPoolSize;
+    private final RenderScheduler renderScheduler;
+    private final SampleBufferPool sampleBufferPool;
     private final SoundFileReader soundFileReader;
     private final SoundFileWriter soundFileWriter;
-    private final ArrayList<Future<Pair<Double, WavData>>> futures = new ArrayList<>();
-    private double startDelta = 0; // Start duration in ms.
-    private double totalDelta = 0; // Total duration in ms, used to debug timing issues.
-    private ExecutorService threadPool;
+    // Every call for one render comes from the same thread, so each render keeps its own state.
+    private final ThreadLocal<Render> currentRender = new ThreadLocal<>();
+    private final Map<Priority, Render> latestRenders = new EnumMap<>(Priority.class);
+    private volatile PreviousMix previousMix; // Unchanged parts are copied from here.
 
     @Inject
     public UtsuWavtool(
             StatusBar statusBar,
-            int threadPoolSize,
+            RenderScheduler renderScheduler,
+            SampleBufferPool sampleBufferPool,
             SoundFileReader soundFileReader,
             SoundFileWriter soundFileWriter) {
         this.statusBar = statusBar;
-        this.threadPoolSize = threadPoolSize;
+        this.renderScheduler = renderScheduler;
+        this.sampleBufferPool = sampleBufferPool;
         this.soundFileReader = soundFileReader;
         this.soundFileWriter = soundFileWriter;
     }
 
     @Override
-    public void startRender(double startDelta) {
-        futures.clear();
-        if (threadPool != null && !threadPool.isTerminated()) {
-            threadPool.shutdownNow();
+    public void startRender(double startDelta, Priority priority) {
+        Render render = new Render(startDelta, priority, renderScheduler.startJob(priority));
+        // Exports are written a chunk at a time, so they never start from a copy of the whole mix.
+        render.reusePreviousMix = priority != Priority.EXPORT && hasReusableRender(startDelta);
+        synchronized (latestRenders) {
+            // Stop work on any earlier render in the same lane, since nobody is waiting for it.
+            Render previous = latestRenders.put(priority, render);
+            if (previous != null) {
+                previous.cancel();
+            }
+        }
+        currentRender.set(render);
+    }
+
+    @Override
+    public boolean hasReusableRender(double startDelta) {
+        PreviousMix previous = previousMix;
+        return previous != null && previous.startDelta == startDelta;
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    public void startStreamingRender(double startDelta, SampleRingBuffer buffer) {
+        startRender(startDelta, Priority.PLAYBACK);
+        Render render = currentRender.get();
+        render.reusePreviousMix = false; // Every note is streamed, so nothing is reused.
+        // Mixing waits on notes from the scheduler, so it gets a thread of its own.
+        FutureTask<WavData> mixTask = new FutureTask<>(() -> mixStream(render, buffer));
+        render.streamMixerThread = new Thread(mixTask, "StreamMixer");
+        render.streamMixerThread.setDaemon(true);
+        render.streamMixerThread.start();
+        render.streamMixer = mixTask;
+    }
+
+    @Override
+    public void addNewNote(
+            Song song,
+            Note note,
+            double noteLength,
+            double expectedDelta,
+            File inputFile,
+            File outputFile,
+            boolean includeOverlap,
+            boolean triggerSynthesis) {
+        addNote(note, noteLength, expectedDelta, includeOverlap, inputFile, () -> {
+            Optional<SampleBuffer> samples = soundFileReader.loadSamples(inputFile);
+            if (samples.isEmpty()) {
+                System.out.println("Warning: Unable to read WAV data: " + inputFile.getName());
+            }
+            return samples;
+        });
+        if (triggerSynthesis) {
+            saveToOutputFile(outputFile);
         }
-        threadPool = Executors.newFixedThreadPool(threadPoolSize);
-        this.startDelta = startDelta;
-        totalDelta = startDelta;
+    }
+
+    @Override
+    public boolean supportsSampleInput() {
+        return true;
     }
 
     @Override
@@ -59,10 +132,25 @@ public class UtsuWavtool implements Wavtool {
             Note note,
             double noteLength,
             double expectedDelta,
+            Optional<SampleBuffer> samples,
             File inputFile,
             File outputFile,
             boolean includeOverlap,
             boolean triggerSynthesis) {
+        addNote(note, noteLength, expectedDelta, includeOverlap, inputFile, () -> samples);
+        if (triggerSynthesis) {
+            saveToOutputFile(outputFile);
+        }
+    }
+
+    private void addNote(
+            Note note,
+            double noteLength,
+            double expectedDelta,
+            boolean includeOverlap,
+            File inputFile,
+            Callable<Optional<SampleBuffer>> loadSamples) {
+        Render render = currentRender.get();
         double boundedOverlap = Math.max(0, Math.min(note.getFadeIn(), noteLength));
         // Ignore overlap if current note doesn't touch previous one.
         if (!includeOverlap) {
@@ -70,42 +158,62 @@ public class UtsuWavtool implements Wavtool {
         }
 
         // Check that current length matches expected length and correct any discrepancies.
-        if (expectedDelta > totalDelta && Math.abs(expectedDelta - totalDelta) > 0.01) {
-            double timingCorrection = expectedDelta - totalDelta;
+        if (expectedDelta > render.totalDelta
+                && Math.abs(expectedDelta - render.totalDelta) > 0.01) {
+            double timingCorrection = expectedDelta - render.totalDelta;
             if (boundedOverlap > timingCorrection) {
                 // Disable for now.
                 // boundedOverlap -= timingCorrection;
                 System.out.println("Would correct note timing by " + timingCorrection + " ms.");
             }
         }
-        totalDelta += noteLength - boundedOverlap;
+        render.totalDelta += noteLength - boundedOverlap;
 
         final double finalOverlap = boundedOverlap;
         final int numSamples = Math.max(0, msToNumSamples(noteLength));
-        futures.add(threadPool.submit(() -> {
-            // Files are often not ready to read immediately after the resampler finishes.
-            // Putting a wait here reduces data race errors without significantly impacting
-            // render time.
-            Thread.sleep(100);
-            Optional<WavData> wavData = soundFileReader.loadWavData(inputFile, message -> null);
-            if (wavData.isEmpty()) {
-                System.out.println("Warning: Unable to read WAV data: " + inputFile.getName());
-                WavData silenceWav = new WavData(noteLength, new double[numSamples]);
-                return new Pair<>(0.0, silenceWav);
+        Placement placement = render.layout.addNote(
+                getFragmentKey(inputFile, noteLength, note.getEnvelope()),
+                msToNumSamples(finalOverlap),
+                numSamples);
+        Callable<Fragment> renderFragment = () -> {
+            Optional<SampleBuffer> samples = loadSamples.call();
+            if (samples.isEmpty()) {
+                // Kept as samples, since the next note may overlap it.
+                SampleBuffer silence = sampleBufferPool.acquire(numSamples);
+                Arrays.fill(silence.getSamples(), 0, numSamples, 0);
+                silence.setLength(numSamples);
+                return Fragment.ofNote(0, silence);
             }
-            if (wavData.get().getLengthMs() < noteLength) {
+            if (samples.get().getLengthMs() < noteLength) {
                 // Will truncate or pad with zeroes to get to the desired length.
                 System.out.println("Warning: Input not is not long enough: "
-                        + wavData.get().getLengthMs() + " < " + noteLength);
+                        + samples.get().getLengthMs() + " < " + noteLength);
+            }
+            // Work on the input's own buffer when it is big enough, so the note is never copied.
+            SampleBuffer buffer = samples.get();
+            if (buffer.getSamples().length < numSamples) {
+                SampleBuffer larger = sampleBufferPool.acquire(numSamples);
+                System.arraycopy(
+                        buffer.getSamples(), 0, larger.getSamples(), 0, buffer.getLength());
+                larger.setLength(buffer.getLength());
+                buffer.release();
+                buffer = larger;
             }
-            WavData truncatedWav =
-                    new WavData(noteLength, Arrays.copyOf(wavData.get().getSamples(), numSamples));
-            WavData scaledWav = applyEnvelope(truncatedWav, note.getEnvelope());
+            int numToKeep = Math.min(numSamples, buffer.getLength());
+            Arrays.fill(buffer.getSamples(), numToKeep, numSamples, 0);
+            buffer.setLength(numSamples);
+            applyEnvelope(buffer.getSamples(), numSamples, noteLength, note.getEnvelope());
 
-            return new Pair<>(finalOverlap, scaledWav);
-        }));
-        if (triggerSynthesis) {
-            saveToOutputFile(outputFile);
+            return Fragment.ofNote(finalOverlap, buffer);
+        };
+        if (!render.reusePreviousMix) {
+            render.futures.add(render.renderJob.submit(renderFragment));
+        } else if (previousMix.layout.contains(placement)) {
+            // Unchanged, so only rendered if it overlaps a part of the song that did change.
+            render.pendingFragments.add(new PendingFragment(placement, renderFragment));
+        } else {
+            render.pendingFragments.add(
+                    new PendingFragment(placement, render.renderJob.submit(renderFragment)));
         }
     }
 
@@ -113,23 +221,24 @@ public class UtsuWavtool implements Wavtool {
     public void addSilence(
             double duration,
             double expectedDelta,
-            File inputFile,
             File outputFile,
             boolean triggerSynthesis) {
+        Render render = currentRender.get();
         // Check that current length matches expected length and correct any discrepancies.
-        if (expectedDelta > totalDelta && Math.abs(expectedDelta - totalDelta) > 0.01) {
-            double timingCorrection = expectedDelta - totalDelta;
+        if (expectedDelta > render.totalDelta
+                && Math.abs(expectedDelta - render.totalDelta) > 0.01) {
+            double timingCorrection = expectedDelta - render.totalDelta;
             duration += timingCorrection;
             System.out.println("Corrected timing by " + timingCorrection + " ms.");
         }
-        final double finalDuration = duration;
-        final int numSamples = msToNumSamples(duration);
-        totalDelta += duration;
+        render.totalDelta += duration;
 
-        futures.add(threadPool.submit(() -> {
-            WavData silenceWav = new WavData(finalDuration, new double[numSamples]);
-            return new Pair<>(0.0, silenceWav);
-        }));
+        int numSamples = msToNumSamples(duration);
+        render.layout.addSilence(numSamples);
+        if (!render.reusePreviousMix) {
+            // Silence has nothing to render, so it is ready to mix immediately.
+            render.futures.add(CompletableFuture.completedFuture(Fragment.ofSilence(numSamples)));
+        }
         if (triggerSynthesis) {
             saveToOutputFile(outputFile);
         }
@@ -140,28 +249,37 @@ public class UtsuWavtool implements Wavtool {
         return "Default";
     }
 
-    private WavData applyEnvelope(WavData wavData, EnvelopeData envelopeData) {
+    // Identifies a note's samples, or returns null if there is no way to tell if they changed.
+    private static String getFragmentKey(
+            File inputFile, double noteLength, EnvelopeData envelopeData) {
+        if (inputFile == null || !inputFile.exists()) {
+            return null;
+        }
+        return inputFile.getAbsolutePath() + "|" + inputFile.lastModified() + "|"
+                + inputFile.length() + "|" + noteLength + "|"
+                + Arrays.toString(envelopeData.getWidths())
+                + Arrays.toString(envelopeData.getHeights());
+    }
+
+    // Scales the first numSamples samples by the note's envelope, in place.
+    private static void applyEnvelope(
+            float[] samples, int numSamples, double lengthMs, EnvelopeData envelopeData) {
         double[] widths = envelopeData.getWidths();
-        double[] result = new double[wavData.getSamples().length];
-        double samplesPerMs = wavData.getSamplesPerMs();
+        double samplesPerMs = numSamples / lengthMs;
         int[] xValues = new int[8];
         xValues[0] = 0;
         xValues[1] = RoundUtils.round(widths[0] * samplesPerMs);
         xValues[2] = RoundUtils.round((widths[0] + widths[1]) * samplesPerMs);
         xValues[3] = RoundUtils.round((widths[0] + widths[1] + widths[4]) * samplesPerMs);
-        xValues[4] = RoundUtils.round((wavData.getLengthMs() - widths[2] - widths[3]) * samplesPerMs);
-        xValues[5] = RoundUtils.round((wavData.getLengthMs() - widths[3]) * samplesPerMs);
-        xValues[6] = Math.max(xValues[5], wavData.getSamples().length - 400); // Final phase out.
-        xValues[7] = wavData.getSamples().length;
+        xValues[4] = RoundUtils.round((lengthMs - widths[2] - widths[3]) * samplesPerMs);
+        xValues[5] = RoundUtils.round((lengthMs - widths[3]) * samplesPerMs);
+        xValues[6] = Math.max(xValues[5], numSamples - 400); // Final phase out.
+        xValues[7] = numSamples;
 
         // Ensure envelope values are strictly and don't exceed note length.
-        xValues[1] = Math.min(Math.max(xValues[1], xValues[0]), wavData.getSamples().length);
-        xValues[2] = Math.min(Math.max(xValues[2], xValues[1]), wavData.getSamples().length);
-        xValues[3] = Math.min(Math.max(xValues[3], xValues[2]), wavData.getSamples().length);
-        xValues[4] = Math.min(Math.max(xValues[4], xValues[3]), wavData.getSamples().length);
-        xValues[5] = Math.min(Math.max(xValues[5], xValues[4]), wavData.getSamples().length);
-        xValues[6] = Math.min(Math.max(xValues[6], xValues[5]), wavData.getSamples().length);
-        xValues[7] = Math.min(Math.max(xValues[7], xValues[6]), wavData.getSamples().length);
+        for (int i = 1; i < xValues.length; i++) {
+            xValues[i] = Math.min(Math.max(xValues[i], xValues[i - 1]), numSamples);
+        }
 
         double[] yValues = new double[8];
         yValues[0] = 0;
@@ -180,51 +298,322 @@ public class UtsuWavtool implements Wavtool {
                 double ratio = (xValue - minX) * 1.0 / (maxX - minX);
                 // The value to multiply a sample by.
                 double yValue = (yValues[segment] * (1 - ratio)) + (yValues[segment + 1] * ratio);
-                result[xValue] = wavData.getSamples()[xValue] * yValue;
-                result[xValue] = Math.min(1, Math.max(-1, result[xValue])); // Clamp to [-1,1].
+                double result = samples[xValue] * yValue;
+                samples[xValue] = (float) Math.min(1, Math.max(-1, result)); // Clamp to [-1,1].
             }
         }
-        return new WavData(wavData.getLengthMs(), result);
     }
 
-    // Asyncronously apply synthesis and return the comined wav.
-    private WavData synthesize() throws ExecutionException, InterruptedException {
-        double durationMs = totalDelta - startDelta;
+    // Copies the previous mix and re-mixes only the parts of it that changed.
+    private WavData remix(Render render) throws ExecutionException, InterruptedException {
+        double durationMs = render.totalDelta - render.startDelta;
         int numSamples = msToNumSamples(durationMs);
-        double[] combinedSamples = new double[numSamples];
-        int curSample = 0;
-        for (int i = 0; i < futures.size(); i++) {
-            double curProgress = i * 1.0 / futures.size();
+        float[] samples = new float[numSamples];
+        PreviousMix previous = previousMix;
+        List<int[]> changedRegions = render.layout.findChangedRegions(
+                previous.layout, previous.samples.length, numSamples);
+        System.arraycopy(
+                previous.samples, 0, samples, 0, Math.min(numSamples, previous.samples.length));
+        int numChanged = 0;
+        for (int[] region : changedRegions) {
+            Arrays.fill(samples, region[0], region[1], 0);
+            numChanged += region[1] - region[0];
+        }
+        System.out.println("Re-mixing " + numChanged + " of " + numSamples + " samples.");
+
+        List<PendingFragment> toMix = new ArrayList<>();
+        for (PendingFragment fragment : render.pendingFragments) {
+            if (fragment.placement.intersects(changedRegions)) {
+                fragment.submit(render.renderJob);
+                toMix.add(fragment);
+            }
+        }
+        for (int i = 0; i < toMix.size(); i++) {
+            double curProgress = i * 1.0 / toMix.size();
             statusBar.setProgressAsync(curProgress);
 
-            WavData fragment = futures.get(i).get().getValue();
-            double overlapMs = futures.get(i).get().getKey();
-            int overlapSamples = msToNumSamples(overlapMs);
-            curSample = Math.min(numSamples, Math.max(0, curSample - overlapSamples));
-            int samplesToWrite = Math.min(fragment.getSamples().length, numSamples - curSample);
-            int firstSample = curSample;
-            int lastSample = curSample + samplesToWrite - 1; // Off-by-1 error.
-            for (; curSample <= lastSample; curSample++) {
-                if (curSample < firstSample + overlapSamples) {
-                    combinedSamples[curSample] += fragment.getSamples()[curSample - firstSample];
-                } else {
-                    combinedSamples[curSample] = fragment.getSamples()[curSample - firstSample];
+            PendingFragment fragment = toMix.get(i);
+            fragment.future.get().mixInto(samples, fragment.placement.getStart(), changedRegions);
+        }
+        render.pendingFragments.clear();
+        previousMix = new PreviousMix(render.startDelta, render.layout, samples);
+        return new WavData(durationMs, samples);
+    }
+
+    // Mixes notes in order, writing each chunk to the file once no later note can change it.
+    private void mixToFile(Render render, File outputFile)
+            throws ExecutionException, InterruptedException, IOException {
+        int numSamples = msToNumSamples(render.totalDelta - render.startDelta);
+        // Exports are never re-mixed, so only other renders keep the whole mix in memory.
+        SampleCollector collector =
+                render.priority == Priority.EXPORT ? null : new SampleCollector();
+        try (WavFileWriter writer = WavFileWriter.create(outputFile)) {
+            FileOutput output = new FileOutput(writer, collector, numSamples);
+            FragmentMixer mixer = new FragmentMixer(output);
+            int numFragments = render.futures.size();
+            for (int i = 0; i < numFragments; i++) {
+                statusBar.setProgressAsync(i * 1.0 / numFragments);
+                render.futures.take().get().addTo(mixer);
+            }
+            mixer.finish();
+            output.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (collector != null) {
+            previousMix = new PreviousMix(
+                    render.startDelta, render.layout, collector.getSamples(numSamples));
+        }
+    }
+
+    // Mixes notes as soon as they are ready, writing finished samples to the buffer.
+    private WavData mixStream(Render render, SampleRingBuffer buffer)
+            throws ExecutionException, InterruptedException {
+        SampleCollector collector = new SampleCollector();
+        FragmentMixer mixer = new FragmentMixer((samples, offset, length) -> {
+            collector.write(samples, offset, length);
+            buffer.write(samples, offset, length);
+        });
+        try {
+            while (true) {
+                Future<Fragment> future =
+                        render.futures.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    if (buffer.isCanceled()) {
+                        // Playback was stopped before the engine finished scheduling notes.
+                        throw new CancellationException("Streaming render canceled.");
+                    }
+                    continue;
                 }
+                if (future == END_OF_RENDER) {
+                    break;
+                }
+                future.get().addTo(mixer);
             }
+            mixer.finish();
+        } finally {
+            buffer.close(); // Always let the player know that no more samples are coming.
         }
-        return new WavData(durationMs, combinedSamples);
+        double durationMs = render.totalDelta - render.startDelta;
+        float[] samples = collector.getSamples(msToNumSamples(durationMs));
+        previousMix = new PreviousMix(render.startDelta, render.layout, samples);
+        return new WavData(durationMs, samples);
     }
 
     private void saveToOutputFile(File outputFile) {
+        Render render = currentRender.get();
         try {
-            WavData combinedWav = synthesize();
-            soundFileWriter.writeWavData(combinedWav, outputFile);
-        } catch (InterruptedException | ExecutionException e) {
+            if (render.streamMixer != null) {
+                render.futures.add(END_OF_RENDER);
+                soundFileWriter.writeWavData(render.streamMixer.get(), outputFile);
+            } else if (render.reusePreviousMix) {
+                soundFileWriter.writeWavData(remix(render), outputFile);
+            } else {
+                mixToFile(render, outputFile);
+            }
+        } catch (InterruptedException
+                | ExecutionException
+                | CancellationException
+                | IOException e) {
             System.out.println("Wavtool run failed or was canceled.");
             errorLogger.logError(e);
-            threadPool.shutdownNow();  // Cancel all other tasks.
+            render.cancel(); // Cancel all other tasks.
+        }
+    }
+
+    /** State of one render, from startRender until its output is saved. */
+    private static class Render {
+        private final double startDelta; // Start duration in ms.
+        private final Priority priority;
+        private final RenderJob renderJob;
+        // Every fragment in order, unless the previous mix is reused.
+        private final LinkedBlockingQueue<Future<Fragment>> futures = new LinkedBlockingQueue<>();
+        // Only used when the previous mix is reused.
+        private final List<PendingFragment> pendingFragments = new ArrayList<>();
+        private final MixLayout layout = new MixLayout();
+        private double totalDelta; // Total duration in ms, used to debug timing issues.
+        private boolean reusePreviousMix = false;
+        private Thread streamMixerThread;
+        private Future<WavData> streamMixer; // Only set when streaming.
+
+        private Render(double startDelta, Priority priority, RenderJob renderJob) {
+            this.startDelta = startDelta;
+            this.priority = priority;
+            this.renderJob = renderJob;
+            this.totalDelta = startDelta;
+        }
+
+        private void cancel() {
+            renderJob.cancel();
+            if (streamMixerThread != null && streamMixerThread.isAlive()) {
+                streamMixerThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Samples of a rendered note, or a stretch of silence that has no samples of its own. A note's
+     * samples go back to their pool once the note is mixed, so each fragment is only mixed once.
+     */
+    private static class Fragment {
+        private final double overlapMs;
+        private final SampleBuffer samples; // Null for silence.
+        private final int numSilentSamples;
+
+        private Fragment(double overlapMs, SampleBuffer samples, int numSilentSamples) {
+            this.overlapMs = overlapMs;
+            this.samples = samples;
+            this.numSilentSamples = numSilentSamples;
+        }
+
+        private static Fragment ofNote(double overlapMs, SampleBuffer samples) {
+            return new Fragment(overlapMs, samples, 0);
+        }
+
+        private static Fragment ofSilence(int numSamples) {
+            return new Fragment(0, null, numSamples);
+        }
+
+        private void addTo(FragmentMixer mixer) throws InterruptedException {
+            if (samples == null) {
+                mixer.addSilence(numSilentSamples);
+            } else {
+                mixer.add(samples.getSamples(), msToNumSamples(overlapMs), samples.getLength());
+                samples.release();
+            }
+        }
+
+        // Adds the samples that fall within the regions to output, starting at start.
+        private void mixInto(float[] output, int start, List<int[]> regions) {
+            if (samples == null) {
+                return;
+            }
+            float[] source = samples.getSamples();
+            for (int[] region : regions) {
+                int from = Math.max(region[0], start);
+                int to = Math.min(region[1], start + samples.getLength());
+                for (int i = from; i < to; i++) {
+                    output[i] += source[i - start];
+                }
+            }
+            samples.release();
+        }
+    }
+
+    /** A note that is rendered right away, or only once it turns out to be needed. */
+    private static class PendingFragment {
+        private final Placement placement;
+        private final Callable<Fragment> render;
+        private Future<Fragment> future;
+
+        private PendingFragment(Placement placement, Future<Fragment> future) {
+            this.placement = placement;
+            this.render = null;
+            this.future = future;
+        }
+
+        private PendingFragment(Placement placement, Callable<Fragment> render) {
+            this.placement = placement;
+            this.render = render;
+            this.future = null;
+        }
+
+        private void submit(RenderJob renderJob) {
+            if (future == null) {
+                future = renderJob.submit(render);
+            }
+        }
+    }
+
+    /** The output of the last successful render, along with where each note landed in it. */
+    private static class PreviousMix {
+        private final double startDelta;
+        private final MixLayout layout;
+        private final float[] samples; // Never modified once the render is done.
+
+        private PreviousMix(double startDelta, MixLayout layout, float[] samples) {
+            this.startDelta = startDelta;
+            this.layout = layout;
+            this.samples = samples;
+        }
+    }
+
+    /** Collects mixed samples into one array, growing it as needed. */
+    private static class SampleCollector implements FragmentMixer.Output {
+        private float[] samples = new float[0];
+        private int numWritten = 0;
+
+        @Override
+        public void write(float[] source, int offset, int length) {
+            reserve(length);
+            System.arraycopy(source, offset, samples, numWritten, length);
+            numWritten += length;
+        }
+
+        @Override
+        public void writeSilence(int length) {
+            // Unwritten samples are already zero, so there is nothing to copy.
+            reserve(length);
+            numWritten += length;
+        }
+
+        private void reserve(int length) {
+            if (numWritten + length > samples.length) {
+                samples = Arrays.copyOf(
+                        samples, Math.max(numWritten + length, samples.length * 2));
+            }
+        }
+
+        // Returns exactly numSamples samples, truncating or padding with silence as needed.
+        private float[] getSamples(int numSamples) {
+            return samples.length == numSamples ? samples : Arrays.copyOf(samples, numSamples);
+        }
+    }
+
+    /** Writes mixed samples to a file, stopping once the expected number has been written. */
+    private static class FileOutput implements FragmentMixer.Output {
+        private final WavFileWriter writer;
+        private final SampleCollector collector; // Null if the mix is not kept.
+        private int numRemaining;
+
+        private FileOutput(WavFileWriter writer, SampleCollector collector, int numSamples) {
+            this.writer = writer;
+            this.collector = collector;
+            this.numRemaining = numSamples;
+        }
+
+        @Override
+        public void write(float[] samples, int offset, int length) {
+            int toWrite = Math.min(length, numRemaining);
+            try {
+                writer.write(samples, offset, toWrite);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (collector != null) {
+                collector.write(samples, offset, toWrite);
+            }
+            numRemaining -= toWrite;
+        }
+
+        @Override
+        public void writeSilence(int length) {
+            int toWrite = Math.min(length, numRemaining);
+            try {
+                writer.writeSilence(toWrite);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (collector != null) {
+                collector.writeSilence(toWrite);
+            }
+            numRemaining -= toWrite;
+        }
+
+        // Pads the file with silence if the notes ended early.
+        private void finish() {
+            writeSilence(numRemaining);
         }
-        threadPool.shutdown();
     }
 
     private static int msToNumSamples(double lengthMs) {
@@ -1,13 +1,31 @@
 package com.utsusynth.utsu.engine.wavtool;
 
+import com.utsusynth.utsu.common.data.SampleBuffer;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import com.utsusynth.utsu.engine.playback.SampleRingBuffer;
 import com.utsusynth.utsu.model.song.Note;
 import com.utsusynth.utsu.model.song.Song;
 
 import java.io.File;
+import java.util.Optional;
 
 public interface Wavtool {
-    /* Called when starting a new render. */
-    void startRender(double startDelta);
+    /*
+     * Called when starting a new render. Every other call for the render comes from the thread
+     * that started it. Starting a render stops any earlier render with the same priority.
+     */
+    void startRender(double startDelta, Priority priority);
+
+    /* Whether this wavtool can stream mixed samples while it is still rendering. */
+    default boolean supportsStreaming() {
+        return false;
+    }
+
+    /*
+     * Called when starting a new playback render whose samples should also be written to a buffer.
+     * The buffer is closed once every sample has been written.
+     */
+    void startStreamingRender(double startDelta, SampleRingBuffer buffer);
 
     /* Add a note to the final file. */
     void addNewNote(
@@ -20,11 +38,39 @@ public interface Wavtool {
             boolean includeOverlap,
             boolean triggerSynthesis);
 
-    /* Add a silence to the final file. */
+    /* Whether this wavtool can mix notes that are already loaded into memory. */
+    default boolean supportsSampleInput() {
+        return false;
+    }
+
+    /*
+     * Add a note whose input file is already loaded into memory. The wavtool releases the samples.
+     * Only called if the wavtool supports sample input.
+     */
+    void addNewNote(
+            Song song,
+            Note note,
+            double noteLength,
+            double expectedDelta,
+            Optional<SampleBuffer> samples,
+            File inputFile,
+            File outputFile,
+            boolean includeOverlap,
+            boolean triggerSynthesis);
+
+    /*
+     * Whether the next render starting at startDelta can copy unchanged parts of the previous
+     * render instead of mixing them again. If so, notes are best added as files so that unchanged
+     * ones are never read.
+     */
+    default boolean hasReusableRender(double startDelta) {
+        return false;
+    }
+
+    /* Add a silence to the final file. Wavtools supply their own silent audio if they need any. */
     void addSilence(
             double duration,
             double expectedDelta,
-            File inputFile,
             File outputFile,
             boolean triggerSynthesis);
 }
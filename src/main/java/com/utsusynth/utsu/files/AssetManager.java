@@ -66,7 +66,6 @@ public class AssetManager {
             System.out.println("Error: Failed to create sounds path.");
             return false;
         }
-        copyFile(SOUNDS_SOURCE, soundsPath, "silence.wav", "SILENCE_WAV");
         copyFile(SOUNDS_SOURCE, soundsPath, "piano.wav", "PIANO_WAV");
         initializeVoicebank();
 
@@ -132,10 +131,6 @@ public class AssetManager {
         }
     }
 
-    public File getSilenceFile() {
-        return new File(soundsPath, "silence.wav");
-    }
-
     public File getPianoFile() {
         return new File(soundsPath, "piano.wav");
     }
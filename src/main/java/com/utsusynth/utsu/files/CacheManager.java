@@ -5,26 +5,39 @@ import com.utsusynth.utsu.UtsuModule.SettingsPath;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
 
 public class CacheManager {
+    private static final long MAX_NOTE_CACHE_BYTES = 1024L * 1024 * 1024; // 1 GB.
+    private static final String NOTE_INDEX_NAME = "index.txt";
+
     private final File cachePath;
+    private final File noteCachePath; // Note renders that are kept between sessions.
+
+    // Sizes of persistent note renders, from least to most recently used.
+    private final LinkedHashMap<String, Long> noteCacheSizes;
+    private long noteCacheBytes = 0;
 
     @Inject
     public CacheManager(@SettingsPath File settingsPath) {
         cachePath = new File(settingsPath, "cache");
+        noteCachePath = new File(cachePath, "notes");
+        noteCacheSizes = new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
     }
 
     /**
      * Should be called once when application loads.
      */
     public boolean initializeCache() {
-        if (!cachePath.exists() && !cachePath.mkdirs()) {
+        if (!noteCachePath.exists() && !noteCachePath.mkdirs()) {
             System.out.println("Error: Failed to create cache path.");
             return false;
         }
         clearAllCacheValues();
+        loadNoteCacheIndex();
         return true;
     }
 
@@ -40,12 +53,138 @@ public class CacheManager {
         return noteCache;
     }
 
-    public File createSilenceCache() {
-        File silenceCache = new File(cachePath, UUID.randomUUID() + "_silence.wav");
+    /**
+     * Location of a reusable silent file of the given length. The file may not exist yet.
+     */
+    public File getSilenceCache(int lengthMs) {
+        File silenceCache = new File(cachePath, "silence_" + lengthMs + "ms.wav");
         silenceCache.deleteOnExit();
         return silenceCache;
     }
 
+    /**
+     * Finds a persistent note render by its key, if one exists.
+     */
+    public synchronized Optional<File> getNoteCache(String key) {
+        if (!noteCacheSizes.containsKey(key)) {
+            return Optional.empty();
+        }
+        File noteCache = getPersistentNoteFile(key);
+        if (!noteCache.canRead()) {
+            noteCacheBytes -= noteCacheSizes.remove(key);
+            return Optional.empty();
+        }
+        noteCacheSizes.get(key); // Marks this render as recently used.
+        return Optional.of(noteCache);
+    }
+
+    /**
+     * Moves a rendered note into the persistent cache, evicting old renders if necessary.
+     *
+     * @return The file where the rendered note can now be found.
+     */
+    public synchronized File saveNoteCache(String key, File renderedNote) {
+        File noteCache = getPersistentNoteFile(key);
+        try {
+            Files.move(
+                    renderedNote.toPath(),
+                    noteCache.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // This is expected if an identical note is being read while it is replaced.
+            return renderedNote;
+        }
+        Long oldSize = noteCacheSizes.put(key, noteCache.length());
+        noteCacheBytes += noteCache.length() - (oldSize == null ? 0 : oldSize);
+        evictNoteCaches(key);
+        return noteCache;
+    }
+
+    /**
+     * Lets go of a rendered note. Temporary renders are deleted while persistent ones are kept
+     * until they are evicted.
+     */
+    public void releaseNoteCache(File noteCache) {
+        if (!noteCachePath.equals(noteCache.getParentFile())) {
+            clearCache(noteCache);
+        }
+    }
+
+    /**
+     * Writes the order and size of all persistent note renders to disk.
+     */
+    public synchronized void saveNoteCacheIndex() {
+        StringBuilder index = new StringBuilder();
+        for (Map.Entry<String, Long> entry : noteCacheSizes.entrySet()) {
+            index.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        try {
+            Files.writeString(
+                    new File(noteCachePath, NOTE_INDEX_NAME).toPath(),
+                    index,
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Error: Failed to save note cache index.");
+        }
+    }
+
+    private synchronized void loadNoteCacheIndex() {
+        noteCacheSizes.clear();
+        noteCacheBytes = 0;
+        File indexFile = new File(noteCachePath, NOTE_INDEX_NAME);
+        if (indexFile.canRead()) {
+            try {
+                for (String line : Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                    String key = line.split("\t")[0];
+                    addToNoteIndex(key);
+                }
+            } catch (IOException e) {
+                System.out.println("Warning: Failed to read note cache index.");
+            }
+        }
+        // Renders missing from the index are treated as the least recently used.
+        File[] renders = noteCachePath.listFiles((dir, name) -> name.endsWith("_note.wav"));
+        if (renders != null) {
+            Arrays.sort(renders, Comparator.comparingLong(File::lastModified));
+            for (File render : renders) {
+                String key = render.getName().substring(0, render.getName().indexOf('_'));
+                if (!noteCacheSizes.containsKey(key)) {
+                    addToNoteIndex(key);
+                }
+            }
+        }
+        evictNoteCaches("");
+        saveNoteCacheIndex();
+    }
+
+    private void addToNoteIndex(String key) {
+        File noteCache = getPersistentNoteFile(key);
+        if (!key.isEmpty() && noteCache.canRead() && !noteCacheSizes.containsKey(key)) {
+            noteCacheSizes.put(key, noteCache.length());
+            noteCacheBytes += noteCache.length();
+        }
+    }
+
+    // Deletes least recently used renders until the cache fits, always keeping the newest one.
+    private void evictNoteCaches(String newestKey) {
+        Iterator<Map.Entry<String, Long>> iterator = noteCacheSizes.entrySet().iterator();
+        while (noteCacheBytes > MAX_NOTE_CACHE_BYTES && iterator.hasNext()) {
+            Map.Entry<String, Long> oldest = iterator.next();
+            if (oldest.getKey().equals(newestKey)) {
+                continue;
+            }
+            File noteCache = getPersistentNoteFile(oldest.getKey());
+            if (!noteCache.exists() || clearCache(noteCache)) {
+                noteCacheBytes -= oldest.getValue();
+                iterator.remove();
+            }
+        }
+    }
+
+    private File getPersistentNoteFile(String key) {
+        return new File(noteCachePath, key + "_note.wav");
+    }
+
     public boolean clearCache(File clearMe) {
         if (clearMe.exists()) {
             try {
@@ -70,17 +209,9 @@ public class CacheManager {
         }
     }
 
-    public void clearSilences() {
-        File[] silences = cachePath.listFiles((dir, name) -> name.endsWith("silence.wav"));
-        if (silences != null) {
-            for (File silence : silences) {
-                clearCache(silence);
-            }
-        }
-    }
-
     public void clearAllCacheValues() {
-        File[] files = cachePath.listFiles();
+        // Persistent note renders are kept in a subdirectory and are not cleared here.
+        File[] files = cachePath.listFiles(File::isFile);
         if (files != null) {
             for (File file : files) {
                 clearCache(file);
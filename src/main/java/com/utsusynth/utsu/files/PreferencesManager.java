@@ -272,22 +272,43 @@ public class PreferencesManager {
         preferences.put("cache", cacheMode.name());
     }
 
-    public File getResampler() {
-        File resampler = preferences.containsKey("resampler")
-                ? new File(preferences.get("resampler"))
-                : new File(defaultPreferences.get("resampler"));
-        if (!resampler.canExecute()) {
-            return new File(defaultPreferences.get("resampler"));
+    public enum StreamingMode {
+        DISABLED, ENABLED
+    }
+
+    public StreamingMode getStreaming() {
+        String streamingName = preferences.containsKey("streaming")
+                ? preferences.get("streaming") : defaultPreferences.get("streaming");
+        try {
+            return StreamingMode.valueOf(streamingName);
+        } catch (IllegalArgumentException e) {
+            errorLogger.logError(e);
+            return StreamingMode.valueOf(defaultPreferences.get("streaming"));
+        }
+    }
+
+    public void setStreaming(StreamingMode streamingMode) {
+        preferences.put("streaming", streamingMode.name());
+    }
+
+    public String getResampler() {
+        String resampler = preferences.containsKey("resampler")
+                ? preferences.get("resampler")
+                : defaultPreferences.get("resampler");
+        // Paths are external resamplers, anything else names a built-in one.
+        File resamplerFile = new File(resampler);
+        if (resamplerFile.isAbsolute() && !resamplerFile.canExecute()) {
+            return defaultPreferences.get("resampler");
         }
         return resampler;
     }
 
-    public File getResamplerDefault() {
-        return new File(defaultPreferences.get("resampler"));
+    public String getResamplerDefault() {
+        return defaultPreferences.get("resampler");
     }
 
-    public void setResampler(File resampler) {
-        preferences.put("resampler", resampler.getAbsolutePath());
+    public void setResampler(String resampler) {
+        preferences.put("resampler", resampler);
     }
 
     public String getWavtool() {
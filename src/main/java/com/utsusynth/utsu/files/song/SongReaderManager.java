@@ -1,12 +1,19 @@
 package com.utsusynth.utsu.files.song;
 
 import com.google.inject.Inject;
-import com.utsusynth.utsu.common.utils.UtsuFileUtils;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /** Singleton class, finds the appropriate SongReader for a file. */
 public class SongReaderManager {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int HEADER_SNIFF_BYTES = 4096;
+
     private final Ust12Reader ust12Reader;
     private final Ust20Reader ust20Reader;
     private final UstxReader ustxReader;
@@ -35,7 +42,7 @@ public class SongReaderManager {
         } else if (file.getName().endsWith("vsqx")) {
             return vsqxReader;
         } else {
-            String content = UtsuFileUtils.readConfigFile(file);
+            String content = readHeader(file);
             if (content.contains("UST Version1.2")) {
                 return ust12Reader;
             } else if (content.contains("UST Version2.0")) {
@@ -45,4 +52,17 @@ public class SongReaderManager {
         // If no version found, assume UST 1.2 for now.
         return ust12Reader;
     }
+
+    // Reads the start of a file, where a UST keeps its version. Only ASCII matters here.
+    private static String readHeader(File file) {
+        if (!file.canRead() || !file.isFile()) {
+            return "";
+        }
+        try (InputStream input = new FileInputStream(file)) {
+            return new String(input.readNBytes(HEADER_SNIFF_BYTES), StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return "";
+        }
+    }
 }
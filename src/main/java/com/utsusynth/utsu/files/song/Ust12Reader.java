@@ -1,18 +1,24 @@
 package com.utsusynth.utsu.files.song;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.CharacterCodingException;
 import java.util.regex.Pattern;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.utils.UtsuFileUtils;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
 import com.utsusynth.utsu.model.song.Note;
 import com.utsusynth.utsu.model.song.Song;
 
 /**
- * Reads a song from a Unicode UST 1.2 file.
+ * Reads a song from a Unicode UST 1.2 file, one line at a time.
  */
 public class Ust12Reader implements SongReader {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
     private static final Pattern HEADER_PATTERN = Pattern.compile("\\[#[A-Z0-9]+\\]");
     private static final Pattern NOTE_PATTERN = Pattern.compile("\\[#[0-9]{1,4}\\]");
     private final Provider<Song> songProvider;
@@ -36,12 +42,27 @@ public class Ust12Reader implements SongReader {
 
     @Override
     public Song loadSong(File file, int trackNum) {
-        String fileContents = UtsuFileUtils.readConfigFile(file);
+        try {
+            String charset = UtsuFileUtils.guessCharset(file);
+            try {
+                return parseFile(file, charset);
+            } catch (CharacterCodingException e) {
+                // Start of the file looked like UTF-8, but the rest of it isn't.
+                return parseFile(file, "SJIS");
+            }
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return songProvider.get().toBuilder().build();
+        }
+    }
+
+    private Song parseFile(File file, String charset) throws IOException {
         Song.Builder songBuilder = songProvider.get().toBuilder();
-        String[] lines = fileContents.split("\n");
-        int curLine = 0;
-        while (curLine >= 0 && curLine < lines.length) {
-            curLine = parseSection(lines, curLine, songBuilder);
+        try (BufferedReader reader = UtsuFileUtils.openConfigFile(file, charset)) {
+            String header = reader.readLine();
+            while (header != null) {
+                header = parseSection(header, reader, songBuilder);
+            }
         }
         return songBuilder.build();
     }
@@ -55,90 +76,102 @@ public class Ust12Reader implements SongReader {
      */
     public Song readFromPlugin(String[] headers, String songFile, String pluginFile) {
         Song.Builder songBuilder = songProvider.get().toBuilder();
-        String[] songLines = songFile.split("\n");
-        int songLine = 0;
-        String[] pluginLines = pluginFile.split("\n");
-        int pluginLine = 0;
-
-        // Read in song settings data.
-        while (songLine >= 0 && songLine < songLines.length) {
-            String header = songLines[songLine].trim();
-            if (header.equals("[#VERSION]") || header.equals("[#SETTING]")) {
-                songLine = parseSection(songLines, songLine, songBuilder);
-            } else {
-                break;
+        try (BufferedReader songReader = new BufferedReader(new StringReader(songFile));
+                BufferedReader pluginReader =
+                        new BufferedReader(new StringReader(pluginFile))) {
+            String songLine = songReader.readLine();
+            String pluginLine = pluginReader.readLine();
+
+            // Read in song settings data.
+            while (songLine != null) {
+                String header = songLine.trim();
+                if (header.equals("[#VERSION]") || header.equals("[#SETTING]")) {
+                    songLine = parseSection(songLine, songReader, songBuilder);
+                } else {
+                    break;
+                }
             }
-        }
 
-        // Overwrite with plugin settings data.
-        while (pluginLine >= 0 && pluginLine < pluginLines.length) {
-            String header = pluginLines[pluginLine].trim();
-            if (header.equals("[#VERSION]") || header.equals("[#SETTING]")) {
-                pluginLine = parseSection(pluginLines, pluginLine, songBuilder);
-            } else {
-                break;
+            // Overwrite with plugin settings data.
+            while (pluginLine != null) {
+                String header = pluginLine.trim();
+                if (header.equals("[#VERSION]") || header.equals("[#SETTING]")) {
+                    pluginLine = parseSection(pluginLine, pluginReader, songBuilder);
+                } else {
+                    break;
+                }
             }
-        }
 
-        // Read song notes before plugin PREV note.
-        String prevHeader = headers.length > 0 ? headers[0] : "[#0000]";
-        while (songLine >= 0 && songLine < songLines.length) {
-            if (songLines[songLine].trim().equals(prevHeader)) {
-                break;
+            // Read song notes before plugin PREV note.
+            String prevHeader = headers.length > 0 ? headers[0] : "[#0000]";
+            while (songLine != null) {
+                if (songLine.trim().equals(prevHeader)) {
+                    break;
+                }
+                songLine = parseSection(songLine, songReader, songBuilder);
             }
-            songLine = parseSection(songLines, songLine, songBuilder);
-        }
 
-        // Read in all plugin notes.
-        while (pluginLine >= 0 && pluginLine < pluginLines.length) {
-            pluginLine = parseSection(pluginLines, pluginLine, songBuilder);
-        }
+            // Read in all plugin notes.
+            while (pluginLine != null) {
+                pluginLine = parseSection(pluginLine, pluginReader, songBuilder);
+            }
 
-        // Read song notes after plugin NEXT note.
-        String nextHeaderPlusOne = headers.length > 1 ? headers[1] : "[#9999]";
-        boolean nextFound = false;
-        while (songLine >= 0 && songLine < songLines.length) {
-            if (songLines[songLine].trim().equals(nextHeaderPlusOne)) {
-                nextFound = true;
+            // Read song notes after plugin NEXT note.
+            String nextHeaderPlusOne = headers.length > 1 ? headers[1] : "[#9999]";
+            boolean nextFound = false;
+            while (songLine != null) {
+                if (songLine.trim().equals(nextHeaderPlusOne)) {
+                    nextFound = true;
+                }
+                songLine = nextFound
+                        ? parseSection(songLine, songReader, songBuilder)
+                        : songReader.readLine();
             }
-            songLine = nextFound ? parseSection(songLines, songLine, songBuilder) : songLine + 1;
+        } catch (IOException e) {
+            errorLogger.logError(e);
         }
         return songBuilder.build();
     }
 
-    private int parseSection(String[] lines, int sectionStart, Song.Builder builder) {
-        String header = lines[sectionStart].trim();
+    /**
+     * Parses the section that starts with a header line.
+     *
+     * @return The header line of the next section, or null if there's nothing left to parse.
+     */
+    private String parseSection(String headerLine, BufferedReader reader, Song.Builder builder)
+            throws IOException {
+        String header = headerLine.trim();
         if (!HEADER_PATTERN.matcher(header).matches()) {
             // Report parse section not called on section header warning.
             System.out.println("Warning: parse header not called on section header.");
-            return -1;
+            return null;
         }
         // Case for notes.
         if (NOTE_PATTERN.matcher(header).matches()) {
-            return parseNote(lines, sectionStart + 1, builder);
+            return parseNote(reader, builder);
         }
         switch (header) {
             case "[#VERSION]":
-                return parseVersion(lines, sectionStart + 1);
+                return parseVersion(reader);
             case "[#SETTING]":
-                return parseSetting(lines, sectionStart + 1, builder);
+                return parseSetting(reader, builder);
             case "[#PREV]":
             case "[#NEXT]":
-                return parseNote(lines, sectionStart + 1, builder); // For plugins.
+                return parseNote(reader, builder); // For plugins.
             case "[#TRACKEND]":
                 System.out.println("Finished parsing the track!");
-                return -1;
+                return null;
             default:
                 System.out.println("Unexpected header discovered.");
                 // Report unexpected header discovered warning.
-                return -1;
+                return null;
         }
     }
 
-    private int parseNote(String[] lines, int noteStart, Song.Builder builder) {
+    private String parseNote(BufferedReader reader, Song.Builder builder) throws IOException {
         Note note = new Note();
-        for (int i = noteStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("Length=") && !line.equals("Length=")) {
                 note.setDuration(Integer.parseInt(line.substring("Length=".length())));
             } else if (line.startsWith("Lyric=")) {
@@ -177,30 +210,30 @@ public class Ust12Reader implements SongReader {
                 } else {
                     builder.addNote(note);
                 }
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 
-    private int parseVersion(String[] lines, int versionStart) {
-        for (int i = versionStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+    private String parseVersion(BufferedReader reader) throws IOException {
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("UST Version")) {
                 String version = line.substring("UST Version".length());
                 if (!version.contains("1.2")) {
                     // throw error
                 }
             } else if (HEADER_PATTERN.matcher(line).matches()) {
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 
-    private int parseSetting(String[] lines, int settingStart, Song.Builder builder) {
-        for (int i = settingStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+    private String parseSetting(BufferedReader reader, Song.Builder builder) throws IOException {
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("Tempo=")) {
                 builder.setTempo(Double.parseDouble(line.substring("Tempo=".length())));
             } else if (line.startsWith("ProjectName=")) {
@@ -214,9 +247,9 @@ public class Ust12Reader implements SongReader {
             } else if (line.startsWith("Mode2=")) {
                 builder.setMode2(Boolean.parseBoolean(line.substring("Mode2=".length())));
             } else if (HEADER_PATTERN.matcher(line).matches()) {
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 }
@@ -1,20 +1,23 @@
 package com.utsusynth.utsu.files.song;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
 import java.util.regex.Pattern;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
 import com.utsusynth.utsu.common.utils.UtsuFileUtils;
 import com.utsusynth.utsu.files.voicebank.VoicebankReader;
 import com.utsusynth.utsu.model.song.Note;
 import com.utsusynth.utsu.model.song.Song;
-import org.apache.commons.io.FileUtils;
 
 /**
- * Reads a song from a Unicode UST 2.0 file.
+ * Reads a song from a Unicode UST 2.0 file, one line at a time.
  */
 public class Ust20Reader implements SongReader {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
     private static final Pattern HEADER_PATTERN = Pattern.compile("\\[#[A-Z0-9]+\\]");
     private static final Pattern NOTE_PATTERN = Pattern.compile("\\[#[0-9]{1,4}\\]");
     private final Provider<Song> songProvider;
@@ -29,7 +32,7 @@ public class Ust20Reader implements SongReader {
     @Override
     public String getSaveFormat(File file) {
         try {
-            return UtsuFileUtils.guessCharset(FileUtils.readFileToByteArray(file)).equals("UTF-8")
+            return UtsuFileUtils.guessCharset(file).equals("UTF-8")
                     ? "UST 2.0 (UTF-8)" : "UST 2.0 (Shift JIS)";
         } catch (IOException e) {
             return "UST 2.0 (UTF-8)";
@@ -43,47 +46,68 @@ public class Ust20Reader implements SongReader {
 
     @Override
     public Song loadSong(File file, int trackNum) {
-        String fileContents = UtsuFileUtils.readConfigFile(file);
-        String[] lines = fileContents.split("\n");
+        try {
+            String charset = UtsuFileUtils.guessCharset(file);
+            try {
+                return parseFile(file, charset);
+            } catch (CharacterCodingException e) {
+                // Start of the file looked like UTF-8, but the rest of it isn't.
+                return parseFile(file, "SJIS");
+            }
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return songProvider.get().toBuilder().build();
+        }
+    }
+
+    private Song parseFile(File file, String charset) throws IOException {
         Song.Builder songBuilder = songProvider.get().toBuilder();
-        int curLine = 0;
-        while (curLine >= 0 && curLine < lines.length) {
-            curLine = parseSection(lines, curLine, songBuilder);
+        try (BufferedReader reader = UtsuFileUtils.openConfigFile(file, charset)) {
+            String header = reader.readLine();
+            while (header != null) {
+                header = parseSection(header, reader, songBuilder);
+            }
         }
         return songBuilder.build();
     }
 
-    private int parseSection(String[] lines, int sectionStart, Song.Builder builder) {
-        String header = lines[sectionStart].trim();
+    /**
+     * Parses the section that starts with a header line.
+     *
+     * @return The header line of the next section, or null if there's nothing left to parse.
+     */
+    private String parseSection(String headerLine, BufferedReader reader, Song.Builder builder)
+            throws IOException {
+        String header = headerLine.trim();
         if (!HEADER_PATTERN.matcher(header).matches()) {
             // Report parse section not called on section header warning.
             System.out.println("Parse header not called on section header.");
-            return -1;
+            return null;
         }
         // Case for notes.
         if (NOTE_PATTERN.matcher(header).matches()) {
-            return parseNote(lines, sectionStart + 1, builder);
+            return parseNote(reader, builder);
         }
         switch (header) {
             case "[#VERSION]":
-                return parseVersion(lines, sectionStart + 1);
+                return parseVersion(reader);
             case "[#SETTING]":
-                return parseSetting(lines, sectionStart + 1, builder);
+                return parseSetting(reader, builder);
             case "[#TRACKEND]":
                 System.out.println("Finished parsing the track!");
-                return -1;
+                return null;
             default:
                 System.out.println("Unexpected header discovered.");
                 // Report unexpected header discovered warning.
-                return -1;
+                return null;
         }
     }
 
-    private int parseNote(String[] lines, int noteStart, Song.Builder builder) {
+    private String parseNote(BufferedReader reader, Song.Builder builder) throws IOException {
         Note note = new Note();
         boolean outsideMainTrack = false;
-        for (int i = noteStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("Delta=") && !line.equals("Delta=")) {
                 note.setDelta(Integer.parseInt(line.substring("Delta=".length())));
             } else if (line.startsWith("Duration=") && !line.equals("Duration=")) {
@@ -129,31 +153,31 @@ public class Ust20Reader implements SongReader {
                 } else {
                     builder.addNote(note);
                 }
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 
-    private int parseVersion(String[] lines, int versionStart) {
+    private String parseVersion(BufferedReader reader) throws IOException {
         // Ignore charset, we don't really care about it.
-        for (int i = versionStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("UST Version")) {
                 String version = line.substring("UST Version".length());
                 if (!version.equals("2.0")) {
                     // throw error?
                 }
             } else if (HEADER_PATTERN.matcher(line).matches()) {
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 
-    private int parseSetting(String[] lines, int settingStart, Song.Builder builder) {
-        for (int i = settingStart; i < lines.length; i++) {
-            String line = lines[i].trim();
+    private String parseSetting(BufferedReader reader, Song.Builder builder) throws IOException {
+        for (String rawLine = reader.readLine(); rawLine != null; rawLine = reader.readLine()) {
+            String line = rawLine.trim();
             if (line.startsWith("Tempo=")) {
                 builder.setTempo(Double.parseDouble(line.substring("Tempo=".length())));
             } else if (line.startsWith("ProjectName=")) {
@@ -167,9 +191,9 @@ public class Ust20Reader implements SongReader {
             } else if (line.startsWith("Mode2=")) {
                 builder.setMode2(Boolean.parseBoolean(line.substring("Mode2=".length())));
             } else if (HEADER_PATTERN.matcher(line).matches()) {
-                return i;
+                return rawLine;
             }
         }
-        return -1;
+        return null;
     }
 }
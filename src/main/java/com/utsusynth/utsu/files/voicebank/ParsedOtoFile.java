@@ -0,0 +1,90 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Aliases parsed from a single oto.ini file, along with the modification times of every file and
+ * directory they were parsed from. If none of those have changed, the aliases can be reused.
+ */
+class ParsedOtoFile {
+    private final File otoFile;
+    private final long otoLength;
+    // Absolute path to last modified time of the oto file and each directory searched for frqs.
+    private final ImmutableMap<String, Long> dependencies;
+    private final ImmutableList<Alias> aliases;
+
+    ParsedOtoFile(
+            File otoFile,
+            long otoLength,
+            ImmutableMap<String, Long> dependencies,
+            ImmutableList<Alias> aliases) {
+        this.otoFile = otoFile;
+        this.otoLength = otoLength;
+        this.dependencies = dependencies;
+        this.aliases = aliases;
+    }
+
+    File getOtoFile() {
+        return otoFile;
+    }
+
+    long getOtoLength() {
+        return otoLength;
+    }
+
+    ImmutableMap<String, Long> getDependencies() {
+        return dependencies;
+    }
+
+    ImmutableList<Alias> getAliases() {
+        return aliases;
+    }
+
+    /** Whether parsing the oto file again would give the same aliases. */
+    boolean isUpToDate() {
+        if (otoFile.length() != otoLength) {
+            return false;
+        }
+        for (Map.Entry<String, Long> dependency : dependencies.entrySet()) {
+            if (new File(dependency.getKey()).lastModified() != dependency.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** One line of an oto.ini file. */
+    static class Alias {
+        private final String fileName; // Relative to the oto file's directory.
+        private final String lyric;
+        private final String[] configValues;
+        private final boolean hasFrq;
+
+        Alias(String fileName, String lyric, String[] configValues, boolean hasFrq) {
+            this.fileName = fileName;
+            this.lyric = lyric;
+            this.configValues = configValues;
+            this.hasFrq = hasFrq;
+        }
+
+        String getFileName() {
+            return fileName;
+        }
+
+        String getLyric() {
+            return lyric;
+        }
+
+        String[] getConfigValues() {
+            return configValues.clone();
+        }
+
+        boolean hasFrq() {
+            return hasFrq;
+        }
+    }
+}
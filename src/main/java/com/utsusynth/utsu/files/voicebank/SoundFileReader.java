@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
 import javax.sound.sampled.AudioFormat.Encoding;
 import javax.sound.sampled.AudioInputStream;
@@ -12,8 +14,11 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 import com.google.common.base.Function;
+import com.google.inject.Inject;
 import org.apache.commons.io.FileUtils;
 import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.SampleBuffer;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
 
@@ -22,6 +27,18 @@ import com.utsusynth.utsu.common.exception.ErrorLogger;
  */
 public class SoundFileReader {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int INITIAL_READ_BUFFER_BYTES = 1 << 20;
+
+    // Direct buffers that wav files are read into, one per thread.
+    private static final ThreadLocal<ByteBuffer> readBuffers = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(INITIAL_READ_BUFFER_BYTES));
+
+    private final SampleBufferPool sampleBufferPool;
+
+    @Inject
+    public SoundFileReader(SampleBufferPool sampleBufferPool) {
+        this.sampleBufferPool = sampleBufferPool;
+    }
 
     public Optional<FrequencyData> loadFrqData(File frqFile, Function<String, Void> updateStatus) {
         if (!frqFile.canRead()) {
@@ -110,7 +127,7 @@ public class SoundFileReader {
                             : ByteOrder.LITTLE_ENDIAN);
             ShortBuffer shortBuffer = byteBuffer.asShortBuffer(); // Use if 16 bits per sample.
 
-            double[] samples = new double[numFrames - offsetFrames];
+            float[] samples = new float[numFrames - offsetFrames];
             double maxAmplitude = Math.pow(2.0, bitsPerSample - 1);
             for (int i = 0; i < numFrames - offsetFrames; i++) {
                 for (int channel = 0; channel < input.getFormat().getChannels(); channel++) {
@@ -119,7 +136,7 @@ public class SoundFileReader {
                         if (encoding.equals(Encoding.PCM_UNSIGNED)) {
                             sample -= (int) maxAmplitude;
                         }
-                        samples[i] = sample / maxAmplitude;
+                        samples[i] = (float) (sample / maxAmplitude);
                     }
                 }
             }
@@ -135,4 +152,94 @@ public class SoundFileReader {
             return Optional.empty();
         }
     }
+
+    /**
+     * Reads the first channel of a PCM wav file into a pooled sample buffer, in a single read.
+     * Intended for rendered notes, which are read once and then discarded.
+     */
+    public Optional<SampleBuffer> loadSamples(File wavFile) {
+        try (FileChannel channel = FileChannel.open(wavFile.toPath(), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                System.out.println("Error: wav file is too large: " + wavFile.getName());
+                return Optional.empty();
+            }
+            ByteBuffer bytes = readBuffers.get();
+            if (bytes.capacity() < fileSize) {
+                bytes = ByteBuffer.allocateDirect((int) fileSize);
+                readBuffers.set(bytes);
+            }
+            bytes.clear();
+            bytes.limit((int) fileSize);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Keep reading until the whole file is in the buffer.
+            }
+            bytes.flip();
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            return parseWav(bytes, wavFile.getName());
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return Optional.empty();
+        }
+    }
+
+    private Optional<SampleBuffer> parseWav(ByteBuffer bytes, String fileName) {
+        if (bytes.remaining() < 12 || bytes.getInt() != 0x46464952 /* RIFF */) {
+            System.out.println("Error: Not a wav file: " + fileName);
+            return Optional.empty();
+        }
+        bytes.getInt(); // Size of the rest of the file.
+        if (bytes.getInt() != 0x45564157 /* WAVE */) {
+            System.out.println("Error: Not a wav file: " + fileName);
+            return Optional.empty();
+        }
+        int channels = 0;
+        int sampleRate = 0;
+        int bitsPerSample = 0;
+        while (bytes.remaining() >= 8) {
+            int chunkId = bytes.getInt();
+            int chunkSize = bytes.getInt();
+            int chunkStart = bytes.position();
+            if (chunkId == 0x20746d66 /* fmt */) {
+                short format = bytes.getShort();
+                channels = bytes.getShort();
+                sampleRate = bytes.getInt();
+                bytes.getInt(); // Bytes per second.
+                bytes.getShort(); // Block align.
+                bitsPerSample = bytes.getShort();
+                if (format != 1 || (bitsPerSample != 8 && bitsPerSample != 16)) {
+                    System.out.println("Error: Only 8-bit or 16-bit PCM is supported: " + fileName);
+                    return Optional.empty();
+                }
+            } else if (chunkId == 0x61746164 /* data */) {
+                if (channels <= 0) {
+                    System.out.println("Error: Missing format chunk in wav file: " + fileName);
+                    return Optional.empty();
+                }
+                int bytesPerFrame = channels * bitsPerSample / 8;
+                int numFrames = Math.min(chunkSize, bytes.remaining()) / bytesPerFrame;
+                SampleBuffer buffer = sampleBufferPool.acquire(numFrames);
+                float[] samples = buffer.getSamples();
+                for (int i = 0; i < numFrames; i++) {
+                    int frameStart = chunkStart + i * bytesPerFrame;
+                    if (bitsPerSample == 16) {
+                        samples[i] = bytes.getShort(frameStart) / 32768f;
+                    } else {
+                        samples[i] = ((bytes.get(frameStart) & 0xFF) - 128) / 128f; // Unsigned.
+                    }
+                }
+                buffer.setLength(numFrames);
+                buffer.setSampleRate(sampleRate);
+                return Optional.of(buffer);
+            }
+            // Chunks are padded to an even number of bytes.
+            int nextChunk = chunkStart + chunkSize + (chunkSize & 1);
+            if (nextChunk < chunkStart || nextChunk > bytes.limit()) {
+                break;
+            }
+            bytes.position(nextChunk);
+        }
+        System.out.println("Error: Could not find data in wav file: " + fileName);
+        return Optional.empty();
+    }
 }
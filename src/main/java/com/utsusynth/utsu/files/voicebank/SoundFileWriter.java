@@ -1,18 +1,19 @@
 package com.utsusynth.utsu.files.voicebank;
 
+import com.utsusynth.utsu.common.data.FrequencyData;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.exception.ErrorLogger;
-import com.utsusynth.utsu.common.utils.RoundUtils;
 
-import javax.sound.sampled.*;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
- * Writes .wav files.
+ * Writes .wav and .frq files.
  */
 public class SoundFileWriter {
     private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
@@ -22,51 +23,63 @@ public class SoundFileWriter {
     }
 
     public void writeWavData(WavData wavData, File wavFile, int offsetMs) {
-        int dataBytes = wavData.getSamples().length * 2; // Each sample is a short, or 2 bytes.
-        ByteBuffer byteBuffer = ByteBuffer.allocate(dataBytes);
-        byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
-        int maxAmplitude = 32768; // 2^(16 - 1) for 16-bit data.
-        for (double sample : wavData.getSamples()) {
-            int scaledSample = RoundUtils.round(sample * maxAmplitude);
-            int boundedSample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaledSample));
-            byteBuffer.putShort((short) boundedSample);
+        try (WavFileWriter writer = offsetMs > 0
+                ? WavFileWriter.overwriteAfter(wavFile, offsetMs)
+                : WavFileWriter.create(wavFile)) {
+            writer.write(wavData.getSamples(), 0, wavData.getSamples().length);
+        } catch (IOException e) {
+            errorLogger.logError(e);
+        }
+    }
+
+    public void writeSilence(int numSamples, File wavFile) {
+        try (WavFileWriter writer = WavFileWriter.create(wavFile)) {
+            writer.writeSilence(numSamples);
+        } catch (IOException e) {
+            errorLogger.logError(e);
         }
+    }
 
-        final int sampleRate = 44100;
-        final boolean bigEndian = false;
-        final boolean signed = true;
-        final int bits = 16;
-        final int channels = 1;
+    /**
+     * Writes frequency data in the same FREQ0003 format that {@link SoundFileReader} reads.
+     *
+     * @return Whether the file was written.
+     */
+    public boolean writeFrqData(FrequencyData frqData, File frqFile) {
+        double[] frequencies = frqData.getFrequencies();
+        double[] amplitudes = frqData.getAmplitudes();
+        ByteBuffer buffer = ByteBuffer.allocate(40 + frequencies.length * 16);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("FREQ0003".getBytes(StandardCharsets.US_ASCII));
+        buffer.putInt(frqData.getSamplesPerFreqValue());
+        buffer.putDouble(frqData.getAverageFreq());
+        buffer.put(new byte[16]); // 16 bytes of empty space.
+        buffer.putInt(frequencies.length);
+        for (int i = 0; i < frequencies.length; i++) {
+            buffer.putDouble(frequencies[i]);
+            buffer.putDouble(amplitudes[i]);
+        }
+        // Written in full before it replaces the frq file, so a failed or canceled write leaves no
+        // partial file behind.
+        File tempFile = new File(frqFile.getParentFile(), frqFile.getName() + ".tmp");
         try {
-            if (offsetMs > 0) {
-                AudioInputStream inputStream = AudioSystem.getAudioInputStream(wavFile);
-                AudioFormat audioFormat = inputStream.getFormat();
-                int offsetBytes = (int) (sampleRate / 1000.0 * offsetMs * 2) + 44;
-                int outputBytes = offsetBytes + dataBytes;
-                byte[] output = new byte[outputBytes];
-                int bytesRead = inputStream.read(output, 0, offsetBytes);
-                if (bytesRead < offsetBytes) {
-                    System.out.println("Error: Could not read output wav file.");
-                    return;
-                }
-                inputStream.close();
-                byteBuffer.position(0);
-                byteBuffer.get(output, offsetBytes, dataBytes);
-                ByteArrayInputStream byteStream = new ByteArrayInputStream(output);
-                AudioInputStream audioStream = new AudioInputStream(byteStream, audioFormat, outputBytes);
-                AudioSystem.write(audioStream, AudioFileFormat.Type.WAVE, wavFile);
-                audioStream.close();
-            } else {
-                AudioFormat audioFormat =
-                        new AudioFormat((float) sampleRate, bits, channels, signed, bigEndian);
-                ByteArrayInputStream byteStream = new ByteArrayInputStream(byteBuffer.array());
-                AudioInputStream audioStream =
-                        new AudioInputStream(byteStream, audioFormat, wavData.getSamples().length);
-                AudioSystem.write(audioStream, AudioFileFormat.Type.WAVE, wavFile);
-                audioStream.close();
+            Files.write(tempFile.toPath(), buffer.array());
+            if (Thread.currentThread().isInterrupted()) {
+                return false; // Canceled, so the frq file is left as it was.
             }
-        } catch (IOException | UnsupportedAudioFileException e) {
+            Files.move(
+                    tempFile.toPath(),
+                    frqFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
             errorLogger.logError(e);
+            return false;
+        } finally {
+            if (tempFile.exists() && !tempFile.delete()) {
+                System.out.println("Warning: Failed to delete partial frq file.");
+            }
         }
     }
 }
@@ -10,11 +10,20 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.utils.UtsuFileUtils;
 import com.utsusynth.utsu.files.AssetManager;
@@ -46,6 +55,7 @@ public class VoicebankReader {
     private final AssetManager assetManager;
     private final PreferencesManager preferencesManager;
     private final PresampConfigReader presampConfigReader;
+    private final VoicebankSnapshotCache snapshotCache;
     private final Provider<Voicebank> voicebankProvider;
     private final Provider<PresampConfig> presampConfigProvider;
 
@@ -57,11 +67,13 @@ public class VoicebankReader {
             AssetManager assetManager,
             PreferencesManager preferencesManager,
             PresampConfigReader presampConfigReader,
+            VoicebankSnapshotCache snapshotCache,
             Provider<Voicebank> voicebankProvider,
             Provider<PresampConfig> presampConfigProvider) {
         this.assetManager = assetManager;
         this.preferencesManager = preferencesManager;
         this.presampConfigReader = presampConfigReader;
+        this.snapshotCache = snapshotCache;
         this.voicebankProvider = voicebankProvider;
         this.presampConfigProvider = presampConfigProvider;
     }
@@ -105,7 +117,8 @@ public class VoicebankReader {
         File readmeFile = pathToVoicebank.toPath().resolve("readme.txt").toFile();
         builder.setDescription(UtsuFileUtils.readConfigFile(readmeFile));
 
-        // Parse all oto_ini.txt and oto.ini files in arbitrary order.
+        // Find all oto_ini.txt and oto.ini files in arbitrary order.
+        List<File> otoFiles = new ArrayList<>();
         try {
             Files.walkFileTree(
                     pathToVoicebank.toPath(),
@@ -116,8 +129,7 @@ public class VoicebankReader {
                         public FileVisitResult visitFile(Path path, BasicFileAttributes attr) {
                             for (String otoName : ImmutableSet.of("oto.ini", "oto_ini.txt")) {
                                 if (path.endsWith(otoName)) {
-                                    Path pathToFile = path.toFile().getParentFile().toPath();
-                                    parseOtoIni(pathToVoicebank, pathToFile, otoName, builder);
+                                    otoFiles.add(path.toFile());
                                     break;
                                 }
                             }
@@ -128,6 +140,7 @@ public class VoicebankReader {
             // TODO: Handle this.
             errorLogger.logError(e);
         }
+        parseOtoFiles(pathToVoicebank, otoFiles, builder);
 
         // Parse pitch map in arbitrary order, if present.
         for (String pitchMapName : ImmutableSet.of("prefixmap", "prefix.map")) {
@@ -194,12 +207,52 @@ public class VoicebankReader {
         }
     }
 
-    private void parseOtoIni(
-            File pathToVoicebank,
-            Path pathToOtoFile,
-            String otoFile,
-            Voicebank.Builder builder) {
-        String otoData = UtsuFileUtils.readConfigFile(pathToOtoFile.resolve(otoFile).toFile());
+    /**
+     * Parses oto files in parallel, reusing any that haven't changed since the last time this
+     * voicebank was opened.
+     */
+    private void parseOtoFiles(
+            File pathToVoicebank, List<File> otoFiles, Voicebank.Builder builder) {
+        Map<String, ParsedOtoFile> snapshot = snapshotCache.load(pathToVoicebank);
+        List<ParsedOtoFile> parsedFiles = otoFiles.parallelStream().map(otoFile -> {
+            ParsedOtoFile cached = snapshot.get(otoFile.getAbsolutePath());
+            if (cached != null && cached.isUpToDate()) {
+                return cached;
+            }
+            return parseOtoIni(otoFile);
+        }).collect(Collectors.toList());
+
+        // Add lyrics in the order files were found, so the first of any duplicate aliases wins.
+        boolean snapshotChanged = parsedFiles.size() != snapshot.size();
+        for (ParsedOtoFile parsedFile : parsedFiles) {
+            snapshotChanged |= snapshot.get(parsedFile.getOtoFile().getAbsolutePath())
+                    != parsedFile;
+            Path pathToOtoFile = parsedFile.getOtoFile().getParentFile().toPath();
+            for (ParsedOtoFile.Alias alias : parsedFile.getAliases()) {
+                builder.addLyric(
+                        new LyricConfig(
+                                pathToVoicebank,
+                                pathToOtoFile.resolve(alias.getFileName()).toFile(),
+                                alias.getLyric(),
+                                alias.getConfigValues()),
+                        alias.hasFrq());
+            }
+        }
+        if (snapshotChanged) {
+            snapshotCache.save(pathToVoicebank, parsedFiles);
+        }
+    }
+
+    private ParsedOtoFile parseOtoIni(File otoFile) {
+        Path pathToOtoFile = otoFile.getParentFile().toPath();
+        long otoLength = otoFile.length();
+        Map<String, Long> dependencies = new HashMap<>();
+        dependencies.put(otoFile.getAbsolutePath(), otoFile.lastModified());
+        // Names of files in each directory searched for frqs, listed once per directory.
+        Map<File, Set<String>> directoryContents = new HashMap<>();
+
+        ImmutableList.Builder<ParsedOtoFile.Alias> aliases = ImmutableList.builder();
+        String otoData = UtsuFileUtils.readConfigFile(otoFile);
         for (String rawLine : otoData.split("\n")) {
             String line = rawLine.trim();
             Matcher matcher = LYRIC_PATTERN.matcher(line);
@@ -223,15 +276,22 @@ public class VoicebankReader {
                 // Search for a frq file.
                 String frqName = fileName.substring(0, fileName.length() - 4) + "_wav.frq";
                 File frqFile = pathToOtoFile.resolve(frqName).toFile();
-                builder.addLyric(
-                        new LyricConfig(
-                                pathToVoicebank,
-                                pathToOtoFile.resolve(fileName).toFile(),
-                                lyricName,
-                                configValues),
-                        frqFile.canRead());
+                File frqDirectory = frqFile.getParentFile();
+                Set<String> frqDirectoryContents = directoryContents.computeIfAbsent(
+                        frqDirectory, directory -> {
+                            // Adding or removing a frq file changes the directory's timestamp.
+                            dependencies.put(
+                                    directory.getAbsolutePath(), directory.lastModified());
+                            String[] fileNames = directory.list();
+                            return fileNames == null
+                                    ? new HashSet<>() : new HashSet<>(Arrays.asList(fileNames));
+                        });
+                boolean hasFrq = frqDirectoryContents.contains(frqFile.getName());
+                aliases.add(new ParsedOtoFile.Alias(fileName, lyricName, configValues, hasFrq));
             }
         }
+        return new ParsedOtoFile(
+                otoFile, otoLength, ImmutableMap.copyOf(dependencies), aliases.build());
     }
 
     private void parsePitchMap(File pitchMapFile, Voicebank.Builder builder) {
@@ -0,0 +1,143 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.inject.Inject;
+import com.utsusynth.utsu.UtsuModule.SettingsPath;
+import com.utsusynth.utsu.common.exception.ErrorLogger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the parsed oto.ini files of each voicebank in a compact binary file, so that a voicebank
+ * that hasn't changed can be opened without parsing them again.
+ */
+public class VoicebankSnapshotCache {
+    private static final ErrorLogger errorLogger = ErrorLogger.getLogger();
+    private static final int MAGIC_NUMBER = 0x5554534F; // "UTSO"
+    private static final int FORMAT_VERSION = 1;
+
+    private final File snapshotPath;
+
+    @Inject
+    public VoicebankSnapshotCache(@SettingsPath File settingsPath) {
+        snapshotPath = new File(new File(settingsPath, "cache"), "voicebanks");
+    }
+
+    /**
+     * Reads the last snapshot of a voicebank.
+     *
+     * @return Parsed oto files keyed by absolute path, or an empty map if there is no snapshot.
+     */
+    Map<String, ParsedOtoFile> load(File pathToVoicebank) {
+        File snapshotFile = getSnapshotFile(pathToVoicebank);
+        Map<String, ParsedOtoFile> otoFiles = new HashMap<>();
+        if (!snapshotFile.canRead()) {
+            return otoFiles;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            if (input.readInt() != MAGIC_NUMBER || input.readInt() != FORMAT_VERSION) {
+                return otoFiles;
+            }
+            int numOtoFiles = input.readInt();
+            for (int i = 0; i < numOtoFiles; i++) {
+                File otoFile = new File(input.readUTF());
+                long otoLength = input.readLong();
+                ImmutableMap.Builder<String, Long> dependencies = ImmutableMap.builder();
+                int numDependencies = input.readInt();
+                for (int j = 0; j < numDependencies; j++) {
+                    dependencies.put(input.readUTF(), input.readLong());
+                }
+                ImmutableList.Builder<ParsedOtoFile.Alias> aliases = ImmutableList.builder();
+                int numAliases = input.readInt();
+                for (int j = 0; j < numAliases; j++) {
+                    String fileName = input.readUTF();
+                    String lyric = input.readUTF();
+                    String[] configValues = new String[5];
+                    for (int k = 0; k < configValues.length; k++) {
+                        configValues[k] = input.readUTF();
+                    }
+                    aliases.add(new ParsedOtoFile.Alias(
+                            fileName, lyric, configValues, input.readBoolean()));
+                }
+                otoFiles.put(
+                        otoFile.getAbsolutePath(),
+                        new ParsedOtoFile(
+                                otoFile, otoLength, dependencies.build(), aliases.build()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // A snapshot that can't be read is treated the same as a missing one.
+            System.out.println("Warning: Could not read voicebank snapshot.");
+            otoFiles.clear();
+        }
+        return otoFiles;
+    }
+
+    /** Replaces the snapshot of a voicebank with the given parsed oto files. */
+    void save(File pathToVoicebank, List<ParsedOtoFile> otoFiles) {
+        if (!snapshotPath.exists() && !snapshotPath.mkdirs()) {
+            System.out.println("Error: Failed to create voicebank snapshot path.");
+            return;
+        }
+        File snapshotFile = getSnapshotFile(pathToVoicebank);
+        File tempFile = new File(snapshotPath, snapshotFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(otoFiles.size());
+            for (ParsedOtoFile otoFile : otoFiles) {
+                output.writeUTF(otoFile.getOtoFile().getAbsolutePath());
+                output.writeLong(otoFile.getOtoLength());
+                output.writeInt(otoFile.getDependencies().size());
+                for (Map.Entry<String, Long> dependency : otoFile.getDependencies().entrySet()) {
+                    output.writeUTF(dependency.getKey());
+                    output.writeLong(dependency.getValue());
+                }
+                output.writeInt(otoFile.getAliases().size());
+                for (ParsedOtoFile.Alias alias : otoFile.getAliases()) {
+                    output.writeUTF(alias.getFileName());
+                    output.writeUTF(alias.getLyric());
+                    for (String configValue : alias.getConfigValues()) {
+                        output.writeUTF(configValue);
+                    }
+                    output.writeBoolean(alias.hasFrq());
+                }
+            }
+        } catch (IOException e) {
+            errorLogger.logError(e);
+            return;
+        }
+        try {
+            // Replace the old snapshot all at once so that it's never half-written.
+            Files.move(
+                    tempFile.toPath(),
+                    snapshotFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            errorLogger.logError(e);
+        }
+    }
+
+    private File getSnapshotFile(File pathToVoicebank) {
+        String voicebankHash = Hashing.sha256()
+                .hashString(pathToVoicebank.getAbsolutePath(), StandardCharsets.UTF_8)
+                .toString();
+        return new File(snapshotPath, voicebankHash + ".bin");
+    }
+}
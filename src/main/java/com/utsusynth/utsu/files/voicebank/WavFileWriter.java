@@ -0,0 +1,120 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import com.utsusynth.utsu.common.utils.RoundUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a 16-bit mono .wav file at 44,100 Hz a chunk at a time, so that the file never has to fit
+ * in memory. The lengths in the header are filled in once the writer is closed.
+ */
+public class WavFileWriter implements Closeable {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int BYTES_PER_SAMPLE = 2;
+    private static final int HEADER_BYTES = 44;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_AMPLITUDE = 32768; // 2^(16 - 1) for 16-bit data.
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long numDataBytes;
+
+    private WavFileWriter(FileChannel channel, long numDataBytes) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        this.numDataBytes = numDataBytes;
+    }
+
+    /** Starts a new file, replacing any file that is already there. */
+    public static WavFileWriter create(File wavFile) throws IOException {
+        FileChannel channel = FileChannel.open(
+                wavFile.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(HEADER_BYTES); // Header is written on close.
+        return new WavFileWriter(channel, 0);
+    }
+
+    /**
+     * Keeps the first offsetMs of an existing file written by this class and replaces everything
+     * after it.
+     */
+    public static WavFileWriter overwriteAfter(File wavFile, double offsetMs) throws IOException {
+        FileChannel channel = FileChannel.open(
+                wavFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long offsetBytes = (long) (SAMPLE_RATE / 1000.0 * offsetMs) * BYTES_PER_SAMPLE;
+        long keptBytes = Math.max(0, Math.min(offsetBytes, channel.size() - HEADER_BYTES));
+        channel.truncate(HEADER_BYTES + keptBytes);
+        channel.position(HEADER_BYTES + keptBytes);
+        return new WavFileWriter(channel, keptBytes);
+    }
+
+    /** Writes samples in the range [-1, 1], clipping anything outside of it. */
+    public void write(float[] samples, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int scaledSample = RoundUtils.round(samples[i] * MAX_AMPLITUDE);
+            int boundedSample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaledSample));
+            buffer.putShort((short) boundedSample);
+        }
+    }
+
+    public void writeSilence(int numSamples) throws IOException {
+        for (int i = 0; i < numSamples; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putShort((short) 0);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            writeHeader();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            numDataBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) (HEADER_BYTES - 8 + numDataBytes));
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16); // Size of the rest of the format chunk.
+        header.putShort((short) 1); // PCM.
+        header.putShort((short) 1); // Mono.
+        header.putInt(SAMPLE_RATE);
+        header.putInt(SAMPLE_RATE * BYTES_PER_SAMPLE); // Bytes per second.
+        header.putShort((short) BYTES_PER_SAMPLE); // Bytes per frame.
+        header.putShort((short) (BYTES_PER_SAMPLE * 8)); // Bits per sample.
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) numDataBytes);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+}
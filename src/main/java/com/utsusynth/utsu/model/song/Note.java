@@ -75,6 +75,38 @@ public class Note {
         this.cacheFile = null;
     }
 
+    /** Copies every value of this note, so that the copy can be changed independently. */
+    public Note copy() {
+        Note copy = new Note();
+        copy.delta = this.delta;
+        copy.duration = this.duration;
+        copy.length = this.length;
+        copy.lyric = this.lyric;
+        copy.noteNum = this.noteNum;
+        copy.preutter = this.preutter;
+        copy.overlap = this.overlap;
+        copy.velocity = this.velocity;
+        copy.startPoint = this.startPoint;
+        copy.intensity = this.intensity;
+        copy.modulation = this.modulation;
+        copy.noteFlags = this.noteFlags;
+        copy.pbs = this.pbs;
+        copy.pbw = this.pbw;
+        copy.pby = this.pby;
+        copy.pbm = this.pbm;
+        copy.envelopeWidth = this.envelopeWidth.clone();
+        copy.envelopeHeight = this.envelopeHeight.clone();
+        copy.envelopeOverlap = this.envelopeOverlap;
+        copy.vibrato = this.vibrato.clone();
+
+        copy.realPreutter = this.realPreutter;
+        copy.realDuration = this.realDuration;
+        copy.realStartPoint = this.realStartPoint;
+        copy.trueLyric = this.trueLyric;
+        copy.cacheFile = this.cacheFile;
+        return copy;
+    }
+
     public void setDelta(int delta) {
         this.delta = delta;
     }
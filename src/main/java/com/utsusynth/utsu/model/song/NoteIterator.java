@@ -2,6 +2,7 @@ package com.utsusynth.utsu.model.song;
 
 import java.util.Iterator;
 import java.util.Optional;
+import java.util.function.IntSupplier;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 
 /**
@@ -9,18 +10,29 @@ import com.utsusynth.utsu.common.utils.RegionBounds;
  */
 public class NoteIterator implements Iterator<Note> {
     private final RegionBounds bounds;
+    private final IntSupplier startIndex;
 
     private Optional<NoteNode> prevNode;
     private Optional<NoteNode> curNode;
-    int curIndex;
+    int curIndex; // Relative to the start node.
     int curDelta;
 
-    NoteIterator(Optional<NoteNode> startNode, RegionBounds bounds) {
+    /**
+     * @param startNode Node to start searching from for the first note in bounds.
+     * @param startDelta Position of the note before the start node.
+     * @param startIndex Index of the start node in the song.
+     */
+    NoteIterator(
+            Optional<NoteNode> startNode,
+            int startDelta,
+            IntSupplier startIndex,
+            RegionBounds bounds) {
         this.bounds = bounds;
+        this.startIndex = startIndex;
         this.prevNode = Optional.empty();
         this.curNode = startNode;
         this.curIndex = 0;
-        this.curDelta = 0;
+        this.curDelta = startDelta;
 
         // Start at first note contained within bounds, if it exists.
         while (curNode.isPresent()) {
@@ -64,7 +76,7 @@ public class NoteIterator implements Iterator<Note> {
     }
 
     public int getCurIndex() {
-        return curIndex;
+        return startIndex.getAsInt() + curIndex;
     }
 
     public int getCurDelta() {
@@ -1,18 +1,20 @@
 package com.utsusynth.utsu.model.song;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.TreeMap;
 import com.utsusynth.utsu.common.utils.RegionBounds;
 import com.utsusynth.utsu.common.exception.NoteAlreadyExistsException;
 import com.utsusynth.utsu.model.voicebank.Voicebank;
 
 /**
- * Implementation of a linked list of SongNotes, including head.
+ * Implementation of a linked list of SongNotes, including head. Nodes are also indexed by their
+ * absolute position, so that finding a note or the place for a new one takes O(log n) time.
  */
 public class NoteList implements Iterable<Note> {
     private Optional<NoteNode> head;
-    private Map<Integer, NoteNode> nodeMap;
+    private NavigableMap<Integer, NoteNode> nodeMap;
 
     public class Builder {
         private NoteList noteList;
@@ -30,7 +32,7 @@ public class NoteList implements Iterable<Note> {
 
         private Builder setHead(Optional<NoteNode> newHead) {
             noteList.head = newHead;
-            noteList.nodeMap = new HashMap<>();
+            noteList.nodeMap = new TreeMap<>();
             totalDelta = 0;
             overrideDelta = 0;
             if (newHead.isPresent()) {
@@ -131,7 +133,7 @@ public class NoteList implements Iterable<Note> {
 
     public NoteList() {
         this.head = Optional.empty();
-        this.nodeMap = new HashMap<>();
+        this.nodeMap = new TreeMap<>();
     }
 
     /**
@@ -152,22 +154,15 @@ public class NoteList implements Iterable<Note> {
             this.head = Optional.of(this.head.get().insertFirstNote(noteToInsert, deltaToInsert));
             inserted = this.head.get();
         } else {
-            inserted = this.head.get().insertNote(noteToInsert, deltaToInsert, 0);
+            // Start from the closest note at or before the new one, rather than from the head.
+            Map.Entry<Integer, NoteNode> closest = nodeMap.floorEntry(deltaToInsert);
+            int prevDelta = closest.getKey() - closest.getValue().getNote().getDelta();
+            inserted = closest.getValue().insertNote(noteToInsert, deltaToInsert, prevDelta);
         }
         nodeMap.put(deltaToInsert, inserted);
         return inserted;
     }
 
-    /**
-     * Adds a note to the note list, starting search at a specific node.
-     */
-    NoteNode insertNote(Note noteToInsert, int deltaToInsert, NoteNode startNode, int startDelta)
-            throws NoteAlreadyExistsException {
-        NoteNode inserted = startNode.insertNote(noteToInsert, deltaToInsert, startDelta);
-        nodeMap.put(deltaToInsert, inserted);
-        return inserted;
-    }
-
     /**
      * Removes a note from the note list.
      * 
@@ -215,12 +210,28 @@ public class NoteList implements Iterable<Note> {
         return new Builder(new NoteList()).setHead(this.head);
     }
 
+    /** Copies the note list and all of its notes. */
+    NoteList copy() {
+        return new Builder(new NoteList()).setHead(head.map(NoteNode::copyFromHere)).build();
+    }
+
     @Override
     public NoteIterator iterator() {
-        return new NoteIterator(this.head, RegionBounds.WHOLE_SONG);
+        return new NoteIterator(this.head, 0, () -> 0, RegionBounds.WHOLE_SONG);
     }
 
     NoteIterator boundedIterator(RegionBounds bounds) {
-        return new NoteIterator(this.head, bounds);
+        // Notes never overlap, so the last note to start before the region is the earliest note
+        // that could intersect it.
+        Map.Entry<Integer, NoteNode> start = nodeMap.floorEntry(bounds.getMinMs());
+        if (start == null) {
+            return new NoteIterator(this.head, 0, () -> 0, bounds);
+        }
+        int startPosition = start.getKey();
+        return new NoteIterator(
+                Optional.of(start.getValue()),
+                startPosition - start.getValue().getNote().getDelta(),
+                () -> nodeMap.headMap(startPosition).size(), // Only counted if asked for.
+                bounds);
     }
 }
@@ -30,6 +30,23 @@ public class NoteNode {
         return this.next;
     }
 
+    /**
+     * Copies this node and every node after it, along with their notes.
+     *
+     * @return The copy of this node, which is the head of the copied list.
+     */
+    NoteNode copyFromHere() {
+        NoteNode copyHead = new NoteNode(this.note.copy());
+        NoteNode copyTail = copyHead;
+        for (Optional<NoteNode> cur = this.next; cur.isPresent(); cur = cur.get().next) {
+            NoteNode copy = new NoteNode(cur.get().note.copy());
+            copy.prev = Optional.of(copyTail);
+            copyTail.next = Optional.of(copy);
+            copyTail = copy;
+        }
+        return copyHead;
+    }
+
     /**
      * Inserts new node directly to the right of the current one. Should only be used when reading
      * song notes from a file.
@@ -76,56 +93,59 @@ public class NoteNode {
     }
 
     /**
-     * Inserts a note into the linked list.
+     * Inserts a note into the linked list, searching forward from this node.
      * 
      * @param noteToInsert
      * @param deltaToInsert
-     * @param prevDelta
+     * @param prevDelta Position of the note before this one.
      * @return The new node that was inserted.
      * @throws NoteAlreadyExistsException
      */
     NoteNode insertNote(Note noteToInsert, int deltaToInsert, int prevDelta)
             throws NoteAlreadyExistsException {
-        int curDelta = prevDelta + this.note.getDelta();
-        if (deltaToInsert < curDelta) {
-            if (!this.prev.isPresent()) {
-                // TODO: Throw an error.
-                System.out.println("ERROR: Tried to replace head from inside SongNode!");
-                return null;
-            } else {
+        // Walk the list in a loop rather than recursively, so long songs can't overflow the stack.
+        NoteNode curNode = this;
+        while (true) {
+            int curDelta = prevDelta + curNode.note.getDelta();
+            if (deltaToInsert < curDelta) {
+                if (!curNode.prev.isPresent()) {
+                    // TODO: Throw an error.
+                    System.out.println("ERROR: Tried to replace head from inside SongNode!");
+                    return null;
+                }
                 // Update with new lengths and deltas.
-                NoteNode prevNode = this.prev.get();
+                NoteNode prevNode = curNode.prev.get();
                 int prevToInsertedNote = deltaToInsert - prevDelta;
                 prevNode.getNote().safeSetLength(prevToInsertedNote);
                 noteToInsert.setDelta(prevToInsertedNote);
                 int insertedToCurNote = curDelta - deltaToInsert;
                 noteToInsert.safeSetLength(insertedToCurNote);
-                this.note.setDelta(insertedToCurNote);
+                curNode.note.setDelta(insertedToCurNote);
                 // Insert note before.
                 NoteNode nodeToInsert = new NoteNode(noteToInsert);
                 prevNode.next = Optional.of(nodeToInsert);
                 nodeToInsert.prev = Optional.of(prevNode);
-                nodeToInsert.next = Optional.of(this);
-                this.prev = Optional.of(nodeToInsert);
+                nodeToInsert.next = Optional.of(curNode);
+                curNode.prev = Optional.of(nodeToInsert);
+                return nodeToInsert;
+            } else if (deltaToInsert == curDelta) {
+                // Don't insert note.
+                throw new NoteAlreadyExistsException();
+            } else if (!curNode.next.isPresent()) {
+                // Update with new length and delta.
+                int curToInsertedNote = deltaToInsert - curDelta;
+                curNode.note.safeSetLength(curToInsertedNote);
+                noteToInsert.setDelta(curToInsertedNote);
+                noteToInsert.safeSetLength(noteToInsert.getDuration());
+                // Insert note after.
+                NoteNode nodeToInsert = new NoteNode(noteToInsert);
+                curNode.next = Optional.of(nodeToInsert);
+                nodeToInsert.prev = Optional.of(curNode);
                 return nodeToInsert;
             }
-        } else if (deltaToInsert == curDelta) {
-            // Don't insert note.
-            throw new NoteAlreadyExistsException();
-        } else if (!this.next.isPresent()) {
-            // Update with new length and delta.
-            int curToInsertedNote = deltaToInsert - curDelta;
-            this.note.safeSetLength(curToInsertedNote);
-            noteToInsert.setDelta(curToInsertedNote);
-            noteToInsert.safeSetLength(noteToInsert.getDuration());
-            // Insert note after.
-            NoteNode nodeToInsert = new NoteNode(noteToInsert);
-            this.next = Optional.of(nodeToInsert);
-            nodeToInsert.prev = Optional.of(this);
-            return nodeToInsert;
-        } else {
             // Continue down the linked list.
-            return this.next.get().insertNote(noteToInsert, deltaToInsert, curDelta);
+            prevDelta = curDelta;
+            curNode = curNode.next.get();
         }
     }
 
@@ -37,6 +37,13 @@ public class Song {
     private RegionBounds cacheRegion = RegionBounds.INVALID;
     private Optional<File> cacheFile = Optional.empty();
 
+    // Incremented whenever the song changes. Guarded by this.
+    private long version = 0;
+    // If this is a snapshot, the song it was taken from and that song's version at the time.
+    private final Song source;
+    private final long sourceVersion;
+    private boolean changedSinceSnapshot = false;
+
     // Notes. (Anything marked with [#0000]-[#9999], [#TRACKEND] marks the end of these)
     private NoteList noteList;
 
@@ -138,6 +145,66 @@ public class Song {
         this.projectName = "(no title)";
         this.flags = "";
         this.instrumental = Optional.empty();
+        this.source = null;
+        this.sourceVersion = 0;
+    }
+
+    private Song(Song original, Song source, long sourceVersion) {
+        this.voicebank = original.voicebank;
+        this.standardizer = original.standardizer;
+        this.cacheManager = original.cacheManager;
+        this.noteList = original.noteList.copy();
+        this.pitchbends = original.pitchbends.copy();
+        this.outputFile = original.outputFile;
+        this.tempo = original.tempo;
+        this.projectName = original.projectName;
+        this.flags = original.flags;
+        this.mode2 = original.mode2;
+        this.instrumental = original.instrumental;
+        this.cacheRegion = original.cacheRegion;
+        this.cacheFile = original.cacheFile;
+        this.source = source;
+        this.sourceVersion = sourceVersion;
+    }
+
+    /**
+     * Copies this song so that it can be rendered, saved, or converted on another thread while
+     * this one keeps being edited. Must be called from the thread that edits the song.
+     *
+     * A render of the snapshot is kept as this song's render cache, but only if neither song has
+     * changed since the snapshot was taken.
+     *
+     * Every note is copied, so this takes time linear in the length of the song. That is small
+     * next to rendering the song, and it keeps edits from having to check for shared notes.
+     */
+    public Song snapshot() {
+        if (source != null) {
+            Song snapshot = new Song(this, source, sourceVersion);
+            snapshot.changedSinceSnapshot = changedSinceSnapshot;
+            return snapshot;
+        }
+        synchronized (this) {
+            return new Song(this, this, version);
+        }
+    }
+
+    /** Whether this is a snapshot of a song that has changed since the snapshot was taken. */
+    public boolean isStale() {
+        return source != null && source.getVersion() != sourceVersion;
+    }
+
+    private synchronized long getVersion() {
+        return version;
+    }
+
+    private void markChanged() {
+        if (source != null) {
+            changedSinceSnapshot = true;
+        } else {
+            synchronized (this) {
+                version++;
+            }
+        }
     }
 
     public Builder toBuilder() {
@@ -165,8 +232,7 @@ public class Song {
             System.out.println("Error: Add notes called on empty list!");
             return;
         }
-        NoteNode curNode = null; // Where to start search for place to insert new note.
-        int searchStartMs = 0;
+        markChanged();
         for (NoteData toAdd : notesToAdd) {
             Note note = new Note();
             // New note's delta/length may be overridden while inserting into note list.
@@ -187,12 +253,7 @@ public class Song {
 
             int positionMs = toAdd.getPosition();
             try {
-                if (curNode == null) {
-                    curNode = this.noteList.insertNote(note, positionMs);
-                } else {
-                    curNode = this.noteList.insertNote(note, positionMs, curNode, searchStartMs);
-                }
-                searchStartMs = positionMs - curNode.getNote().getDelta();
+                this.noteList.insertNote(note, positionMs);
             } catch (NoteAlreadyExistsException e) {
                 // Swallow this for now.
             }
@@ -207,6 +268,7 @@ public class Song {
             System.out.println("Error: Remove notes called on empty collection!");
             return null;
         }
+        markChanged();
 
         HashSet<NoteUpdateData> removedNotes = new HashSet<>(); // Return value.
         int firstNeighbor = Integer.MAX_VALUE;
@@ -259,6 +321,7 @@ public class Song {
      * Modifies a note in-place without changing its lyric, position, or duration.
      */
     public NoteUpdateData modifyNote(NoteData toModify) {
+        markChanged();
         int positionMs = toModify.getPosition();
         NoteNode node = this.noteList.getNote(positionMs);
         Note note = node.getNote();
@@ -293,6 +356,7 @@ public class Song {
      * Standardizes a set of notes.
      */
     public MutateResponse standardizeNotes(int firstPosition, int lastPosition) {
+        markChanged();
         LinkedList<NoteUpdateData> updatedNotes = new LinkedList<>();
         Optional<NoteUpdateData> prevNeighbor = Optional.empty();
         Optional<NoteUpdateData> nextNeighbor = Optional.empty();
@@ -507,28 +571,53 @@ public class Song {
 
     // Can be changed without converting song to a builder and back.
     public void setCache(RegionBounds cacheRegion, File cacheFile) {
-        clearCache();
+        if (source != null) {
+            // The source song owns its cache file, so only forget about the old one here.
+            synchronized (this) {
+                this.cacheRegion = cacheRegion;
+                this.cacheFile = Optional.of(cacheFile);
+            }
+            if (!changedSinceSnapshot) {
+                source.publishCache(sourceVersion, cacheRegion, cacheFile);
+            }
+            return;
+        }
+        publishCache(getVersion(), cacheRegion, cacheFile);
+    }
+
+    // Replaces the render cache if the song is still at the given version.
+    private synchronized void publishCache(
+            long expectedVersion, RegionBounds cacheRegion, File cacheFile) {
+        if (version != expectedVersion) {
+            return; // Render is out of date. Its file is deleted on exit.
+        }
+        if (this.cacheFile.isPresent() && !this.cacheFile.get().equals(cacheFile)) {
+            cacheManager.clearCache(this.cacheFile.get());
+        }
         this.cacheRegion = cacheRegion;
         this.cacheFile = Optional.of(cacheFile);
     }
 
-    public void clearCache() {
-        cacheFile.ifPresent(cacheManager::clearCache);
+    public synchronized void clearCache() {
+        if (source == null) {
+            cacheFile.ifPresent(cacheManager::clearCache);
+            version++;
+        }
         cacheRegion = RegionBounds.INVALID;
         cacheFile = Optional.empty();
     }
 
-    public RegionBounds getCacheRegion() {
+    public synchronized RegionBounds getCacheRegion() {
         return cacheRegion;
     }
 
-    public Optional<File> getCacheFile() {
+    public synchronized Optional<File> getCacheFile() {
         return cacheFile;
     }
 
     private void clearNoteCache(Note note) {
         if (note.getCacheFile() != null) {
-            cacheManager.clearCache(note.getCacheFile());
+            cacheManager.releaseNoteCache(note.getCacheFile());
         }
         note.clearCacheFile();
     }
@@ -1,7 +1,12 @@
 package com.utsusynth.utsu.model.song.pitch;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.TreeMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.data.PitchbendData;
@@ -9,23 +14,61 @@ import com.utsusynth.utsu.model.song.pitch.portamento.Portamento;
 import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
 
 /**
- * Stores up to one pitchbend for each "pitch step" in a song. There are always 96 pitch steps per
- * beat, regardless of tempo.
+ * Stores the pitchbends of a song as a few segments per note, and evaluates them one "pitch step"
+ * at a time when rendered. There are always 96 pitch steps per beat, regardless of tempo.
  */
 public class PitchCurve {
-    // Map of pitch step number to attached pitchbend, if any.
+    private static final int MAX_CACHED_RENDERS = 10000;
+    // Characters for each 6-bit number, in the order resamplers expect.
+    private static final char[] SIX_BIT_CHARS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // Map of note start (in ms) to the pitchbends attached to that note.
     // TODO: Limit the minimum and maximum x-values of portamento/vibrato.
-    private final HashMap<Integer, Pitchbend> pitchbends;
+    private final TreeMap<Integer, NotePitchbends> pitchbends;
     private final PortamentoFactory portamentoFactory;
 
+    // How far any note's pitchbends have reached before and after the note's start, in ms.
+    private int maxReachBeforeMs = 0;
+    private int maxReachAfterMs = 0;
+
+    // Reusable arrays for evaluating a range of pitch steps.
+    private int[] portamentoIds = new int[0]; // Index into evalPortamentos, or -1 if none.
+    private double[] portamentoPitches = new double[0]; // In tenths.
+    private double[] vibratoPitches = new double[0]; // In tenths, or NaN if no vibrato.
+    private final List<Portamento> evalPortamentos = new ArrayList<>();
+    private char[] renderBuffer = new char[0];
+    private int renderLength = 0;
+
+    // Previously rendered pitch strings, keyed by step range and note number.
+    private final Cache<String, CachedRender> renders;
+
     @Inject
     public PitchCurve(PortamentoFactory portamentoFactory) {
-        this.pitchbends = new HashMap<>();
+        this.pitchbends = new TreeMap<>();
         this.portamentoFactory = portamentoFactory;
+        this.renders = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_RENDERS).build();
+    }
+
+    private PitchCurve(PitchCurve original) {
+        this.pitchbends = new TreeMap<>(original.pitchbends);
+        this.portamentoFactory = original.portamentoFactory;
+        this.maxReachBeforeMs = original.maxReachBeforeMs;
+        this.maxReachAfterMs = original.maxReachAfterMs;
+        this.renders = original.renders;
+    }
+
+    /**
+     * Copies the curve so that it can be rendered on another thread while this one changes. The
+     * pitchbends of each note never change once added, so they are shared rather than copied, as
+     * are previously rendered pitch strings.
+     */
+    public synchronized PitchCurve copy() {
+        return new PitchCurve(this);
     }
 
     /** Adds pitchbends for a single note. */
-    public void addPitchbends(
+    public synchronized void addPitchbends(
             int noteStartMs,
             int noteLengthMs,
             PitchbendData data,
@@ -35,6 +78,15 @@ public class PitchCurve {
             // TODO: Handle this.
             return;
         }
+        NotePitchbends notePitchbends = new NotePitchbends(noteStartMs);
+        notePitchbends.portamentoKey = String.join(
+                "|",
+                Integer.toString(prevNoteNum),
+                Integer.toString(curNoteNum),
+                data.getPBS().toString(),
+                data.getPBW().toString(),
+                data.getPBY().toString(),
+                data.getPBM().toString());
         // Start x value (in milliseconds) and y value (in tenths) of a pitchbend.
         double startMs = noteStartMs + data.getPBS().get(0);
         double pitchStart = prevNoteNum * 10; // Measured in tenths (1/10 a semitone.)
@@ -57,14 +109,9 @@ public class PitchCurve {
             Portamento portamento = portamentoFactory
                     .makePortamento(startMs, pitchStart, endMs, pitchEnd, pitchShape);
 
-            // Add portamento to all affected steps on the pitch curve.
-            for (int j = nextPitchStep(startMs); j <= prevPitchStep(endMs); j++) {
-                if (pitchbends.containsKey(j)) {
-                    pitchbends.get(j).addPortamento(noteStartMs, portamento);
-                } else {
-                    pitchbends.put(j, Pitchbend.makePitchbend(noteStartMs, portamento));
-                }
-            }
+            // Portamento covers every pitch step from its start to its end, inclusive.
+            notePitchbends.portamentos.add(
+                    new Segment<>(portamento, nextPitchStep(startMs), prevPitchStep(endMs)));
             // End of the current pitchbend is the start of the next one.
             startMs = endMs;
             pitchStart = pitchEnd;
@@ -86,142 +133,225 @@ public class PitchCurve {
                     data.getVibrato(5),
                     data.getVibrato(6),
                     data.getVibrato(8));
-            for (int i = nextPitchStep(vibratoStartMs); i < prevPitchStep(vibratoEndMs); i++) {
-                if (pitchbends.containsKey(i)) {
-                    pitchbends.get(i).addVibrato(vibrato);
-                } else {
-                    pitchbends.put(i, Pitchbend.makePitchbend(vibrato));
-                }
-            }
+            // Vibrato stops just before the last pitch step of the note.
+            notePitchbends.vibrato = Optional.of(new Segment<>(
+                    vibrato,
+                    nextPitchStep(vibratoStartMs),
+                    prevPitchStep(vibratoEndMs) - 1));
+            notePitchbends.vibratoKey =
+                    noteLengthMs + "|" + Arrays.toString(data.getVibrato());
+        }
+
+        if (pitchbends.containsKey(noteStartMs)) {
+            // TODO: Handle this.
+            System.out.println("Error: tried to add pitchbends to a note twice.");
+        }
+        pitchbends.put(noteStartMs, notePitchbends);
+        for (Segment<?> segment : notePitchbends.getSegments()) {
+            maxReachBeforeMs = Math.max(maxReachBeforeMs, noteStartMs - segment.firstStep * 5);
+            maxReachAfterMs = Math.max(maxReachAfterMs, segment.lastStep * 5 - noteStartMs);
         }
     }
 
     /** Removes pitchbends for a single note. */
-    public void removePitchbends(int noteStartMs, int noteLengthMs, PitchbendData data) {
+    public synchronized void removePitchbends(
+            int noteStartMs, int noteLengthMs, PitchbendData data) {
         if (data.getPBS().isEmpty() || data.getPBW().isEmpty()) {
             // TODO: Handle this.
             return;
         }
-        double startMs = noteStartMs + data.getPBS().get(0);
-        double endMs = startMs;
-        for (double width : data.getPBW()) {
-            endMs += width;
-        }
-        for (int i = nextPitchStep(startMs); i <= prevPitchStep(endMs); i++) {
-            // Remove portamento from each pitch step it covers.
-            if (pitchbends.containsKey(i)) {
-                Pitchbend pitchbend = pitchbends.get(i);
-                pitchbend.removePortamento(noteStartMs);
-                if (pitchbend.isEmpty()) {
-                    pitchbends.remove(i);
-                }
-            }
+        NotePitchbends notePitchbends = pitchbends.get(noteStartMs);
+        if (notePitchbends == null) {
+            return;
         }
+        // Replaced rather than changed, since copies of this curve may share it.
+        NotePitchbends remaining = new NotePitchbends(noteStartMs);
+        if (data.getVibrato(0) <= 0 && data.getVibrato(1) <= 0) {
+            // Vibrato is only removed from the entire note.
+            remaining.vibrato = notePitchbends.vibrato;
+            remaining.vibratoKey = notePitchbends.vibratoKey;
+        }
+        if (remaining.isEmpty()) {
+            pitchbends.remove(noteStartMs);
+        } else {
+            pitchbends.put(noteStartMs, remaining);
+        }
+    }
 
-        // Remove vibrato from the entire note.
-        if (data.getVibrato(0) > 0 || data.getVibrato(1) > 0) {
-            double noteEndMs = noteStartMs + noteLengthMs;
-            for (int i = nextPitchStep(noteStartMs); i < prevPitchStep(noteEndMs); i++) {
-                if (pitchbends.containsKey(i)) {
-                    Pitchbend pitchbend = pitchbends.get(i);
-                    pitchbend.removeVibrato();
-                    if (pitchbend.isEmpty()) {
-                        pitchbends.remove(i);
-                    }
-                }
-            }
+    /**
+     * Writes out pitchbends for a section into a format readable by resamplers. A section is only
+     * rendered again if the pitchbends of a note that reaches into it have changed.
+     */
+    public synchronized String renderPitchbends(int firstStep, int lastStep, int noteNum) {
+        String renderKey = firstStep + ":" + lastStep + ":" + noteNum;
+        List<NotePitchbends> notes = findNotes(firstStep, lastStep);
+        List<String> dataKeys = new ArrayList<>(notes.size());
+        for (NotePitchbends note : notes) {
+            dataKeys.add(note.getDataKey());
+        }
+        CachedRender cached = renders.getIfPresent(renderKey);
+        if (cached != null && cached.dataKeys.equals(dataKeys)) {
+            return cached.pitchString;
         }
+        String pitchString = render(firstStep, lastStep, noteNum, notes);
+        renders.put(renderKey, new CachedRender(dataKeys, pitchString));
+        return pitchString;
     }
 
-    /** Writes out pitchbends for a section into a format readable by resamplers. */
-    public String renderPitchbends(int firstStep, int lastStep, int noteNum) {
-        StringBuilder result = new StringBuilder();
+    private String render(int firstStep, int lastStep, int noteNum, List<NotePitchbends> notes) {
+        int numSteps = Math.max(0, lastStep - firstStep + 1);
+        evaluate(firstStep, numSteps, notes);
+        renderLength = 0;
+
         double noteNumPitch = noteNum * 10; // In tenths. (1/10 of a semitone)
         double defaultPitch = 0; // In tenths. (1/10 of a semitone)
-        for (int scanStep = firstStep; scanStep <= lastStep; scanStep++) {
+        for (int i = 0; i < numSteps; i++) {
             // Scan through the steps until first default pitch is found.
-            if (pitchbends.containsKey(scanStep)) {
-                Optional<Portamento> portamento = pitchbends.get(scanStep).getPortamento();
-                if (portamento.isPresent()) {
-                    defaultPitch = portamento.get().getStartPitch();
-                    break;
-                }
+            if (portamentoIds[i] >= 0) {
+                defaultPitch = evalPortamentos.get(portamentoIds[i]).getStartPitch();
+                break;
             }
         }
 
-        for (int step = firstStep; step <= lastStep; step++) {
-            if (pitchbends.containsKey(step)) {
+        for (int i = 0; i < numSteps; i++) {
+            if (hasPitchbend(i)) {
                 // Write pitchbend.
-                int positionMs = step * 5; // 92 pitch steps in a beat of 480 ms.
-                double realPitch = pitchbends.get(step).apply(positionMs); // In tenths.
-                if (!pitchbends.get(step).getPortamento().isPresent()) {
-                    realPitch += defaultPitch; // Vibrato modifies default pitch if no portamento.
+                double realPitch; // In tenths.
+                if (portamentoIds[i] >= 0) {
+                    realPitch = portamentoPitches[i];
+                } else {
+                    realPitch = defaultPitch; // Vibrato modifies default pitch if no portamento.
+                }
+                if (!Double.isNaN(vibratoPitches[i])) {
+                    realPitch += vibratoPitches[i];
                 }
                 int diff = (int) ((realPitch - noteNumPitch) * 10); // In cents.
-                result.append(convertTo12Bit(diff));
+                append12Bit(diff);
 
                 // Set the default pitch to the one at the end of current portamento.
-                Optional<Portamento> portamento = pitchbends.get(step).getPortamento();
-                if (portamento.isPresent()) {
-                    defaultPitch = portamento.get().getEndPitch();
+                if (portamentoIds[i] >= 0) {
+                    defaultPitch = evalPortamentos.get(portamentoIds[i]).getEndPitch();
                 }
             } else {
                 // Write a stretch of no pitchbends.
-                int numEmpty = 0;
-                int emptyStep = step;
-                for (; emptyStep <= lastStep; emptyStep++) {
-                    if (pitchbends.containsKey(emptyStep)) {
-                        break;
-                    } else {
-                        numEmpty++;
-                    }
+                int emptyEnd = i;
+                while (emptyEnd < numSteps && !hasPitchbend(emptyEnd)) {
+                    emptyEnd++;
                 }
+                int numEmpty = emptyEnd - i;
                 int diff = (int) ((defaultPitch - noteNumPitch) * 10); // In cents.
-                result.append(convertTo12Bit(diff));
+                append12Bit(diff);
                 if (numEmpty > 1) {
-                    result.append(String.format("#%d#", numEmpty - 1));
+                    appendRepeats(numEmpty - 1);
+                }
+                i = emptyEnd - 1; // Move to the end of the empty stretch.
+            }
+        }
+        return new String(renderBuffer, 0, renderLength);
+    }
+
+    // Finds every note with a pitchbend between firstStep and lastStep, in order of note start.
+    private List<NotePitchbends> findNotes(int firstStep, int lastStep) {
+        List<NotePitchbends> notes = new ArrayList<>();
+        if (firstStep > lastStep) {
+            return notes;
+        }
+        // Only notes starting near the requested range can have pitchbends inside of it.
+        for (NotePitchbends note : pitchbends.subMap(
+                firstStep * 5 - maxReachAfterMs,
+                true,
+                lastStep * 5 + maxReachBeforeMs,
+                true).values()) {
+            for (Segment<?> segment : note.getSegments()) {
+                if (segment.firstStep <= lastStep && firstStep <= segment.lastStep) {
+                    notes.add(note);
+                    break;
                 }
-                step = emptyStep - 1; // Move step to the end of the empty stretch.
             }
         }
-        return result.toString();
+        return notes;
+    }
+
+    /**
+     * Fills the evaluation arrays with the pitchbends of numSteps pitch steps, starting with
+     * firstStep. Where notes overlap, the portamento of the later note wins.
+     */
+    private void evaluate(int firstStep, int numSteps, List<NotePitchbends> notes) {
+        if (portamentoIds.length < numSteps) {
+            int newLength = Math.max(numSteps, portamentoIds.length * 2);
+            portamentoIds = new int[newLength];
+            portamentoPitches = new double[newLength];
+            vibratoPitches = new double[newLength];
+        }
+        Arrays.fill(portamentoIds, 0, numSteps, -1);
+        Arrays.fill(vibratoPitches, 0, numSteps, Double.NaN);
+        evalPortamentos.clear();
+        if (numSteps == 0) {
+            return;
+        }
+        int lastStep = firstStep + numSteps - 1;
+        for (NotePitchbends notePitchbends : notes) {
+            for (Segment<Portamento> segment : notePitchbends.portamentos) {
+                int start = Math.max(firstStep, segment.firstStep);
+                int end = Math.min(lastStep, segment.lastStep);
+                if (start > end) {
+                    continue;
+                }
+                int id = evalPortamentos.size();
+                evalPortamentos.add(segment.mutation);
+                for (int step = start; step <= end; step++) {
+                    portamentoIds[step - firstStep] = id;
+                    // 96 pitch steps in a beat of 480 ms.
+                    portamentoPitches[step - firstStep] = segment.mutation.apply(step * 5);
+                }
+            }
+            if (notePitchbends.vibrato.isPresent()) {
+                Segment<Vibrato> segment = notePitchbends.vibrato.get();
+                int start = Math.max(firstStep, segment.firstStep);
+                int end = Math.min(lastStep, segment.lastStep);
+                for (int step = start; step <= end; step++) {
+                    vibratoPitches[step - firstStep] = segment.mutation.apply(step * 5);
+                }
+            }
+        }
+    }
+
+    private boolean hasPitchbend(int index) {
+        return portamentoIds[index] >= 0 || !Double.isNaN(vibratoPitches[index]);
     }
 
     /**
      * For some reason, resamplers want two characters that represent a 12-bit number in two's
      * complement form (-2048 to 2047). I would not be using this format if existing resamplers
      * didn't require it.
-     * 
-     * @return A string of length 2 representing a 12-bit number.
      */
-    private static String convertTo12Bit(int convertMe) {
+    private void append12Bit(int convertMe) {
         // Convert out of two's complement form.
         if (convertMe < 0) {
             convertMe += 4096;
         }
         // Make sure convertMe is between 0 and 4095.
         convertMe = Math.max(0, Math.min(4095, convertMe));
-        StringBuilder result = new StringBuilder(); // Set to 0 by default.
-        for (int sixBitNumber : ImmutableList.of(convertMe / 64, convertMe % 64)) {
-            if (sixBitNumber >= 0 && sixBitNumber < 26) {
-                result.append((char) (sixBitNumber + 'A'));
-            } else if (sixBitNumber >= 26 && sixBitNumber < 52) {
-                result.append((char) (sixBitNumber - 26 + 'a'));
-            } else if (sixBitNumber >= 52 && sixBitNumber < 62) {
-                result.append((char) (sixBitNumber - 52 + '0'));
-            } else if (sixBitNumber == 62) {
-                result.append('+');
-            } else if (sixBitNumber == 63) {
-                result.append('/');
-            } else {
-                // Return 0 if the number is not in range [0, 64).
-                return "AA";
-            }
-        }
-        if (result.length() != 2) {
-            return "AA";
+        ensureRenderCapacity(2);
+        renderBuffer[renderLength++] = SIX_BIT_CHARS[convertMe / 64];
+        renderBuffer[renderLength++] = SIX_BIT_CHARS[convertMe % 64];
+    }
+
+    // Writes that the previous value repeats a number of times, in the form "#numRepeats#".
+    private void appendRepeats(int numRepeats) {
+        String digits = Integer.toString(numRepeats);
+        ensureRenderCapacity(digits.length() + 2);
+        renderBuffer[renderLength++] = '#';
+        digits.getChars(0, digits.length(), renderBuffer, renderLength);
+        renderLength += digits.length();
+        renderBuffer[renderLength++] = '#';
+    }
+
+    private void ensureRenderCapacity(int numChars) {
+        if (renderLength + numChars > renderBuffer.length) {
+            renderBuffer = Arrays.copyOf(
+                    renderBuffer, Math.max(renderLength + numChars, renderBuffer.length * 2));
         }
-        return result.toString();
     }
 
     // Finds the pitch step just after this position.
@@ -238,4 +368,56 @@ public class PitchCurve {
         }
         return prevStep;
     }
+
+    /** The portamentos and vibrato attached to a single note. Never changed once in the map. */
+    private static class NotePitchbends {
+        private final int noteStartMs;
+        private final List<Segment<Portamento>> portamentos = new ArrayList<>();
+        private Optional<Segment<Vibrato>> vibrato = Optional.empty();
+        // Everything the segments were made from, to tell when they've changed.
+        private String portamentoKey = "";
+        private String vibratoKey = "";
+
+        private NotePitchbends(int noteStartMs) {
+            this.noteStartMs = noteStartMs;
+        }
+
+        private String getDataKey() {
+            return noteStartMs + "/" + portamentoKey + "/" + vibratoKey;
+        }
+
+        private List<Segment<?>> getSegments() {
+            List<Segment<?>> segments = new ArrayList<>(portamentos);
+            vibrato.ifPresent(segments::add);
+            return segments;
+        }
+
+        private boolean isEmpty() {
+            return portamentos.isEmpty() && vibrato.isEmpty();
+        }
+    }
+
+    /** A rendered pitch string and the pitchbends it was rendered from. */
+    private static class CachedRender {
+        private final List<String> dataKeys;
+        private final String pitchString;
+
+        private CachedRender(List<String> dataKeys, String pitchString) {
+            this.dataKeys = dataKeys;
+            this.pitchString = pitchString;
+        }
+    }
+
+    /** A pitch mutation and the range of pitch steps it covers, inclusive. */
+    private static class Segment<T extends PitchMutation> {
+        private final T mutation;
+        private final int firstStep;
+        private final int lastStep;
+
+        private Segment(T mutation, int firstStep, int lastStep) {
+            this.mutation = mutation;
+            this.firstStep = firstStep;
+            this.lastStep = lastStep;
+        }
+    }
 }
@@ -1,6 +1,8 @@
 package com.utsusynth.utsu.model.voicebank;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.utsusynth.utsu.common.data.LyricConfigData;
 import com.utsusynth.utsu.common.data.LyricConfigData.FrqStatus;
@@ -14,12 +16,17 @@ import com.utsusynth.utsu.files.PreferencesManager.GuessAliasMode;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * In-code representation of a voice bank. Compatible with oto.ini files. TODO: Support oto_ini.txt
  * as well
  */
 public class Voicebank {
+    private static final int MAX_CACHED_ALIASES = 20000;
+
     // TODO: Once you have a VoicebankManager, consider sharing between voicebanks.
     // private final DisjointLyricSet conversionSet;
     private final LyricConfigMap lyricConfigs;
@@ -29,6 +36,11 @@ public class Voicebank {
     private final PreferencesManager preferencesManager;
     private PresampConfig presampConfig; // Immutable value.
 
+    // Aliases that have already been looked up, including ones with no match. Cleared whenever
+    // lyrics, pitches, or lyric conversions change.
+    private final Cache<AliasKey, Optional<LyricConfig>> resolvedAliases;
+    private final Cache<String, Character> vowels; // Previous lyric to its vowel sound.
+
     private File pathToVoicebank; // Example: "/Library/Iona.utau/"
     private String name; // Example: "Iona"
     private String author; // Example: "Lethe"
@@ -103,6 +115,7 @@ public class Voicebank {
                 // TODO: Handle this.
                 System.out.println("Tried to build an empty voicebank!");
             }
+            newVoicebank.clearResolvedAliases(); // Once for the whole batch of changes.
             return newVoicebank;
         }
     }
@@ -120,6 +133,8 @@ public class Voicebank {
         this.frqGenerator = frqGenerator;
         this.preferencesManager = preferencesManager;
         this.presampConfig = presampConfig;
+        this.resolvedAliases = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ALIASES).build();
+        this.vowels = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_ALIASES).build();
 
         // Default values.
         this.name = "";
@@ -194,10 +209,24 @@ public class Voicebank {
             return lyricConfigs.hasLyric(lyric)
                     ? Optional.of(lyricConfigs.getConfig(lyric)) : Optional.empty();
         }
-        String vcvPrefix = getVowel(prevLyric) + " "; // Most common VCV format.
+        char vowel = getVowel(prevLyric);
         String prefix = pitchMap.getPrefix(pitch); // Pitch prefix.
         String suffix = pitchMap.getSuffix(pitch); // Pitch suffix.
 
+        // Notes with the same vowel before them and the same pitch prefix/suffix resolve the same.
+        AliasKey key = new AliasKey(vowel, lyric, prefix, suffix);
+        Optional<LyricConfig> resolved = resolvedAliases.getIfPresent(key);
+        if (resolved == null) {
+            resolved = resolveAlias(vowel, lyric, prefix, suffix);
+            resolvedAliases.put(key, resolved);
+        }
+        return resolved;
+    }
+
+    private Optional<LyricConfig> resolveAlias(
+            char vowel, String lyric, String prefix, String suffix) {
+        String vcvPrefix = vowel + " "; // Most common VCV format.
+
         // Check all possible prefix/lyric/suffix combinations.
         for (String combo : allCombinations(prefix, vcvPrefix, lyric, suffix)) {
             if (lyricConfigs.hasLyric(combo)) {
@@ -236,6 +265,15 @@ public class Voicebank {
         if (prevLyric.isEmpty()) {
             return '-'; // Return dash if there appears to be no previous note.
         }
+        Character vowel = vowels.getIfPresent(prevLyric);
+        if (vowel == null) {
+            vowel = findVowel(prevLyric);
+            vowels.put(prevLyric, vowel);
+        }
+        return vowel;
+    }
+
+    private char findVowel(String prevLyric) {
         String strippedLyric = PitchUtils.removePitches(prevLyric);
         for (String convertedLyric : presampConfig.getLyricConversions().getGroup(strippedLyric)) {
             if (CharMatcher.ascii().matchesAllOf(convertedLyric)) {
@@ -305,11 +343,13 @@ public class Voicebank {
                 data.getLyric(),
                 data.getFileName(),
                 data.getConfigValues());
+        clearResolvedAliases();
         return lyricConfigs.addConfig(newConfig);
     }
 
     public void removeLyricConfig(String lyric) {
         lyricConfigs.removeConfig(lyric);
+        clearResolvedAliases();
     }
 
     public void modifyLyricData(LyricConfigData data) {
@@ -319,6 +359,7 @@ public class Voicebank {
                 data.getFileName(),
                 data.getConfigValues());
         lyricConfigs.setConfig(newConfig);
+        clearResolvedAliases();
     }
 
     public Iterator<PitchMapData> getPitchData() {
@@ -342,37 +383,53 @@ public class Voicebank {
         // Replace value that has changed, leave others the same.
         pitchMap.putPrefix(data.getPitch(), data.getPrefix());
         pitchMap.putSuffix(data.getPitch(), data.getSuffix());
+        clearResolvedAliases();
     }
 
-    private boolean generateFrq(File wavFile) {
-        String wavName = wavFile.getName();
-        String frqName = wavName.substring(0, wavName.length() - 4) + "_wav.frq";
-        File frqFile = wavFile.getParentFile().toPath().resolve(frqName).toFile();
-        frqGenerator.genFrqFile(wavFile, frqFile);
-        if (frqFile.canRead()) {
-            soundFiles.remove(frqFile); // Removes existing frq file, if present.
-            soundFiles.add(frqFile);
-            return true;
-        }
-        return false;
+    private void clearResolvedAliases() {
+        resolvedAliases.invalidateAll();
+        vowels.invalidateAll();
     }
 
     /**
-     * Generates the specified frq files and updates each piece of data.
+     * Generates the specified frq files and updates each piece of data. Lyrics that share a wav
+     * file only generate it once, and frq files newer than their wav files are kept as they are.
+     *
+     * @param uiThread Runs status updates where the UI can see them. Updates that arrive close
+     *        together are run in one batch.
      */
-    public void generateFrqs(Iterator<LyricConfigData> dataIterator) {
+    public void generateFrqs(Iterator<LyricConfigData> dataIterator, Consumer<Runnable> uiThread) {
+        Map<File, List<LyricConfigData>> dataByWavFile = new LinkedHashMap<>();
         while (dataIterator.hasNext()) {
             LyricConfigData data = dataIterator.next();
             if (data == null) {
                 continue;
             }
-            data.setFrqStatus(FrqStatus.LOADING);
-            if (generateFrq(data.getPathToFile())) {
-                data.setFrqStatus(FrqStatus.VALID);
+            dataByWavFile
+                    .computeIfAbsent(data.getPathToFile(), file -> new ArrayList<>())
+                    .add(data);
+        }
+        StatusUpdates updates = new StatusUpdates(uiThread);
+        updates.post(() -> {
+            for (List<LyricConfigData> dataList : dataByWavFile.values()) {
+                dataList.forEach(data -> data.setFrqStatus(FrqStatus.LOADING));
+            }
+        });
+        frqGenerator.genFrqFiles(dataByWavFile.keySet(), (wavFile, isValid) -> updates.post(() -> {
+            // Sound files are only changed from the UI thread.
+            if (isValid) {
+                soundFiles.add(wavFile);
             } else {
-                data.setFrqStatus(FrqStatus.INVALID);
+                soundFiles.remove(wavFile);
             }
-        }
+            FrqStatus status = isValid ? FrqStatus.VALID : FrqStatus.INVALID;
+            dataByWavFile.get(wavFile).forEach(data -> data.setFrqStatus(status));
+        }));
+    }
+
+    /** Stops generating frq files. Files that haven't finished are left as they were. */
+    public void cancelFrqGeneration() {
+        frqGenerator.cancelFrqFiles();
     }
 
     /** Get readonly data about the voicebank. Useful for plugins. */
@@ -409,6 +466,64 @@ public class Voicebank {
         return description;
     }
 
+    /** Everything that affects which config a lyric resolves to. */
+    private static class AliasKey {
+        private final char vowel;
+        private final String lyric;
+        private final String prefix;
+        private final String suffix;
+
+        private AliasKey(char vowel, String lyric, String prefix, String suffix) {
+            this.vowel = vowel;
+            this.lyric = lyric;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof AliasKey)) {
+                return false;
+            }
+            AliasKey key = (AliasKey) other;
+            return vowel == key.vowel
+                    && lyric.equals(key.lyric)
+                    && prefix.equals(key.prefix)
+                    && suffix.equals(key.suffix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vowel, lyric, prefix, suffix);
+        }
+    }
+
+    /** Collects updates from any thread and runs them on the UI thread in batches. */
+    private static class StatusUpdates {
+        private final Consumer<Runnable> uiThread;
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+        private StatusUpdates(Consumer<Runnable> uiThread) {
+            this.uiThread = uiThread;
+        }
+
+        private void post(Runnable update) {
+            pending.add(update);
+            if (flushScheduled.compareAndSet(false, true)) {
+                uiThread.accept(this::flush);
+            }
+        }
+
+        private void flush() {
+            flushScheduled.set(false);
+            Runnable update;
+            while ((update = pending.poll()) != null) {
+                update.run();
+            }
+        }
+    }
+
     @Override
     public String toString() {
         // Crappy string representation of a Voicebank object.
@@ -3,6 +3,7 @@ package com.utsusynth.utsu.view.config;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.i18n.Localizable;
 import com.utsusynth.utsu.common.i18n.Localizer;
+import com.utsusynth.utsu.engine.resampler.UtsuResampler;
 import com.utsusynth.utsu.files.PreferencesManager;
 import com.utsusynth.utsu.model.voicebank.VoicebankContainer;
 import javafx.application.Platform;
@@ -20,6 +21,7 @@ import java.util.ResourceBundle;
 public class EnginePreferencesEditor extends PreferencesEditor implements Localizable {
     private final PreferencesManager preferencesManager;
     private final VoicebankContainer voicebankContainer;
+    private final UtsuResampler builtInResampler;
     private final Localizer localizer;
 
     private String displayName = "Engine";
@@ -27,9 +29,13 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
     private Label cacheLabel;
     private RadioButton cacheDisabled;
     private RadioButton cacheEnabled;
+    private Label streamingLabel;
+    private RadioButton streamingDisabled;
+    private RadioButton streamingEnabled;
     private Label defaultResamplerLabel;
-    private File currentResampler;
+    private String currentResampler;
     private Button changeResamplerButton;
+    private Button builtInResamplerButton;
     private Button resetResamplerButton;
     private Label defaultWavtoolLabel;
     private String currentWavtool;
@@ -43,9 +49,11 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
     public EnginePreferencesEditor(
             PreferencesManager preferencesManager,
             VoicebankContainer voicebankContainer,
+            UtsuResampler builtInResampler,
             Localizer localizer) {
         this.preferencesManager = preferencesManager;
         this.voicebankContainer = voicebankContainer;
+        this.builtInResampler = builtInResampler;
         this.localizer = localizer;
     }
 
@@ -90,6 +98,25 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
                 cacheEnabled.setSelected(true);
         }
 
+        streamingLabel = new Label("Play while rendering");
+        streamingLabel.setWrapText(true);
+        streamingLabel.setMaxWidth(170);
+        GridPane.setValignment(streamingLabel, VPos.TOP);
+        ToggleGroup streamingGroup = new ToggleGroup();
+        VBox streamingVBox = new VBox(5);
+        streamingDisabled = new RadioButton("Disabled");
+        streamingDisabled.setToggleGroup(streamingGroup);
+        streamingEnabled = new RadioButton("Enabled");
+        streamingEnabled.setToggleGroup(streamingGroup);
+        streamingVBox.getChildren().addAll(streamingDisabled, streamingEnabled);
+        switch (preferencesManager.getStreaming()) {
+            case DISABLED:
+                streamingDisabled.setSelected(true);
+                break;
+            case ENABLED:
+                streamingEnabled.setSelected(true);
+        }
+
         defaultResamplerLabel = new Label("Default resampler");
         defaultResamplerLabel.setWrapText(true);
         defaultResamplerLabel.setMaxWidth(170);
@@ -98,22 +125,28 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
         TextField resamplerName = new TextField();
         resamplerName.setEditable(false);
         currentResampler = preferencesManager.getResampler();
-        resamplerName.setText(currentResampler.getName());
+        resamplerName.setText(guessFileName(currentResampler));
         HBox resamplerHBox = new HBox(5);
         changeResamplerButton = new Button("Change...");
         changeResamplerButton.setOnAction(event -> {
-            File newResampler = selectExecutable();
-            if (newResampler != null && newResampler.canExecute()) {
-                currentResampler = newResampler;
-                resamplerName.setText(currentResampler.getName());
+            File newResamplerFile = selectExecutable();
+            if (newResamplerFile != null && newResamplerFile.canExecute()) {
+                currentResampler = newResamplerFile.getAbsolutePath();
+                resamplerName.setText(newResamplerFile.getName());
             }
         });
+        builtInResamplerButton = new Button("Built-in");
+        builtInResamplerButton.setOnAction(event -> {
+            currentResampler = builtInResampler.toString();
+            resamplerName.setText(currentResampler);
+        });
         resetResamplerButton = new Button("Reset");
         resetResamplerButton.setOnAction(event -> {
             currentResampler = preferencesManager.getResamplerDefault();
-            resamplerName.setText(currentResampler.getName());
+            resamplerName.setText(guessFileName(currentResampler));
         });
-        resamplerHBox.getChildren().addAll(changeResamplerButton, resetResamplerButton);
+        resamplerHBox.getChildren().addAll(
+                changeResamplerButton, builtInResamplerButton, resetResamplerButton);
         resamplerVBox.getChildren().addAll(resamplerName, resamplerHBox);
 
         defaultWavtoolLabel = new Label("Default wavtool");
@@ -176,12 +209,14 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
         viewInternal.setVgap(10);
         viewInternal.add(cacheLabel, 0, 0);
         viewInternal.add(cacheVBox, 1, 0);
-        viewInternal.add(defaultResamplerLabel, 0, 1);
-        viewInternal.add(resamplerVBox, 1, 1);
-        viewInternal.add(defaultWavtoolLabel, 0, 2);
-        viewInternal.add(wavtoolVBox, 1, 2);
-        viewInternal.add(defaultVoicebankLabel, 0, 3);
-        viewInternal.add(voicebankVBox, 1, 3);
+        viewInternal.add(streamingLabel, 0, 1);
+        viewInternal.add(streamingVBox, 1, 1);
+        viewInternal.add(defaultResamplerLabel, 0, 2);
+        viewInternal.add(resamplerVBox, 1, 2);
+        viewInternal.add(defaultWavtoolLabel, 0, 3);
+        viewInternal.add(wavtoolVBox, 1, 3);
+        viewInternal.add(defaultVoicebankLabel, 0, 4);
+        viewInternal.add(voicebankVBox, 1, 4);
 
         localizer.localize(this);
         return viewInternal;
@@ -192,8 +227,12 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
         cacheLabel.setText(bundle.getString("preferences.engine.cacheRenderOutput"));
         cacheDisabled.setText(bundle.getString("preferences.disabled"));
         cacheEnabled.setText(bundle.getString("preferences.enabled"));
+        streamingLabel.setText(bundle.getString("preferences.engine.playWhileRendering"));
+        streamingDisabled.setText(bundle.getString("preferences.disabled"));
+        streamingEnabled.setText(bundle.getString("preferences.enabled"));
         defaultResamplerLabel.setText(bundle.getString("preferences.engine.defaultResampler"));
         changeResamplerButton.setText(bundle.getString("properties.change"));
+        builtInResamplerButton.setText(bundle.getString("preferences.engine.builtIn"));
         resetResamplerButton.setText(bundle.getString("general.reset"));
         defaultWavtoolLabel.setText(bundle.getString("preferences.engine.defaultWavtool"));
         changeWavtoolButton.setText(bundle.getString("properties.change"));
@@ -215,6 +254,11 @@ public class EnginePreferencesEditor extends PreferencesEditor implements Locali
         } else if (cacheEnabled.isSelected()) {
             preferencesManager.setCache(PreferencesManager.CacheMode.ENABLED);
         }
+        if (streamingDisabled.isSelected()) {
+            preferencesManager.setStreaming(PreferencesManager.StreamingMode.DISABLED);
+        } else if (streamingEnabled.isSelected()) {
+            preferencesManager.setStreaming(PreferencesManager.StreamingMode.ENABLED);
+        }
         preferencesManager.setResampler(currentResampler);
         preferencesManager.setWavtool(currentWavtool);
         preferencesManager.setVoicebank(voicebankContainer.getLocation());
@@ -0,0 +1,116 @@
+package com.utsusynth.utsu.view.song;
+
+import com.utsusynth.utsu.common.utils.RegionBounds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Finds notes by position and row without looking at every note. Notes are sorted by start
+ * position, both overall and within each row, and the longest duration is tracked so that a search
+ * knows how far back to start.
+ *
+ * @param <T> Note type.
+ */
+class NoteIndex<T> {
+    private final NavigableMap<Integer, Entry<T>> byPosition;
+    private final Map<Integer, NavigableMap<Integer, Entry<T>>> byRow;
+    private final TreeMap<Integer, Integer> durationCounts; // Number of notes with each duration.
+
+    NoteIndex() {
+        byPosition = new TreeMap<>();
+        byRow = new HashMap<>();
+        durationCounts = new TreeMap<>();
+    }
+
+    /** Adds a note, replacing any note that was already at this position. */
+    void put(int position, int duration, int row, T note) {
+        remove(position);
+        Entry<T> entry = new Entry<>(position, duration, row, note);
+        byPosition.put(position, entry);
+        byRow.computeIfAbsent(row, key -> new TreeMap<>()).put(position, entry);
+        durationCounts.merge(duration, 1, Integer::sum);
+    }
+
+    void remove(int position) {
+        Entry<T> entry = byPosition.remove(position);
+        if (entry == null) {
+            return;
+        }
+        NavigableMap<Integer, Entry<T>> row = byRow.get(entry.row);
+        row.remove(position);
+        if (row.isEmpty()) {
+            byRow.remove(entry.row);
+        }
+        if (durationCounts.merge(entry.duration, -1, Integer::sum) == 0) {
+            durationCounts.remove(entry.duration);
+        }
+    }
+
+    void clear() {
+        byPosition.clear();
+        byRow.clear();
+        durationCounts.clear();
+    }
+
+    /** Returns notes that intersect a region, sorted by position. */
+    List<T> getNotes(RegionBounds region) {
+        List<T> notes = new ArrayList<>();
+        addNotes(byPosition, region, notes);
+        return notes;
+    }
+
+    /** Returns notes that intersect a region and are between two rows, inclusive. */
+    List<T> getNotes(RegionBounds region, int firstRow, int lastRow) {
+        List<T> notes = new ArrayList<>();
+        if (byRow.size() < lastRow - firstRow + 1) {
+            // Fewer rows have notes than rows would be searched.
+            for (Map.Entry<Integer, NavigableMap<Integer, Entry<T>>> row : byRow.entrySet()) {
+                if (row.getKey() >= firstRow && row.getKey() <= lastRow) {
+                    addNotes(row.getValue(), region, notes);
+                }
+            }
+        } else {
+            for (int row = firstRow; row <= lastRow; row++) {
+                if (byRow.containsKey(row)) {
+                    addNotes(byRow.get(row), region, notes);
+                }
+            }
+        }
+        return notes;
+    }
+
+    private void addNotes(
+            NavigableMap<Integer, Entry<T>> sorted, RegionBounds region, Collection<T> notes) {
+        if (region.equals(RegionBounds.INVALID) || durationCounts.isEmpty()) {
+            return;
+        }
+        // A note can only reach the region if it starts less than a max duration before it.
+        long fromPosition = (long) region.getMinMs() - durationCounts.lastKey();
+        int from = (int) Math.max(Integer.MIN_VALUE, fromPosition);
+        for (Entry<T> entry : sorted.subMap(from, true, region.getMaxMs(), false).values()) {
+            if (region.intersects(entry.position, entry.position + entry.duration)) {
+                notes.add(entry.note);
+            }
+        }
+    }
+
+    private static class Entry<T> {
+        private final int position;
+        private final int duration;
+        private final int row;
+        private final T note;
+
+        private Entry(int position, int duration, int row, T note) {
+            this.position = position;
+            this.duration = duration;
+            this.row = row;
+            this.note = note;
+        }
+    }
+}
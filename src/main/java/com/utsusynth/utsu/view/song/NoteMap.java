@@ -2,7 +2,12 @@ package com.utsusynth.utsu.view.song;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.utils.RegionBounds;
@@ -19,14 +24,34 @@ import com.utsusynth.utsu.view.song.note.pitch.PitchbendFactory;
 import com.utsusynth.utsu.view.song.track.Track;
 import javafx.beans.property.BooleanProperty;
 
+/**
+ * Keeps track of every note in the song editor. Only notes near the visible part of the track are
+ * added to it, and their envelopes and pitchbends are only created once they are first needed, so
+ * that long songs don't need thousands of track items at once.
+ */
 public class NoteMap {
+    // Extra region drawn on each side of the visible track, so that scrolling a little doesn't
+    // add or remove anything. Also covers envelopes and pitchbends that start before their note.
+    private static final int MIN_MARGIN_MS = 2000;
+
     private final EnvelopeFactory envelopeFactory;
     private final PitchbendFactory pitchbendFactory;
 
     // Maps absolute position (in ms) to track note's data.
     private Map<Integer, Note> noteMap;
+    // Valid notes by position and row, so that regions of the track can be searched quickly.
+    private NoteIndex<Note> noteIndex;
+    private Map<Integer, Supplier<Envelope>> envelopeSources;
+    private Map<Integer, Supplier<Pitchbend>> pitchbendSources;
+    // Envelopes and pitchbends that have been created, mapped by absolute position.
     private Map<Integer, Envelope> envelopeMap;
     private Map<Integer, Pitchbend> pitchbendMap;
+    // Every note element in the editor, including invalid notes, and the ones on the track.
+    private Set<Note> noteElements;
+    // Note elements that aren't in the note index, such as invalid notes.
+    private Set<Note> unindexedNoteElements;
+    private Set<Note> drawnNoteElements;
+    private RegionBounds drawnRegion;
 
     private Track track;
 
@@ -40,14 +65,49 @@ public class NoteMap {
 
     void clear() {
         noteMap = new HashMap<>();
+        noteIndex = new NoteIndex<>();
+        envelopeSources = new HashMap<>();
+        pitchbendSources = new HashMap<>();
         envelopeMap = new HashMap<>();
         pitchbendMap = new HashMap<>();
+        noteElements = new HashSet<>();
+        unindexedNoteElements = new HashSet<>();
+        drawnNoteElements = new HashSet<>();
+        drawnRegion = RegionBounds.INVALID;
     }
 
     void setTrack(Track track) {
         this.track = track;
     }
 
+    /**
+     * Adds notes that have scrolled into view to the track and removes ones that are now far
+     * away from it.
+     */
+    void setVisibleRegion(RegionBounds visibleRegion) {
+        if (visibleRegion.equals(RegionBounds.INVALID)) {
+            return;
+        }
+        if (!drawnRegion.equals(RegionBounds.INVALID)
+                && drawnRegion.getMinMs() <= visibleRegion.getMinMs()
+                && drawnRegion.getMaxMs() >= visibleRegion.getMaxMs()) {
+            return; // Everything visible is already drawn.
+        }
+        long minMs = visibleRegion.getMinMs();
+        long maxMs = visibleRegion.getMaxMs();
+        long margin = Math.max(MIN_MARGIN_MS, maxMs - minMs);
+        drawnRegion = new RegionBounds(
+                (int) Math.max(Integer.MIN_VALUE + 1, minMs - margin),
+                (int) Math.min(Integer.MAX_VALUE, maxMs + margin));
+        // Only notes that are drawn now or will be drawn need to be updated.
+        Set<Note> notesToUpdate = new HashSet<>(drawnNoteElements);
+        notesToUpdate.addAll(noteIndex.getNotes(drawnRegion));
+        notesToUpdate.addAll(unindexedNoteElements);
+        for (Note note : notesToUpdate) {
+            updateNoteElement(note);
+        }
+    }
+
     boolean hasNote(int position) {
         return noteMap.containsKey(position);
     }
@@ -57,86 +117,106 @@ public class NoteMap {
     }
 
     int getFirstPosition(RegionBounds region) {
-        int minPosition = Integer.MAX_VALUE;
-        for (int position : noteMap.keySet()) {
-            if (noteMap.get(position).getValidBounds().intersects(region)
-                    && position < minPosition) {
-                minPosition = position;
-            }
-        }
-        return minPosition;
+        List<Note> notes = getNotesInRegion(region);
+        return notes.isEmpty() ? Integer.MAX_VALUE : notes.get(0).getAbsPositionMs();
     }
 
     int getLastPosition(RegionBounds region) {
-        int maxPosition = Integer.MIN_VALUE;
-        for (int position : noteMap.keySet()) {
-            if (noteMap.get(position).getValidBounds().intersects(region)
-                    && position > maxPosition) {
-                maxPosition = position;
-            }
-        }
-        return maxPosition;
+        List<Note> notes = getNotesInRegion(region);
+        return notes.isEmpty()
+                ? Integer.MIN_VALUE : notes.get(notes.size() - 1).getAbsPositionMs();
     }
 
     Collection<Note> getAllValidNotes() {
         return noteMap.values();
     }
 
+    /** Returns valid notes that intersect a region, sorted by position. */
+    List<Note> getNotesInRegion(RegionBounds region) {
+        return noteIndex.getNotes(region).stream()
+                .filter(note -> note.getValidBounds().intersects(region))
+                .collect(Collectors.toList());
+    }
+
+    /** Returns valid notes that intersect a region and are between two rows, inclusive. */
+    List<Note> getNotesInRegion(RegionBounds region, int firstRow, int lastRow) {
+        return noteIndex.getNotes(region, firstRow, lastRow).stream()
+                .filter(note -> note.getValidBounds().intersects(region))
+                .collect(Collectors.toList());
+    }
+
     void putNote(int position, Note note) throws NoteAlreadyExistsException {
         if (noteMap.containsKey(position)) {
             throw new NoteAlreadyExistsException();
         }
         addNoteElement(note);
         noteMap.put(position, note);
+        noteIndex.put(position, note.getDurationMs(), note.getRow(), note);
+        unindexedNoteElements.remove(note);
     }
 
     void addNoteElement(Note note) {
-        track.insertItem(track.getNoteTrack(), note);
-        track.insertItem(track.getNoteTrack(), note.getLyricTrackItem());
+        noteElements.add(note);
+        if (noteMap.get(note.getAbsPositionMs()) != note) {
+            unindexedNoteElements.add(note);
+        }
+        updateNoteElement(note);
     }
 
     void removeNoteElement(Note note) {
-        track.removeItem(track.getNoteTrack(), note);
-        track.removeItem(track.getNoteTrack(), note.getLyricTrackItem());
+        noteElements.remove(note);
+        unindexedNoteElements.remove(note);
+        if (drawnNoteElements.remove(note)) {
+            undrawNoteElement(note);
+        }
     }
 
     void removeFullNote(int position) {
         if (noteMap.containsKey(position)) {
-            noteMap.remove(position);
+            Note note = noteMap.remove(position);
+            noteIndex.remove(position);
+            if (noteElements.contains(note)) {
+                unindexedNoteElements.add(note);
+            }
         } else {
             // TODO: Handle this better.
             System.out.println("Could not find note in map of track notes :(");
         }
+        envelopeSources.remove(position);
         if (envelopeMap.containsKey(position)) {
-            track.removeItem(track.getDynamicsTrack(), envelopeMap.get(position));
-            envelopeMap.remove(position);
+            track.removeItem(track.getDynamicsTrack(), envelopeMap.remove(position));
         }
+        pitchbendSources.remove(position);
         if (pitchbendMap.containsKey(position)) {
-            track.removeItem(track.getNoteTrack(), pitchbendMap.get(position));
-            pitchbendMap.remove(position);
+            track.removeItem(track.getNoteTrack(), pitchbendMap.remove(position));
         }
     }
 
     void putEnvelope(int position, EnvelopeData envelopeData, EnvelopeCallback callback) {
         // Track note must exist before envelope is added.
         if (noteMap.containsKey(position)) {
-            Envelope envelope =
-                    envelopeFactory.createEnvelope(noteMap.get(position), envelopeData, callback);
+            Note note = noteMap.get(position);
+            envelopeSources.put(
+                    position, () -> envelopeFactory.createEnvelope(note, envelopeData, callback));
             // Overrides are expected here.
             if (envelopeMap.containsKey(position)) {
-                track.removeItem(track.getDynamicsTrack(), envelopeMap.get(position));
-                envelopeMap.remove(position);
+                track.removeItem(track.getDynamicsTrack(), envelopeMap.remove(position));
+            }
+            if (drawnNoteElements.contains(note)) {
+                track.insertItem(track.getDynamicsTrack(), getEnvelope(position));
             }
-            envelopeMap.put(position, envelope);
-            track.insertItem(track.getDynamicsTrack(), envelope);
         }
     }
 
     boolean hasEnvelope(int position) {
-        return envelopeMap.containsKey(position);
+        return envelopeSources.containsKey(position);
     }
 
+    /** Creates the envelope at a position if it hasn't been created yet. */
     Envelope getEnvelope(int position) {
+        if (!envelopeMap.containsKey(position) && envelopeSources.containsKey(position)) {
+            envelopeMap.put(position, envelopeSources.get(position).get());
+        }
         return envelopeMap.get(position);
     }
 
@@ -148,28 +228,63 @@ public class NoteMap {
             BooleanProperty vibratoEditor,
             BooleanProperty showPitchbend) {
         if (noteMap.containsKey(position)) {
-            Pitchbend pitchbend = pitchbendFactory.createPitchbend(
-                    noteMap.get(position),
-                    prevPitch,
-                    pitchData,
-                    callback,
-                    vibratoEditor,
-                    showPitchbend);
+            Note note = noteMap.get(position);
+            pitchbendSources.put(position, () -> pitchbendFactory.createPitchbend(
+                    note, prevPitch, pitchData, callback, vibratoEditor, showPitchbend));
             // Overrides are expected here.
             if (pitchbendMap.containsKey(position)) {
-                track.removeItem(track.getNoteTrack(), pitchbendMap.get(position));
-                pitchbendMap.remove(position);
+                track.removeItem(track.getNoteTrack(), pitchbendMap.remove(position));
+            }
+            if (drawnNoteElements.contains(note)) {
+                track.insertItem(track.getNoteTrack(), getPitchbend(position));
             }
-            pitchbendMap.put(position, pitchbend);
-            track.insertItem(track.getNoteTrack(), pitchbend);
         }
     }
 
     boolean hasPitchbend(int position) {
-        return pitchbendMap.containsKey(position);
+        return pitchbendSources.containsKey(position);
     }
 
+    /** Creates the pitchbend at a position if it hasn't been created yet. */
     Pitchbend getPitchbend(int position) {
+        if (!pitchbendMap.containsKey(position) && pitchbendSources.containsKey(position)) {
+            pitchbendMap.put(position, pitchbendSources.get(position).get());
+        }
         return pitchbendMap.get(position);
     }
+
+    // Adds a note to the track if it's close to the visible region, or removes it if not.
+    private void updateNoteElement(Note note) {
+        if (note.getBounds().intersects(drawnRegion)) {
+            drawnNoteElements.add(note);
+            track.insertItem(track.getNoteTrack(), note);
+            track.insertItem(track.getNoteTrack(), note.getLyricTrackItem());
+            int position = note.getAbsPositionMs();
+            if (noteMap.get(position) == note) {
+                if (envelopeSources.containsKey(position)) {
+                    track.insertItem(track.getDynamicsTrack(), getEnvelope(position));
+                }
+                if (pitchbendSources.containsKey(position)) {
+                    track.insertItem(track.getNoteTrack(), getPitchbend(position));
+                }
+            }
+        } else if (drawnNoteElements.remove(note)) {
+            undrawNoteElement(note);
+        }
+    }
+
+    private void undrawNoteElement(Note note) {
+        track.removeItem(track.getNoteTrack(), note);
+        track.removeItem(track.getNoteTrack(), note.getLyricTrackItem());
+        int position = note.getAbsPositionMs();
+        if (noteMap.get(position) == note) {
+            // Envelope and pitchbend are kept, since they may have been edited since creation.
+            if (envelopeMap.containsKey(position)) {
+                track.removeItem(track.getDynamicsTrack(), envelopeMap.get(position));
+            }
+            if (pitchbendMap.containsKey(position)) {
+                track.removeItem(track.getNoteTrack(), pitchbendMap.get(position));
+            }
+        }
+    }
 }
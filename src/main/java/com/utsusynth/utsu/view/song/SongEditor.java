@@ -21,6 +21,7 @@ import com.utsusynth.utsu.view.song.note.NoteCallback;
 import com.utsusynth.utsu.view.song.note.NoteFactory;
 import com.utsusynth.utsu.view.song.note.envelope.EnvelopeCallback;
 import com.utsusynth.utsu.view.song.note.pitch.PitchbendCallback;
+import com.utsusynth.utsu.view.song.playback.PlayBar;
 import com.utsusynth.utsu.view.song.playback.PlaybackCallback;
 import com.utsusynth.utsu.view.song.playback.PlaybackManager;
 import com.utsusynth.utsu.view.song.playback.SelectionBox;
@@ -29,13 +30,16 @@ import com.utsusynth.utsu.view.song.track.TrackCallback;
 import com.utsusynth.utsu.view.song.track.TrackItem;
 import com.utsusynth.utsu.view.song.track.TrackItemSet;
 import javafx.beans.property.*;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.Pane;
 import javafx.util.Duration;
 
 import java.util.*;
+import java.util.function.DoubleSupplier;
 import java.util.stream.Collectors;
 
 public class SongEditor {
@@ -118,13 +122,13 @@ public class SongEditor {
         model = callback;
         track.initialize(new TrackCallback() {
             @Override
-            public Pane createNoteColumn(int colNum) {
-                return createNoteColumnInternal(colNum);
+            public void onBackgroundMouseEvent(MouseEvent event, double absoluteX) {
+                handleBackgroundMouseEvent(event, absoluteX);
             }
 
             @Override
-            public Pane createDynamicsColumn(int colNum) {
-                return createDynamicsColumnInternal(colNum);
+            public void setVisibleRegion(RegionBounds visibleRegion) {
+                noteMap.setVisibleRegion(visibleRegion);
             }
         }, new DragHandler() {
             @Override
@@ -155,8 +159,13 @@ public class SongEditor {
             }
 
             @Override
-            public void readjust(TrackItem bar) {
-                track.insertItem(track.getNoteTrack(), bar);
+            public void setPlayBar(PlayBar playBar) {
+                track.setPlaybackItem(playBar.redraw());
+            }
+
+            @Override
+            public void removePlayBar() {
+                track.removePlaybackItem();
             }
         });
     }
@@ -174,7 +183,8 @@ public class SongEditor {
         NoteData lastNote = notes.get(notes.size() - 1);
         track.setNumMeasures((lastNote.getPosition() / Quantizer.COL_WIDTH / 4) + 4);
 
-        // Add all notes.
+        // Add all notes. Only the ones near the visible region are drawn.
+        track.updateVisibleRegion();
         addNotes(notes);
         return track.getNoteTrack();
     }
@@ -219,10 +229,17 @@ public class SongEditor {
         return track.getDynamicsTrack();
     }
 
+    public Pane getPlaybackElement() {
+        return track.getPlaybackLayer();
+    }
+
     /**
-     * Start the playback bar animation. It will end on its own.
+     * Start the playback bar animation. It will end on its own once the audio ends.
+     *
+     * @param audioPositionMs How much of the audio has been played, in ms, or -1 once it ends.
      */
-    public void startPlayback(RegionBounds rendered, Duration duration) {
+    public void startPlayback(
+            RegionBounds rendered, Duration duration, DoubleSupplier audioPositionMs) {
         int firstPosition = noteMap.getFirstPosition(rendered);
         int lastPosition = noteMap.getLastPosition(rendered);
         if (!noteMap.hasNote(firstPosition) || !noteMap.hasNote(lastPosition)) {
@@ -232,7 +249,7 @@ public class SongEditor {
         int renderStart = Math.min(firstNoteStart, rendered.getMinMs());
         int renderEnd = lastPosition + noteMap.getNote(lastPosition).getDurationMs();
         DoubleProperty playbackX = playbackManager.startPlayback(
-                duration, new RegionBounds(renderStart, renderEnd));
+                duration, new RegionBounds(renderStart, renderEnd), audioPositionMs);
         track.startPlaybackAutoscroll(playbackX);
     }
 
@@ -283,7 +300,7 @@ public class SongEditor {
     }
 
     public void selectRegion(RegionBounds region) {
-        playbackManager.highlightRegion(region, noteMap.getAllValidNotes());
+        playbackManager.highlightRegion(region, noteMap.getNotesInRegion(region));
     }
 
     public void selectAll() {
@@ -569,6 +586,11 @@ public class SongEditor {
         track.scrollToPosition(position);
     }
 
+    /** Redraws parts of the track that are not styled with CSS. */
+    public void onThemeChanged() {
+        track.refreshBackground();
+    }
+
     private void clearTrack() {
         // Remove current track.
         playbackManager.clear();
@@ -576,66 +598,29 @@ public class SongEditor {
         track.reset();
     }
 
-    private Pane createNoteColumnInternal(int colNum) {
-        double colWidth = scaler.scaleX(Quantizer.COL_WIDTH);
-        double rowHeight = scaler.scaleY(Quantizer.ROW_HEIGHT);
-
-        Pane column = new Pane();
-        int curRow = 0;
-        for (int octave = 7; octave > 0; octave--) {
-            for (String pitch : PitchUtils.REVERSE_PITCHES) {
-                // Add row to track.
-                Pane newCell = new Pane();
-                newCell.setPrefSize(colWidth, rowHeight);
-                newCell.setTranslateY(curRow * rowHeight);
-                newCell.getStyleClass().add("track-cell");
-                if (colNum >= 4) {
-                    newCell.getStyleClass()
-                            .add(pitch.endsWith("#") ? "black-key" : "white-key");
-                } else {
-                    newCell.getStyleClass().add("gray-key");
-                }
-                if (colNum % 4 == 0) {
-                    newCell.getStyleClass().add("measure-start");
-                } else if (colNum % 4 == 3) {
-                    newCell.getStyleClass().add("measure-end");
-                }
-                column.getChildren().add(newCell);
-                curRow++;
-            }
-        }
-        activateNoteColumn(column, colNum);
-        return column;
-    }
-
-    private void activateNoteColumn(Pane column, int colNum) {
-        column.setOnMousePressed(event -> {
-            double offsetX = colNum * scaler.scaleX(Quantizer.COL_WIDTH);
+    private void handleBackgroundMouseEvent(MouseEvent event, double absoluteX) {
+        if (event.getEventType() == MouseEvent.MOUSE_PRESSED) {
             // End any leftover drag action.
             if (dragHandler != null) {
-                dragHandler.onDragReleased(offsetX + event.getX(), event.getY());
+                dragHandler.onDragReleased(absoluteX, event.getY());
                 dragHandler = null;
             }
             editorContextMenu.hide();
-            curX = offsetX + event.getX();
+            curX = absoluteX;
             curY = event.getY();
-        });
-        column.setOnMouseReleased(event -> {
+        } else if (event.getEventType() == MouseEvent.MOUSE_RELEASED) {
             if (event.getButton() == MouseButton.SECONDARY) {
                 editorContextMenu.show(
                         track.getNoteTrack(), event.getScreenX(), event.getScreenY());
             }
             if (event.getButton() == MouseButton.SECONDARY || event.isShiftDown()) {
-                double offsetX = colNum * scaler.scaleX(Quantizer.COL_WIDTH);
-                double endX = offsetX + event.getX();
                 int quantSize = quantizer.getQuant();
                 int endMs = RoundUtils.round(
-                        scaler.unscalePos(endX) / quantSize) * quantSize;
+                        scaler.unscalePos(absoluteX) / quantSize) * quantSize;
                 playbackManager.setCursor(endMs);
             }
-        });
-        column.setOnDragDetected(event -> {
-            column.startFullDrag();
+        } else if (event.getEventType() == MouseEvent.DRAG_DETECTED) {
+            ((Node) event.getSource()).startFullDrag();
             if (event.isShiftDown() || !event.isPrimaryButtonDown()) {
                 // Select mode.
                 dragHandler = new DragHandler() {
@@ -662,13 +647,11 @@ public class SongEditor {
                                 ? new RegionBounds(startMs, endMs)
                                 : new RegionBounds(endMs, startMs);
                         playbackManager.clearHighlights();
-                        for (Note note : noteMap.getAllValidNotes()) {
-                            int noteRow = note.getRow();
-                            if (note.getValidBounds().intersects(horizontalBounds)
-                                    && Math.abs(endRow - noteRow) + Math.abs(noteRow - startRow)
-                                    == Math.abs(endRow - startRow)) {
-                                playbackManager.highlightNote(note);
-                            }
+                        for (Note note : noteMap.getNotesInRegion(
+                                horizontalBounds,
+                                Math.min(startRow, endRow),
+                                Math.max(startRow, endRow))) {
+                            playbackManager.highlightNote(note);
                         }
                     }
 
@@ -766,30 +749,7 @@ public class SongEditor {
                     }
                 };
             }
-        });
-    }
-
-    private Pane createDynamicsColumnInternal(int colNum) {
-        double colWidth = scaler.scaleX(Quantizer.COL_WIDTH);
-        double rowHeight = 50;
-
-        Pane newDynamics = new Pane();
-        Pane topCell = new AnchorPane();
-        topCell.setPrefSize(colWidth, rowHeight);
-        topCell.getStyleClass().add("dynamics-top-cell");
-        if (colNum % 4 == 0) {
-            topCell.getStyleClass().add("measure-start");
-        }
-
-        Pane bottomCell = new AnchorPane();
-        bottomCell.setPrefSize(colWidth, rowHeight);
-        bottomCell.setTranslateY(rowHeight);
-        bottomCell.getStyleClass().add("dynamics-bottom-cell");
-        if (colNum % 4 == 0) {
-            bottomCell.getStyleClass().add("measure-start");
         }
-        newDynamics.getChildren().addAll(topCell, bottomCell);
-        return newDynamics;
     }
 
     private final NoteCallback noteCallback = new NoteCallback() {
@@ -804,7 +764,7 @@ public class SongEditor {
         public void highlightInclusive(Note note) {
             RegionBounds merged =
                     note.getValidBounds().mergeWith(playbackManager.getSelectedRegion());
-            playbackManager.highlightRegion(merged, noteMap.getAllValidNotes());
+            playbackManager.highlightRegion(merged, noteMap.getNotesInRegion(merged));
         }
 
         @Override
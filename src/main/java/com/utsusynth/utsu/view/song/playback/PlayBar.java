@@ -1,32 +1,30 @@
 package com.utsusynth.utsu.view.song.playback;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.quantize.Quantizer;
 import com.utsusynth.utsu.common.quantize.Scaler;
 import com.utsusynth.utsu.common.utils.PitchUtils;
-import com.utsusynth.utsu.view.song.track.TrackItem;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.shape.Line;
 
-import java.util.HashSet;
-
-public class PlayBar implements TrackItem {
+/**
+ * Bar that follows the audio during playback. It moves every frame, so it is drawn on a layer
+ * over the track instead of being a track item.
+ */
+public class PlayBar {
     private static final int TOTAL_HEIGHT = PitchUtils.TOTAL_NUM_PITCHES * Quantizer.ROW_HEIGHT;
     private static final int STROKE_WIDTH = 2;
 
     private final Scaler scaler;
-    private final HashSet<Integer> drawnColumns;
 
     private DoubleProperty xValue;
 
     @Inject
     PlayBar(Scaler scaler) {
         this.scaler = scaler;
-        drawnColumns = new HashSet<>();
 
         xValue = new SimpleDoubleProperty(0);
     }
@@ -44,30 +42,10 @@ public class PlayBar implements TrackItem {
         return xValue;
     }
 
-    @Override
-    public TrackItemType getType() {
-        return TrackItemType.PLAYBACK;
-    }
-
-    @Override
-    public double getStartX() {
-        return xValue.get();
-    }
-
-    @Override
-    public double getWidth() {
-        return STROKE_WIDTH;
-    }
-
-    @Override
+    /** Draws the bar at its absolute x-value on the track. */
     public Node redraw() {
-        return redraw(0);
-    }
-
-    @Override
-    public Node redraw(double offsetX) {
         Line bar = new Line(0, 0, 0, scaler.scaleY(TOTAL_HEIGHT));
-        bar.translateXProperty().bind(xValue.subtract(offsetX));
+        bar.translateXProperty().bind(xValue);
         bar.getStyleClass().add("playback-bar");
         bar.setStrokeWidth(STROKE_WIDTH);
         bar.setMouseTransparent(true);
@@ -76,7 +54,7 @@ public class PlayBar implements TrackItem {
         Node playBarNode;
         if (System.getProperty("os.name").toLowerCase().contains("win")) {
             Line backingBar = new Line(0, 0, 0, scaler.scaleY(TOTAL_HEIGHT));
-            backingBar.translateXProperty().bind(xValue.subtract(offsetX));
+            backingBar.translateXProperty().bind(xValue);
             backingBar.getStyleClass().add("playback-backing-bar");
             playBarNode = new Group(bar, backingBar);
         } else {
@@ -84,24 +62,4 @@ public class PlayBar implements TrackItem {
         }
         return playBarNode;
     }
-
-    @Override
-    public ImmutableSet<Integer> getColumns() {
-        return ImmutableSet.copyOf(drawnColumns);
-    }
-
-    @Override
-    public void addColumn(int colNum) {
-        drawnColumns.add(colNum);
-    }
-
-    @Override
-    public void removeColumn(int colNum) {
-        drawnColumns.remove(colNum);
-    }
-
-    @Override
-    public void removeAllColumns() {
-        drawnColumns.clear();
-    }
 }
@@ -9,6 +9,9 @@ public interface PlaybackCallback {
     // Remove a bar from the track.
     void removeBar(TrackItem bar);
 
-    // Add a bar to new columns and remove old columns if necessary.
-    void readjust(TrackItem bar);
+    // Show the playback bar over the track, replacing any previous one.
+    void setPlayBar(PlayBar playBar);
+
+    // Remove the playback bar from over the track.
+    void removePlayBar();
 }
@@ -2,6 +2,7 @@ package com.utsusynth.utsu.view.song.playback;
 
 import java.util.Collection;
 import java.util.TreeSet;
+import java.util.function.DoubleSupplier;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
@@ -10,8 +11,7 @@ import com.utsusynth.utsu.common.quantize.Scaler;
 import com.utsusynth.utsu.common.utils.PitchUtils;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.view.song.note.Note;
-import javafx.animation.*;
-import javafx.animation.Animation.Status;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleBooleanProperty;
@@ -25,13 +25,20 @@ public class PlaybackManager {
     private final Scaler scaler;
     private final TreeSet<Note> highlighted; // All highlighted notes.
     private final BooleanProperty isAnythingHighlighted;
-    private final Timeline playback;
+    private final AnimationTimer playback;
 
     private final StartBar startBar;
     private final EndBar endBar;
     private final PlayBar playBar;
     private PlaybackCallback callback;
 
+    // Current playback.
+    private DoubleSupplier audioPositionMs;
+    private double durationMs;
+    private double startX;
+    private double finalX;
+    private boolean isPaused;
+
     private Group bars;
 
     @Inject
@@ -43,7 +50,12 @@ public class PlaybackManager {
         this.scaler = scaler;
         highlighted = new TreeSet<>();
         isAnythingHighlighted = new SimpleBooleanProperty(false);
-        playback = new Timeline();
+        playback = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                updatePlayBar();
+            }
+        };
         clear();
     }
 
@@ -56,29 +68,25 @@ public class PlaybackManager {
     }
 
     /**
-     * Sends the playback bar across the part of the song that plays.
+     * Sends the playback bar across the part of the song that plays, following the audio.
      *
+     * @param audioPositionMs How much of the audio has been played, in ms, or -1 once it ends.
      * @return A double binding of the playback bar's current x-value.
      */
-    public DoubleProperty startPlayback(Duration duration, RegionBounds playRegion) {
+    public DoubleProperty startPlayback(
+            Duration duration, RegionBounds playRegion, DoubleSupplier audioPositionMs) {
         if (callback != null && duration != Duration.UNKNOWN && duration != Duration.INDEFINITE) {
-            playBar.clearListeners();
-            playBar.setX(scaler.scalePos(playRegion.getMinMs()));
-            callback.setBar(playBar);
-
             playback.stop();
-            playback.getKeyFrames().clear();
-            double finalX = scaler.scalePos(playRegion.getMaxMs());
-            playback.getKeyFrames().add(
-                    new KeyFrame(duration, new KeyValue(playBar.xProperty(), finalX)));
-            playback.play();
-            playback.setOnFinished(event -> callback.removeBar(playBar));
-
-            playBar.xProperty().addListener((obs, oldValue, newValue) -> {
-                if (callback != null && playback.getStatus() == Status.RUNNING) {
-                    callback.readjust(playBar);
-                }
-            });
+            this.audioPositionMs = audioPositionMs;
+            durationMs = duration.toMillis();
+            startX = scaler.scalePos(playRegion.getMinMs());
+            finalX = scaler.scalePos(playRegion.getMaxMs());
+            isPaused = false;
+
+            playBar.clearListeners();
+            playBar.setX(startX);
+            callback.setPlayBar(playBar);
+            playback.start();
             return playBar.xProperty();
         }
         // Return null if no playback bar created.
@@ -86,18 +94,41 @@ public class PlaybackManager {
     }
 
     public void pausePlayback() {
-        playback.pause(); // Does nothing if animation not playing.
+        if (audioPositionMs != null && !isPaused) {
+            playback.stop();
+            isPaused = true;
+            updatePlayBar(); // Show exactly where the audio stopped.
+        }
     }
 
     public void resumePlayback() {
-        if (playback.getStatus() == Status.PAUSED) {
-            playback.play(); // Does nothing if animation not paused.
+        if (audioPositionMs != null && isPaused) {
+            isPaused = false;
+            playback.start();
         }
     }
 
-    // Removes the playback bar.
+    // Stops the playback bar where it is.
     public void stopPlayback() {
         playback.stop();
+        audioPositionMs = null;
+    }
+
+    // Moves the playback bar to wherever the audio is now.
+    private void updatePlayBar() {
+        if (audioPositionMs == null) {
+            return;
+        }
+        double positionMs = audioPositionMs.getAsDouble();
+        if (positionMs < 0 || positionMs >= durationMs) {
+            // Audio has finished.
+            stopPlayback();
+            if (callback != null) {
+                callback.removePlayBar();
+            }
+            return;
+        }
+        playBar.setX(startX + (finalX - startX) * positionMs / durationMs);
     }
 
     /**
@@ -182,7 +213,10 @@ public class PlaybackManager {
     }
 
     public void clear() {
-        playback.stop(); // Stop any ongoing playback.
+        stopPlayback(); // Stop any ongoing playback.
+        if (callback != null) {
+            callback.removePlayBar(); // Don't leave the old song's bar behind.
+        }
         bars = new Group();
         clearHighlights();
     }
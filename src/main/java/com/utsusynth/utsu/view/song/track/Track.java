@@ -13,21 +13,29 @@ import com.utsusynth.utsu.files.PreferencesManager.AutoscrollMode;
 import com.utsusynth.utsu.view.song.DragHandler;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.event.EventHandler;
 import javafx.geometry.Orientation;
+import javafx.scene.Group;
 import javafx.scene.Node;
 import javafx.scene.control.*;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseDragEvent;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Pane;
+import javafx.scene.shape.Rectangle;
 
 import java.util.*;
 
 /** The background track of the song editor. */
 public class Track {
     private final PreferencesManager preferencesManager;
+    private final TrackBackground background;
     private final Scaler scaler;
 
     private int numMeasures = 0;
@@ -35,12 +43,34 @@ public class Track {
     private ScrollBar noteHScrollBar;
     private ScrollBar noteVScrollBar;
     private ListView<TrackItemSet> dynamicsTrack;
+    private Pane playbackLayer;
+    private Group playbackItems; // Positioned in track coordinates.
+    private final DoubleProperty scrollX = new SimpleDoubleProperty(0);
     private TrackCallback callback;
     private DragHandler dragHandler;
 
+    // Shared by every column. Each column's node has its column number as user data.
+    private final EventHandler<MouseEvent> backgroundMouseHandler = event -> {
+        if (callback != null) {
+            callback.onBackgroundMouseEvent(event, getAbsoluteX(event));
+        }
+    };
+    private final EventHandler<MouseDragEvent> dragOverHandler = event -> {
+        if (dragHandler != null) {
+            dragHandler.onDragged(getAbsoluteX(event), event.getY());
+        }
+    };
+    private final EventHandler<MouseDragEvent> dragReleasedHandler = event -> {
+        if (dragHandler != null) {
+            dragHandler.onDragReleased(getAbsoluteX(event), event.getY());
+        }
+    };
+
     @Inject
-    public Track(PreferencesManager preferencesManager, Scaler scaler) {
+    public Track(
+            PreferencesManager preferencesManager, TrackBackground background, Scaler scaler) {
         this.preferencesManager = preferencesManager;
+        this.background = background;
         this.scaler = scaler;
     }
 
@@ -54,6 +84,7 @@ public class Track {
         this.numMeasures = 4;
         setNumMeasures(noteTrack, numMeasures, false);
         setNumMeasures(dynamicsTrack, numMeasures, false);
+        updateVisibleRegion();
     }
 
     public int getNumMeasures() {
@@ -67,6 +98,7 @@ public class Track {
         this.numMeasures = numMeasures;
         setNumMeasures(noteTrack, numMeasures, true);
         setNumMeasures(dynamicsTrack, numMeasures, true);
+        updateVisibleRegion();
     }
 
     private void setNumMeasures(
@@ -117,13 +149,21 @@ public class Track {
 
     private ListView<TrackItemSet> createNoteTrack() {
         noteTrack = new ListView<>();
+        noteHScrollBar = null;
         noteVScrollBar = null;
         noteTrack.setSelectionModel(new NoSelectionModel<>());
         noteTrack.setOrientation(Orientation.HORIZONTAL);
         noteTrack.setCellFactory(source -> new ListCell<>() {
+            private final ImageView columnBackground = new ImageView();
+
             {
                 setStyle("-fx-padding: 0px;");
+                columnBackground.addEventHandler(MouseEvent.MOUSE_PRESSED, backgroundMouseHandler);
+                columnBackground.addEventHandler(
+                        MouseEvent.MOUSE_RELEASED, backgroundMouseHandler);
+                columnBackground.addEventHandler(MouseEvent.DRAG_DETECTED, backgroundMouseHandler);
             }
+
             @Override
             protected void updateItem(TrackItemSet item, boolean empty) {
                 super.updateItem(item, empty);
@@ -135,11 +175,12 @@ public class Track {
                 double rowHeight = scaler.scaleY(Quantizer.ROW_HEIGHT);
                 Pane graphic = new Pane();
                 graphic.setPrefSize(colWidth, rowHeight * PitchUtils.TOTAL_NUM_PITCHES);
+                graphic.setUserData(getIndex());
 
                 // Background.
-                if (callback != null) {
-                    graphic.getChildren().add(callback.createNoteColumn(getIndex()));
-                }
+                columnBackground.setImage(background.getNoteColumn(getIndex()));
+                columnBackground.setUserData(getIndex());
+                graphic.getChildren().add(columnBackground);
                 // Foreground.
                 if (item != null) {
                     for (TrackItem trackItem : item.asList()) {
@@ -148,18 +189,8 @@ public class Track {
                     }
                 }
                 // Drag behavior.
-                graphic.setOnMouseDragOver(event -> {
-                    if (dragHandler != null) {
-                        dragHandler.onDragged(
-                                event.getX() + (getIndex() * colWidth), event.getY());
-                    }
-                });
-                graphic.setOnMouseDragReleased(event -> {
-                    if (dragHandler != null) {
-                        dragHandler.onDragReleased(
-                                event.getX() + (getIndex() * colWidth), event.getY());
-                    }
-                });
+                graphic.setOnMouseDragOver(dragOverHandler);
+                graphic.setOnMouseDragReleased(dragReleasedHandler);
                 setGraphic(graphic);
             }
         });
@@ -178,6 +209,16 @@ public class Track {
             }
             event.consume();
         });
+        // Keep callback up to date on which part of the track can be seen.
+        ChangeListener<Number> visibleRegionListener =
+                (obs, oldValue, newValue) -> updateVisibleRegion();
+        noteTrack.widthProperty().addListener(visibleRegionListener);
+        noteTrack.skinProperty().addListener(event -> {
+            noteHScrollBar = null;
+            getScrollBar(noteTrack, Orientation.HORIZONTAL).ifPresent(
+                    hScroll -> hScroll.valueProperty().addListener(visibleRegionListener));
+            updateVisibleRegion();
+        });
         setNumMeasures(noteTrack, numMeasures, false);
         return noteTrack;
     }
@@ -196,6 +237,8 @@ public class Track {
         dynamicsTrack.setSelectionModel(new NoSelectionModel<>());
         dynamicsTrack.setOrientation(Orientation.HORIZONTAL);
         dynamicsTrack.setCellFactory(source -> new ListCell<>() {
+            private final ImageView columnBackground = new ImageView();
+
             {
                 setPrefHeight(rowHeight * 2);
                 setStyle("-fx-padding: 0px;");
@@ -212,9 +255,8 @@ public class Track {
                 graphic.setPrefSize(colWidth, rowHeight * 2);
 
                 // Background.
-                if (callback != null) {
-                    graphic.getChildren().addAll(callback.createDynamicsColumn(getIndex()));
-                }
+                columnBackground.setImage(background.getDynamicsColumn(getIndex()));
+                graphic.getChildren().add(columnBackground);
                 // Foreground.
                 if (item != null) {
                     for (TrackItem trackItem : item.asList()) {
@@ -242,6 +284,46 @@ public class Track {
         return dynamicsTrack;
     }
 
+    private Pane createPlaybackLayer() {
+        ListView<TrackItemSet> noteTrack = getNoteTrack();
+        playbackItems = new Group();
+        playbackItems.translateXProperty().bind(scrollX.negate());
+        playbackLayer = new Pane(playbackItems);
+        playbackLayer.setMouseTransparent(true);
+        playbackLayer.prefWidthProperty().bind(
+                noteTrack.widthProperty().subtract(Quantizer.SCROLL_BAR_WIDTH));
+        playbackLayer.prefHeightProperty().bind(
+                noteTrack.heightProperty().subtract(Quantizer.SCROLL_BAR_WIDTH));
+        // Hide anything outside the visible part of the track.
+        Rectangle clip = new Rectangle();
+        clip.widthProperty().bind(playbackLayer.prefWidthProperty());
+        clip.heightProperty().bind(playbackLayer.prefHeightProperty());
+        playbackLayer.setClip(clip);
+        return playbackLayer;
+    }
+
+    /**
+     * Layer that goes over the note track, for items that move too often to be added to the
+     * track's columns. It scrolls horizontally along with the track.
+     */
+    public Pane getPlaybackLayer() {
+        if (playbackLayer == null) {
+            return createPlaybackLayer();
+        }
+        return playbackLayer;
+    }
+
+    public void setPlaybackItem(Node item) {
+        getPlaybackLayer();
+        playbackItems.getChildren().setAll(item);
+    }
+
+    public void removePlaybackItem() {
+        if (playbackItems != null) {
+            playbackItems.getChildren().clear();
+        }
+    }
+
     public void scrollToPosition(int positionMs) {
         Optional<ScrollBar> hScroll = getScrollBar(noteTrack, Orientation.HORIZONTAL);
         if (hScroll.isPresent()) {
@@ -318,7 +400,6 @@ public class Track {
         if (maybeHScroll.isEmpty()) {
             return noteTrack == null ? RegionBounds.INVALID : RegionBounds.WHOLE_SONG;
         }
-        ScrollBar hScroll = maybeHScroll.get();
         double totalWidth = scaler.scaleX(Quantizer.COL_WIDTH) * (numMeasures + 1) * 4;
         double visibleWidth = noteTrack.getWidth() - Quantizer.SCROLL_BAR_WIDTH;
         if (visibleWidth <= 0 || totalWidth <= 0) {
@@ -326,8 +407,7 @@ public class Track {
         } else if (visibleWidth >= totalWidth) {
             return RegionBounds.WHOLE_SONG;
         } else {
-            double hValue = hScroll.getValue() * (hScroll.getMax() - hScroll.getMin());
-            double leftX = hValue * (totalWidth - visibleWidth);
+            double leftX = getScrollX();
             double rightX = leftX + visibleWidth;
             int startPos = RoundUtils.round(scaler.unscalePos(leftX));
             int endPos = RoundUtils.round(scaler.unscalePos(rightX));
@@ -335,6 +415,41 @@ public class Track {
         }
     }
 
+    /** Redraws the background of both tracks, i.e. after the theme changes. */
+    public void refreshBackground() {
+        if (noteTrack != null) {
+            noteTrack.refresh();
+        }
+        if (dynamicsTrack != null) {
+            dynamicsTrack.refresh();
+        }
+    }
+
+    // X-value of the left edge of the visible part of the track.
+    private double getScrollX() {
+        Optional<ScrollBar> maybeHScroll = getScrollBar(noteTrack, Orientation.HORIZONTAL);
+        if (maybeHScroll.isEmpty()) {
+            return 0;
+        }
+        ScrollBar hScroll = maybeHScroll.get();
+        double totalWidth = scaler.scaleX(Quantizer.COL_WIDTH) * (numMeasures + 1) * 4;
+        double visibleWidth = noteTrack.getWidth() - Quantizer.SCROLL_BAR_WIDTH;
+        if (visibleWidth <= 0 || visibleWidth >= totalWidth) {
+            return 0;
+        }
+        double hValue = hScroll.getValue() * (hScroll.getMax() - hScroll.getMin());
+        return hValue * (totalWidth - visibleWidth);
+    }
+
+    /** Sends the visible region to the callback, once the track has been laid out. */
+    public void updateVisibleRegion() {
+        scrollX.set(getScrollX());
+        if (callback == null || getScrollBar(noteTrack, Orientation.HORIZONTAL).isEmpty()) {
+            return; // Nothing can be seen yet.
+        }
+        callback.setVisibleRegion(visibleRegion());
+    }
+
     public void insertItem(ListView<TrackItemSet> track, TrackItem trackItem) {
         double startX = trackItem.getStartX();
         double endX = trackItem.getStartX() + trackItem.getWidth();
@@ -375,6 +490,13 @@ public class Track {
         trackItem.removeAllColumns();
     }
 
+    // Converts an event's x-position within one column to an x-position in the whole track.
+    private double getAbsoluteX(MouseEvent event) {
+        Node source = (Node) event.getSource();
+        int colNum = (Integer) source.getUserData();
+        return colNum * scaler.scaleX(Quantizer.COL_WIDTH) + event.getX();
+    }
+
     /**
      * No-op selection model to remove unwanted selection behavior.
      */
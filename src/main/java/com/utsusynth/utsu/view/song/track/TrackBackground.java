@@ -0,0 +1,122 @@
+package com.utsusynth.utsu.view.song.track;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.utsusynth.utsu.common.quantize.Quantizer;
+import com.utsusynth.utsu.common.quantize.Scaler;
+import com.utsusynth.utsu.common.utils.PitchUtils;
+import com.utsusynth.utsu.files.ThemeManager;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Map;
+
+/**
+ * Draws the grid behind the note and dynamics tracks. There are only a few kinds of columns, so
+ * each kind is drawn into an image once and shared by every column of that kind.
+ */
+class TrackBackground {
+    private static final int DYNAMICS_ROW_HEIGHT = 50;
+
+    // Keyed by colors, column size, and kind of column.
+    private final Cache<String, Image> images = CacheBuilder.newBuilder().maximumSize(64).build();
+    private final ThemeManager themeManager;
+    private final Scaler scaler;
+
+    @Inject
+    TrackBackground(ThemeManager themeManager, Scaler scaler) {
+        this.themeManager = themeManager;
+        this.scaler = scaler;
+    }
+
+    /** Background of one column of the note track, including every pitch row. */
+    Image getNoteColumn(int colNum) {
+        Map<String, Color> colorMap = themeManager.getCurrentTheme().get().getColorMap();
+        Color light = colorMap.getOrDefault("TRACK_CELL_LIGHT", Color.WHITE);
+        Color dark = colorMap.getOrDefault("TRACK_CELL_DARK", Color.WHITESMOKE);
+        Color preroll = colorMap.getOrDefault("TRACK_CELL_PREROLL", Color.DARKGRAY);
+        Color thick = colorMap.getOrDefault("TRACK_BORDER_THICK", Color.LIGHTSKYBLUE);
+        Color thin = colorMap.getOrDefault("TRACK_BORDER_THIN", Color.LIGHTGRAY);
+        int width = (int) Math.round(scaler.scaleX(Quantizer.COL_WIDTH));
+        double rowHeight = scaler.scaleY(Quantizer.ROW_HEIGHT);
+        boolean isPreroll = colNum < 4;
+        int measurePosition = colNum % 4;
+
+        String key = String.join(
+                ":", "note", light.toString(), dark.toString(), preroll.toString(),
+                thick.toString(), thin.toString(), Integer.toString(width),
+                Double.toString(rowHeight), Boolean.toString(isPreroll),
+                Integer.toString(measurePosition));
+        Image cached = images.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        int height = (int) Math.round(rowHeight * PitchUtils.TOTAL_NUM_PITCHES);
+        WritableImage image = new WritableImage(Math.max(1, width), Math.max(1, height));
+        PixelWriter writer = image.getPixelWriter();
+        for (int row = 0; row < PitchUtils.TOTAL_NUM_PITCHES; row++) {
+            int top = (int) Math.round(row * rowHeight);
+            int bottom = (int) Math.round((row + 1) * rowHeight);
+            Color cellColor;
+            if (isPreroll) {
+                cellColor = preroll;
+            } else {
+                String pitch = PitchUtils.REVERSE_PITCHES.get(row % 12);
+                cellColor = pitch.endsWith("#") ? dark : light;
+            }
+            // Same layers as the track-cell style classes used to have.
+            if (measurePosition == 0) {
+                fill(writer, 0, top, width, bottom, thick);
+                fill(writer, 1, top, width, bottom, thin);
+                fill(writer, 1, top, width - 1, bottom - 1, cellColor);
+            } else if (measurePosition == 3) {
+                fill(writer, 0, top, width, bottom, thick);
+                fill(writer, 0, top, width - 1, bottom, thin);
+                fill(writer, 0, top, width - 1, bottom - 1, cellColor);
+            } else {
+                fill(writer, 0, top, width, bottom, thin);
+                fill(writer, 0, top, width - 1, bottom - 1, cellColor);
+            }
+        }
+        images.put(key, image);
+        return image;
+    }
+
+    /** Background of one column of the dynamics track. */
+    Image getDynamicsColumn(int colNum) {
+        Map<String, Color> colorMap = themeManager.getCurrentTheme().get().getColorMap();
+        Color cellColor = colorMap.getOrDefault("DYNAMICS_CELL", Color.BLACK);
+        Color border = colorMap.getOrDefault("DYNAMICS_BORDER", Color.DARKGRAY);
+        int width = (int) Math.round(scaler.scaleX(Quantizer.COL_WIDTH));
+        boolean isMeasureStart = colNum % 4 == 0;
+
+        String key = String.join(
+                ":", "dynamics", cellColor.toString(), border.toString(),
+                Integer.toString(width), Boolean.toString(isMeasureStart));
+        Image cached = images.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        int height = DYNAMICS_ROW_HEIGHT * 2;
+        WritableImage image = new WritableImage(Math.max(1, width), height);
+        PixelWriter writer = image.getPixelWriter();
+        int left = isMeasureStart ? 1 : 0;
+        fill(writer, 0, 0, width, height, border);
+        fill(writer, left, 0, width - 1, DYNAMICS_ROW_HEIGHT - 1, cellColor);
+        fill(writer, left, DYNAMICS_ROW_HEIGHT, width - 1, height, cellColor);
+        images.put(key, image);
+        return image;
+    }
+
+    private static void fill(
+            PixelWriter writer, int minX, int minY, int maxX, int maxY, Color color) {
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                writer.setColor(x, y, color);
+            }
+        }
+    }
+}
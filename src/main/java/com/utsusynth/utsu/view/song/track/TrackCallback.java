@@ -1,9 +1,16 @@
 package com.utsusynth.utsu.view.song.track;
 
-import javafx.scene.layout.Pane;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import javafx.scene.input.MouseEvent;
 
 public interface TrackCallback {
-    Pane createNoteColumn(int colNum);
+    /**
+     * Called when the background of the note track is pressed, released, or dragged.
+     *
+     * @param absoluteX Position of the event within the whole track.
+     */
+    void onBackgroundMouseEvent(MouseEvent event, double absoluteX);
 
-    Pane createDynamicsColumn(int colNum);
+    /** Called when the track is scrolled or resized. */
+    void setVisibleRegion(RegionBounds visibleRegion);
 }
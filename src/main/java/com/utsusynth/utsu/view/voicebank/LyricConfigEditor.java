@@ -1,10 +1,15 @@
 package com.utsusynth.utsu.view.voicebank;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.google.common.base.CharMatcher;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.StatusBar;
@@ -12,39 +17,44 @@ import com.utsusynth.utsu.common.data.FrequencyData;
 import com.utsusynth.utsu.common.data.LyricConfigData;
 import com.utsusynth.utsu.common.data.WavData;
 import com.utsusynth.utsu.common.i18n.Localizer;
+import com.utsusynth.utsu.files.ThemeManager;
 import com.utsusynth.utsu.files.voicebank.SoundFileReader;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.geometry.Pos;
-import javafx.geometry.Side;
+import javafx.geometry.VPos;
 import javafx.scene.Cursor;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart.Data;
-import javafx.scene.chart.XYChart.Series;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import javafx.scene.media.Media;
 import javafx.scene.media.MediaPlayer;
+import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
 import javafx.util.Duration;
 
 public class LyricConfigEditor {
     private static final double SCALE_X = 0.8;
     private static final int HEIGHT = 150;
+    private static final int MAX_TILE_WIDTH = 4096; // Widest canvas to draw the waveform on.
+    private static final int LABEL_WIDTH = 30; // Distance a time label can reach past its tile.
+    // Waveform peaks of recently opened wav files, keyed by path and last modified time.
+    private static final Cache<String, WaveformPeaks> PEAK_CACHE =
+            CacheBuilder.newBuilder().maximumSize(200).build();
     private static MediaPlayer mediaPlayer; // Used for audio playback.
 
     private final Group controlBars;
     private final SoundFileReader soundFileReader;
     private final Spectrogram spectrogram;
+    private final ThemeManager themeManager;
     private final Localizer localizer;
     private final StatusBar statusBar;
 
@@ -57,9 +67,14 @@ public class LyricConfigEditor {
 
     // Recreated on each call to createConfigEditor.
     private LyricConfigData configData;
-    private WavData wavData;
+    private WavData wavData; // Loaded only when needed, may be null.
+    private double wavLengthMs;
+    private WaveformPeaks peaks; // May be null.
+    private double[] frqPoints; // Frequency curve as x, y pairs, at most one per pixel.
+    private final List<Canvas> waveformTiles;
+    private final List<Canvas> frequencyTiles;
     private GridPane background;
-    private LineChart<Number, Number> chart;
+    private Group waveformView;
     private ImageView spectrogramView;
     private Label playButton; // May be null.
 
@@ -69,16 +84,23 @@ public class LyricConfigEditor {
 
     @Inject
     public LyricConfigEditor(
-            SoundFileReader soundFileReader, Spectrogram spectrogram, Localizer localizer, StatusBar statusBar) {
+            SoundFileReader soundFileReader,
+            Spectrogram spectrogram,
+            ThemeManager themeManager,
+            Localizer localizer,
+            StatusBar statusBar) {
         this.soundFileReader = soundFileReader;
         this.spectrogram = spectrogram;
+        this.themeManager = themeManager;
         this.localizer = localizer;
         this.statusBar = statusBar;
 
         // Initialize with dummy data.
         background = new GridPane();
-        chart = new LineChart<>(new NumberAxis(), new NumberAxis());
-        chart.setOpacity(0);
+        waveformView = new Group();
+        waveformTiles = new ArrayList<>();
+        frequencyTiles = new ArrayList<>();
+        frqPoints = new double[0];
         controlBars = new Group();
         spectrogramView = new ImageView();
 
@@ -101,10 +123,11 @@ public class LyricConfigEditor {
         showSpectrogram = new SimpleBooleanProperty(false);
         showSpectrogram.addListener(obs -> {
             if (!showSpectrogram.get() || spectrogramView == null
-                    || spectrogramView.getImage() != null || wavData == null) {
+                    || spectrogramView.getImage() != null) {
                 return;
             }
-            spectrogramView.setImage(spectrogram.createSpectrogram(wavData, HEIGHT));
+            loadWavData().ifPresent(data -> spectrogramView.setImage(
+                    spectrogram.createSpectrogram(data, HEIGHT)));
         });
 
     }
@@ -116,10 +139,12 @@ public class LyricConfigEditor {
 
     public List<Node> createConfigEditor(LyricConfigData config) {
         this.configData = config;
-        double lengthMs = createLineChart(config);
+        double lengthMs = createWaveform(config);
 
-        boolean drawSpec = showSpectrogram.get() && wavData != null;
-        spectrogramView = drawSpec ? new ImageView(spectrogram.createSpectrogram(wavData, HEIGHT))
+        Optional<WavData> specData =
+                showSpectrogram.get() ? loadWavData() : Optional.empty();
+        spectrogramView = specData.isPresent()
+                ? new ImageView(spectrogram.createSpectrogram(specData.get(), HEIGHT))
                 : new ImageView();
         spectrogramView.setFitWidth(lengthMs * SCALE_X);
         spectrogramView.setMouseTransparent(true);
@@ -265,7 +290,7 @@ public class LyricConfigEditor {
             config.overlapProperty().set(newOverlapX / SCALE_X);
         });
 
-        return ImmutableList.of(background, spectrogramView, controlBars, chart);
+        return ImmutableList.of(background, spectrogramView, controlBars, waveformView);
     }
 
     public Group getControlElement() {
@@ -282,8 +307,9 @@ public class LyricConfigEditor {
     }
 
     public void redrawSpectrogram() {
-        if (spectrogramView != null && wavData != null) {
-            spectrogramView.setImage(spectrogram.createSpectrogram(wavData, HEIGHT));
+        if (spectrogramView != null && spectrogramView.getImage() != null) {
+            loadWavData().ifPresent(data -> spectrogramView.setImage(
+                    spectrogram.createSpectrogram(data, HEIGHT)));
         }
     }
 
@@ -377,86 +403,69 @@ public class LyricConfigEditor {
         return bar;
     }
 
-    private double createLineChart(LyricConfigData config) {
-        // Initialize chart data sets.
-        ObservableList<Data<Number, Number>> wavSamples = FXCollections.observableArrayList();
-        Series<Number, Number> waveform = new Series<>(wavSamples);
-        ObservableList<Data<Number, Number>> frqSamples = FXCollections.observableArrayList();
-        Series<Number, Number> frequency = new Series<>(frqSamples);
-
-        // Populate wav chart data.
+    private double createWaveform(LyricConfigData config) {
+        wavData = null;
+        waveformTiles.clear();
+        frequencyTiles.clear();
+        frqPoints = new double[0];
         File pathToWav = config.getPathToFile();
-        Optional<WavData> maybeWavData = soundFileReader.loadWavData(pathToWav, message -> {
-            statusBar.setText(message); // Read frq data and report output on status bar.
-            return null;
-        });
-        if (maybeWavData.isEmpty()) {
-            chart = new LineChart<>(new NumberAxis(), new NumberAxis());
-            chart.setMouseTransparent(true);
-            chart.setOpacity(0); // Make chart invisible if wav file can't be read.
-            return 0.0;
-        }
-        wavData = maybeWavData.get();
-        double msPerSample = wavData.getLengthMs() / wavData.getSamples().length;
-        double currentTimeMs = msPerSample / 2; // Data point is halfway through sample.
-        double ampSum = 0;
-        for (int i = 0; i < wavData.getSamples().length; i++) {
-            ampSum += Math.abs(wavData.getSamples()[i]);
-            if (i % 100 == 0) {
-                // Only render every 100th sample to avoid overloading the frontend.
-                double ampValue = i % 200 == 0 ? ampSum / 100.0 : ampSum / -100.0;
-                wavSamples.add(new Data<>(currentTimeMs, ampValue));
-                ampSum = 0;
+        String cacheKey = pathToWav.getAbsolutePath() + ":" + pathToWav.lastModified();
+        peaks = PEAK_CACHE.getIfPresent(cacheKey);
+        if (peaks == null) {
+            Optional<WavData> maybeWavData = loadWavData();
+            if (maybeWavData.isEmpty()) {
+                // Leave waveform empty if wav file can't be read.
+                waveformView = new Group();
+                return 0.0;
             }
-            currentTimeMs += msPerSample;
+            peaks = new WaveformPeaks(
+                    maybeWavData.get().getSamples(), maybeWavData.get().getLengthMs());
+            PEAK_CACHE.put(cacheKey, peaks);
+        }
+        wavLengthMs = peaks.getLengthMs();
+
+        // Canvases are split into tiles so that long wav files don't exceed max texture size.
+        int totalWidth = (int) Math.ceil(wavLengthMs * SCALE_X);
+        Group waveformLayer = new Group();
+        Group frequencyLayer = new Group();
+        for (int tileX = 0; tileX < totalWidth; tileX += MAX_TILE_WIDTH) {
+            int tileWidth = Math.min(MAX_TILE_WIDTH, totalWidth - tileX);
+            Canvas waveformTile = new Canvas(tileWidth, HEIGHT);
+            waveformTile.setLayoutX(tileX);
+            waveformTiles.add(waveformTile);
+            Canvas frequencyTile = new Canvas(tileWidth, HEIGHT);
+            frequencyTile.setLayoutX(tileX);
+            frequencyTiles.add(frequencyTile);
         }
-        // Preferred width is 800 pixels per second.
-        NumberAxis xAxis = new NumberAxis();
-        xAxis.setAutoRanging(false);
-        xAxis.setLowerBound(0);
-        xAxis.setUpperBound(wavData.getLengthMs());
-        xAxis.setTickUnit(100);
-        xAxis.setSide(Side.TOP);
-        xAxis.setTickLabelsVisible(true);
-        xAxis.setTickMarkVisible(false);
-        xAxis.setMinorTickVisible(false);
-        xAxis.setTickLabelGap(-15);
-        NumberAxis yAxis = new NumberAxis();
-        yAxis.setAutoRanging(false);
-        yAxis.setLowerBound(-1);
-        yAxis.setUpperBound(1);
-        yAxis.setTickUnit(0.2);
-        yAxis.setSide(Side.RIGHT);
-        yAxis.setOpacity(0);
-        yAxis.setTickLabelsVisible(false);
-        yAxis.setTickMarkVisible(false);
-        yAxis.setMinorTickVisible(false);
-        chart = new LineChart<>(xAxis, yAxis);
-        chart.setMouseTransparent(true);
-        chart.setHorizontalGridLinesVisible(false);
-        chart.setVerticalGridLinesVisible(false);
-        chart.setVerticalZeroLineVisible(false);
-        chart.setCreateSymbols(false);
-        chart.setPrefHeight(HEIGHT);
-        chart.setPrefWidth(wavData.getLengthMs() * SCALE_X);
-        chart.getData().setAll(ImmutableList.of(waveform, frequency));
-        waveform.getNode().visibleProperty().bind(showWaveform);
-        chart.horizontalZeroLineVisibleProperty().bind(showWaveform);
-        frequency.getNode().visibleProperty().bind(showFrequency);
-
-        // Populate frequency chart data.
-        populateFrqValues(frqSamples, pathToWav);
-
-        return wavData.getLengthMs();
+        waveformLayer.getChildren().setAll(waveformTiles);
+        frequencyLayer.getChildren().setAll(frequencyTiles);
+        waveformLayer.visibleProperty().bind(showWaveform);
+        frequencyLayer.visibleProperty().bind(showFrequency);
+        waveformView = new Group(waveformLayer, frequencyLayer);
+        waveformView.setMouseTransparent(true);
+
+        populateFrqValues(pathToWav, totalWidth);
+        redrawWaveform();
+        return wavLengthMs;
     }
 
-    private void populateFrqValues(ObservableList<Data<Number, Number>> frqSamples, File wavFile) {
-        if (wavData == null) {
-            return; // Don't bother populating frq values if wav data not present.
+    /** Loads the wav file of the current config, if it isn't already loaded. */
+    private Optional<WavData> loadWavData() {
+        if (wavData == null && configData != null) {
+            Optional<WavData> maybeWavData =
+                    soundFileReader.loadWavData(configData.getPathToFile(), message -> {
+                        statusBar.setText(message); // Report errors on status bar.
+                        return null;
+                    });
+            maybeWavData.ifPresent(data -> {
+                wavData = data;
+                wavLengthMs = data.getLengthMs();
+            });
         }
-        double msPerSample = wavData.getLengthMs() / wavData.getSamples().length;
+        return Optional.ofNullable(wavData);
+    }
 
-        // Populate frequency chart data.
+    private void populateFrqValues(File wavFile, int totalWidth) {
         String wavName = wavFile.getName();
         String frqName = wavFile.getName().substring(0, wavName.length() - 4) + "_wav.frq";
         File frqFile = wavFile.getParentFile().toPath().resolve(frqName).toFile();
@@ -464,20 +473,97 @@ public class LyricConfigEditor {
             statusBar.setText(message); // Read frq data and report output on status bar.
             return null;
         });
-        // Don't bother populating frq data if there is no wav data.
-        if (frqData.isPresent()) {
-            frqSamples.clear();
-            double avgFreq = frqData.get().getAverageFreq();
-            double msPerFrqValue = frqData.get().getSamplesPerFreqValue() * msPerSample;
-            double currentTimeMs = msPerFrqValue / 2; // Data point is halfway through frq value.
-            for (double frqValue : frqData.get().getFrequencies()) {
-                // Scale to a value of [-10, 10] to make a good logistic function input.
-                double scaledFrq = (frqValue - avgFreq) * 10 / avgFreq;
-                // Apply logistic function to enhance central values.
-                double squashedFrq = (2.0 / (1.0 + Math.exp(-scaledFrq)));
-                frqSamples.add(new Data<>(currentTimeMs, squashedFrq - 1));
-                currentTimeMs += msPerFrqValue;
+        if (frqData.isEmpty() || frqData.get().getFrequencies().length == 0) {
+            return;
+        }
+        double[] frequencies = frqData.get().getFrequencies();
+        double avgFreq = frqData.get().getAverageFreq();
+        double msPerFrqValue = wavLengthMs / frequencies.length;
+
+        // Average all frq values that land on the same pixel column.
+        double[] columnSums = new double[totalWidth];
+        int[] columnCounts = new int[totalWidth];
+        double currentTimeMs = msPerFrqValue / 2; // Data point is halfway through frq value.
+        for (double frqValue : frequencies) {
+            int column = Math.min((int) (currentTimeMs * SCALE_X), totalWidth - 1);
+            // Scale to a value of [-10, 10] to make a good logistic function input.
+            double scaledFrq = (frqValue - avgFreq) * 10 / avgFreq;
+            // Apply logistic function to enhance central values.
+            double squashedFrq = (2.0 / (1.0 + Math.exp(-scaledFrq)));
+            columnSums[column] += squashedFrq - 1;
+            columnCounts[column]++;
+            currentTimeMs += msPerFrqValue;
+        }
+        // Stored as x, y pairs.
+        double[] points = new double[totalWidth * 2];
+        int numPoints = 0;
+        for (int column = 0; column < totalWidth; column++) {
+            if (columnCounts[column] > 0) {
+                points[numPoints * 2] = column + 0.5;
+                points[numPoints * 2 + 1] = columnSums[column] / columnCounts[column];
+                numPoints++;
+            }
+        }
+        frqPoints = Arrays.copyOf(points, numPoints * 2);
+    }
+
+    /** Draws the waveform and frequency curve with the colors of the current theme. */
+    public void redrawWaveform() {
+        if (peaks == null || waveformTiles.isEmpty()) {
+            return;
+        }
+        Map<String, Color> colorMap = themeManager.getCurrentTheme().get().getColorMap();
+        Color waveformColor = colorMap.getOrDefault("WAVEFORM_LINE", Color.ROYALBLUE);
+        Color frqColor = colorMap.getOrDefault("FRQ_LINE", Color.CRIMSON);
+        Color textColor = colorMap.getOrDefault("LYRIC_CONFIG_TEXT", Color.BLACK);
+
+        int totalWidth = (int) Math.ceil(wavLengthMs * SCALE_X);
+        float[] columnMins = new float[totalWidth];
+        float[] columnMaxes = new float[totalWidth];
+        peaks.getColumns(columnMins, columnMaxes);
+        double halfHeight = HEIGHT / 2.0;
+
+        for (Canvas tile : waveformTiles) {
+            int tileX = (int) tile.getLayoutX();
+            int tileWidth = (int) tile.getWidth();
+            GraphicsContext gc = tile.getGraphicsContext2D();
+            gc.clearRect(0, 0, tileWidth, HEIGHT);
+            gc.setFill(waveformColor);
+            for (int x = 0; x < tileWidth; x++) {
+                double top = halfHeight * (1 - columnMaxes[tileX + x]);
+                double bottom = halfHeight * (1 - columnMins[tileX + x]);
+                gc.fillRect(x, top, 1, Math.max(1, bottom - top));
+            }
+            gc.fillRect(0, halfHeight, tileWidth, 1); // Zero line.
+
+            // Time labels, one every 100 ms.
+            gc.setFill(textColor);
+            gc.setTextAlign(TextAlignment.CENTER);
+            gc.setTextBaseline(VPos.TOP);
+            for (int ms = 100; ms * SCALE_X < totalWidth; ms += 100) {
+                double labelX = ms * SCALE_X - tileX;
+                if (labelX > -LABEL_WIDTH && labelX < tileWidth + LABEL_WIDTH) {
+                    gc.fillText(Integer.toString(ms), labelX, 2);
+                }
+            }
+        }
+        for (Canvas tile : frequencyTiles) {
+            int tileX = (int) tile.getLayoutX();
+            GraphicsContext gc = tile.getGraphicsContext2D();
+            gc.clearRect(0, 0, tile.getWidth(), HEIGHT);
+            gc.setStroke(frqColor);
+            gc.setLineWidth(1);
+            gc.beginPath();
+            for (int i = 0; i < frqPoints.length; i += 2) {
+                double x = frqPoints[i] - tileX;
+                double y = halfHeight * (1 - frqPoints[i + 1]);
+                if (i == 0) {
+                    gc.moveTo(x, y);
+                } else {
+                    gc.lineTo(x, y);
+                }
             }
+            gc.stroke();
         }
     }
 
@@ -1,19 +1,21 @@
 package com.utsusynth.utsu.view.voicebank;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
 import com.google.inject.Inject;
 import com.utsusynth.utsu.common.data.WavData;
-import com.utsusynth.utsu.common.utils.Complex;
-import com.utsusynth.utsu.common.utils.FFTUtils;
+import com.utsusynth.utsu.common.utils.RealFFT;
 import com.utsusynth.utsu.common.utils.RoundUtils;
 import com.utsusynth.utsu.files.ThemeManager;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Draws a wave spectrogram for the WAV files of lyrics.
@@ -34,6 +36,8 @@ public class Spectrogram {
      */
     private static final Color DEFAULT_COLOR = Color.DARKGOLDENROD;
 
+    private static final RealFFT FFT = new RealFFT(WAV_WINDOW_SIZE);
+
     private final ThemeManager themeManager;
 
     @Inject
@@ -46,31 +50,34 @@ public class Spectrogram {
         double sampleRate = numSamples / (wavData.getLengthMs() / 1000);
 
         List<Color> colorScale = createColorScale(height);
-        List<Integer> freqFilters = createFreqFilters(height, sampleRate);
+        int[] argbScale = new int[colorScale.size()];
+        for (int i = 0; i < argbScale.length; i++) {
+            argbScale[i] = toArgb(colorScale.get(i));
+        }
+        int[] freqFilters = Ints.toArray(createFreqFilters(height, sampleRate));
 
         int totalNumHops = (numSamples + WAV_HOP_SIZE - WAV_WINDOW_SIZE) / WAV_HOP_SIZE;
+        if (totalNumHops <= 0) {
+            return new WritableImage(1, height);
+        }
 
-        WritableImage spectrogram = new WritableImage(totalNumHops, height);
-        // TODO: Do this for every hop in parallel.
-        for (int hop = 0; hop < totalNumHops; hop++) {
-            double[] window = FFTUtils.hammingWindow(
-                    wavData.getSamples(), hop * WAV_HOP_SIZE, WAV_WINDOW_SIZE);
-            Complex[] frequencies = FFTUtils.fft(FFTUtils.toComplex(window)); // FFT results.
+        // Each hop is one column of pixels, and columns are independent of each other.
+        int[] pixels = new int[totalNumHops * height];
+        IntStream.range(0, totalNumHops).parallel().forEach(hop -> {
+            double[] frequencies = new double[WAV_WINDOW_SIZE / 2 + 1]; // FFT results.
+            FFT.windowedMagnitudes(wavData.getSamples(), hop * WAV_HOP_SIZE, frequencies);
             double[] magnitudes = new double[height]; // Magnitude at each pixel.
             double windowMin = Integer.MAX_VALUE; // Minimum magnitude of any pixel.
             for (int i = 0; i < magnitudes.length; i++) {
-                int startBand = freqFilters.get(i);
-                int endBand = freqFilters.get(i + 2);
+                int startBand = freqFilters[i];
+                int endBand = freqFilters[i + 2];
                 int numBands = endBand - startBand;
                 int halfBands = numBands / 2;
 
                 double maxMagnitude = Integer.MIN_VALUE;
                 for (int band = startBand; band < endBand; band++) {
                     double magnitude;
-                    double fftResult =
-                            Math.sqrt((frequencies[band].getReal() * frequencies[band].getReal() )
-                                    + (frequencies[band].getImaginary()
-                                    * frequencies[band].getImaginary()));
+                    double fftResult = frequencies[band];
                     // Shrink the FFT result by the triangle frequency filter.
                     if (band <= startBand + halfBands) {
                         magnitude = (band - startBand + 1.0) / (halfBands + 1.0) * fftResult;
@@ -97,13 +104,30 @@ public class Spectrogram {
             for (int i = 0; i < magnitudes.length; i++) {
                 int colorIndex = Math.max(0, Math.min(height - 1,
                         RoundUtils.round(magnitudes[i] * height / 100.0)));
-                spectrogram.getPixelWriter().setColor(
-                        hop, height - (i + 1), colorScale.get(colorIndex));
+                pixels[(height - (i + 1)) * totalNumHops + hop] = argbScale[colorIndex];
             }
-        }
+        });
+
+        WritableImage spectrogram = new WritableImage(totalNumHops, height);
+        spectrogram.getPixelWriter().setPixels(
+                0,
+                0,
+                totalNumHops,
+                height,
+                PixelFormat.getIntArgbInstance(),
+                pixels,
+                0,
+                totalNumHops);
         return spectrogram;
     }
 
+    private static int toArgb(Color color) {
+        return (int) Math.round(color.getOpacity() * 255) << 24
+                | (int) Math.round(color.getRed() * 255) << 16
+                | (int) Math.round(color.getGreen() * 255) << 8
+                | (int) Math.round(color.getBlue() * 255);
+    }
+
     private List<Color> createColorScale(int numColors) {
         Map<String, Color> colorMap = themeManager.getCurrentTheme().get().getColorMap();
         Color color = colorMap.getOrDefault("SPECTROGRAM", DEFAULT_COLOR);
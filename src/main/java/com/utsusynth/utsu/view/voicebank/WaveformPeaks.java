@@ -0,0 +1,113 @@
+package com.utsusynth.utsu.view.voicebank;
+
+/**
+ * Minimum and maximum sample values of a wav file at several zoom levels, so that its waveform
+ * can be drawn at any width without reading every sample again. Each level has blocks twice as
+ * long as the level before it.
+ */
+class WaveformPeaks {
+    private static final int BASE_BLOCK_SIZE = 16; // Samples per block in the finest level.
+
+    private final double lengthMs;
+    private final int numSamples;
+    private final float[][] mins; // Indexed by level, then by block.
+    private final float[][] maxes; // Indexed by level, then by block.
+
+    WaveformPeaks(float[] samples, double lengthMs) {
+        this.lengthMs = lengthMs;
+        this.numSamples = samples.length;
+
+        int numLevels = 1;
+        for (int blocks = numBlocks(BASE_BLOCK_SIZE); blocks > 1; blocks = (blocks + 1) / 2) {
+            numLevels++;
+        }
+        mins = new float[numLevels][];
+        maxes = new float[numLevels][];
+
+        // Finest level comes straight from the samples.
+        int numBaseBlocks = numBlocks(BASE_BLOCK_SIZE);
+        mins[0] = new float[numBaseBlocks];
+        maxes[0] = new float[numBaseBlocks];
+        for (int block = 0; block < numBaseBlocks && numSamples > 0; block++) {
+            int start = block * BASE_BLOCK_SIZE;
+            int end = Math.min(numSamples, start + BASE_BLOCK_SIZE);
+            float min = samples[start];
+            float max = samples[start];
+            for (int i = start + 1; i < end; i++) {
+                min = Math.min(min, samples[i]);
+                max = Math.max(max, samples[i]);
+            }
+            mins[0][block] = min;
+            maxes[0][block] = max;
+        }
+        // Each coarser level merges pairs of blocks from the level below.
+        for (int level = 1; level < numLevels; level++) {
+            float[] prevMins = mins[level - 1];
+            float[] prevMaxes = maxes[level - 1];
+            int numLevelBlocks = (prevMins.length + 1) / 2;
+            mins[level] = new float[numLevelBlocks];
+            maxes[level] = new float[numLevelBlocks];
+            for (int block = 0; block < numLevelBlocks; block++) {
+                int left = block * 2;
+                int right = Math.min(left + 1, prevMins.length - 1);
+                mins[level][block] = Math.min(prevMins[left], prevMins[right]);
+                maxes[level][block] = Math.max(prevMaxes[left], prevMaxes[right]);
+            }
+        }
+    }
+
+    double getLengthMs() {
+        return lengthMs;
+    }
+
+    /** Level with the longest blocks that still fit within the given number of samples. */
+    int getLevel(double samplesPerColumn) {
+        int level = 0;
+        while (level + 1 < mins.length && blockSize(level + 1) <= samplesPerColumn) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Splits the waveform into columns of equal length and finds the lowest and highest sample
+     * value of each one.
+     *
+     * @param columnMins Filled with the minimum of each column. Its length is the column count.
+     * @param columnMaxes Filled with the maximum of each column.
+     */
+    void getColumns(float[] columnMins, float[] columnMaxes) {
+        int numColumns = columnMins.length;
+        if (numSamples == 0 || numColumns == 0) {
+            return;
+        }
+        double samplesPerColumn = (double) numSamples / numColumns;
+        int level = getLevel(samplesPerColumn);
+        int blockSize = blockSize(level);
+        float[] levelMins = mins[level];
+        float[] levelMaxes = maxes[level];
+        for (int column = 0; column < numColumns; column++) {
+            int startSample = (int) (column * samplesPerColumn);
+            int endSample = (int) Math.ceil((column + 1) * samplesPerColumn);
+            int startBlock = Math.min(startSample / blockSize, levelMins.length - 1);
+            int endBlock = Math.max(startBlock + 1, (endSample + blockSize - 1) / blockSize);
+            endBlock = Math.min(endBlock, levelMins.length);
+            float min = levelMins[startBlock];
+            float max = levelMaxes[startBlock];
+            for (int block = startBlock + 1; block < endBlock; block++) {
+                min = Math.min(min, levelMins[block]);
+                max = Math.max(max, levelMaxes[block]);
+            }
+            columnMins[column] = min;
+            columnMaxes[column] = max;
+        }
+    }
+
+    private int numBlocks(int blockSize) {
+        return Math.max(1, (numSamples + blockSize - 1) / blockSize);
+    }
+
+    private static int blockSize(int level) {
+        return BASE_BLOCK_SIZE << level;
+    }
+}
@@ -0,0 +1,39 @@
+package com.utsusynth.utsu.common.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link RealFFT}. */
+public class RealFFTTest {
+  @Test
+  public void matchesDiscreteFourierTransform() {
+    int size = 64;
+    float[] signal = new float[size * 3];
+    Random random = new Random(42);
+    for (int i = 0; i < signal.length; i++) {
+      signal[i] = random.nextFloat() * 2 - 1;
+    }
+    RealFFT fft = new RealFFT(size);
+    double[] magnitudes = new double[size / 2 + 1];
+    fft.windowedMagnitudes(signal, size, magnitudes);
+
+    for (int k = 0; k <= size / 2; k++) {
+      double real = 0;
+      double imaginary = 0;
+      for (int i = 0; i < size; i++) {
+        double windowed = signal[size + i] * (0.54 - 0.46 * Math.cos(2.0 * i * Math.PI / size));
+        real += windowed * Math.cos(-2 * Math.PI * k * i / size);
+        imaginary += windowed * Math.sin(-2 * Math.PI * k * i / size);
+      }
+      assertEquals(Math.sqrt(real * real + imaginary * imaginary), magnitudes[k], 1e-9);
+    }
+  }
+
+  @Test
+  public void rejectsSizesThatAreNotPowersOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> new RealFFT(1000));
+  }
+}
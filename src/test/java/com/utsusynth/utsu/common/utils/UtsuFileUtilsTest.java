@@ -0,0 +1,74 @@
+package com.utsusynth.utsu.common.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link UtsuFileUtils}. */
+public class UtsuFileUtilsTest {
+  private static final Charset SJIS = Charset.forName("SJIS");
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void guessesCharsetFromStartOfFile() throws IOException {
+    File utf8File = write("utf8.ust", "[#0000]\nLyric=あ\n".getBytes(StandardCharsets.UTF_8));
+    assertEquals("UTF-8", UtsuFileUtils.guessCharset(utf8File));
+    File sjisFile = write("sjis.ust", "[#0000]\nLyric=あ\n".getBytes(SJIS));
+    assertEquals("SJIS", UtsuFileUtils.guessCharset(sjisFile));
+
+    // A character cut off at the end of the sniffed bytes doesn't count as invalid.
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("[#".getBytes(StandardCharsets.US_ASCII)); // Leaves 2 bytes of a character.
+    for (int i = 0; i < 64 * 1024; i++) {
+      bytes.write("あ".getBytes(StandardCharsets.UTF_8));
+    }
+    assertEquals("UTF-8", UtsuFileUtils.guessCharset(write("long.ust", bytes.toByteArray())));
+  }
+
+  @Test
+  public void reportsInvalidUtf8AfterSniffedBytes() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write(0xEF);
+    bytes.write(0xBB);
+    bytes.write(0xBF); // Byte order mark.
+    for (int i = 0; i < 10000; i++) {
+      bytes.write("[#0000]\nLyric=a\n".getBytes(StandardCharsets.US_ASCII));
+    }
+    bytes.write("Lyric=あ\n".getBytes(SJIS));
+    File file = write("mixed.ust", bytes.toByteArray());
+    assertEquals("UTF-8", UtsuFileUtils.guessCharset(file));
+
+    try (BufferedReader reader = UtsuFileUtils.openConfigFile(file, "UTF-8")) {
+      assertEquals("[#0000]", reader.readLine());
+      assertThrows(CharacterCodingException.class, () -> {
+        while (reader.readLine() != null) {}
+      });
+    }
+    try (BufferedReader reader = UtsuFileUtils.openConfigFile(file, "SJIS")) {
+      String lastLine = null;
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lastLine = line;
+      }
+      assertEquals("Lyric=あ", lastLine);
+    }
+  }
+
+  private File write(String name, byte[] contents) throws IOException {
+    File file = tempDir.resolve(name).toFile();
+    Files.write(file.toPath(), contents);
+    return file;
+  }
+}
@@ -0,0 +1,55 @@
+package com.utsusynth.utsu.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.data.FrequencyData;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link FrqAnalyzer}. */
+public class FrqAnalyzerTest {
+  @Test
+  public void findsPitchOfVoicedSections() {
+    // Half a second of silence, then half a second of a 220 Hz tone with a few overtones.
+    float[] samples = new float[44100];
+    for (int i = 22050; i < samples.length; i++) {
+      double phase = 2 * Math.PI * 220 * i / 44100;
+      samples[i] =
+          (float) (0.4 * Math.sin(phase) + 0.2 * Math.sin(2 * phase) + 0.1 * Math.sin(3 * phase));
+    }
+    FrequencyData frqData = FrqAnalyzer.analyze(samples, 44100, 256);
+
+    assertEquals(173, frqData.getFrequencies().length);
+    assertEquals(0, frqData.getFrequencies()[10]);
+    assertEquals(0, frqData.getAmplitudes()[10]);
+    for (int block = 90; block < 173; block++) {
+      assertEquals(220, frqData.getFrequencies()[block], 2);
+      assertTrue(frqData.getAmplitudes()[block] > 1000);
+    }
+    assertEquals(220, frqData.getAverageFreq(), 2);
+  }
+
+  @Test
+  public void writesFrqFilesTheReaderUnderstands() throws IOException {
+    File frqFile = File.createTempFile("utsu_test", "_wav.frq");
+    frqFile.deleteOnExit();
+    FrequencyData frqData =
+        new FrequencyData(220, 256, new double[] {0, 219.5, 220.5}, new double[] {0, 1500, 1400});
+    assertTrue(new SoundFileWriter().writeFrqData(frqData, frqFile));
+
+    Optional<FrequencyData> readData =
+        new SoundFileReader(new SampleBufferPool()).loadFrqData(frqFile, message -> null);
+    assertTrue(readData.isPresent());
+    assertEquals(220, readData.get().getAverageFreq());
+    assertEquals(256, readData.get().getSamplesPerFreqValue());
+    assertArrayEquals(frqData.getFrequencies(), readData.get().getFrequencies());
+    assertArrayEquals(frqData.getAmplitudes(), readData.get().getAmplitudes());
+  }
+}
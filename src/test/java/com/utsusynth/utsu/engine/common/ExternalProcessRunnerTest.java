@@ -0,0 +1,98 @@
+package com.utsusynth.utsu.engine.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link ExternalProcessRunner}. */
+public class ExternalProcessRunnerTest {
+  private static final String JAVA =
+      new File(System.getProperty("java.home"), "bin/java").getAbsolutePath();
+  // Prints some lines, optionally sleeps, then exits with the given code.
+  private static final String CHILD_SOURCE = String.join("\n",
+      "public class Child {",
+      "  public static void main(String[] args) throws Exception {",
+      "    for (int i = 0; i < Integer.parseInt(args[1]); i++) {",
+      "      System.out.println(\"Line \" + i + \" of output that fills the pipe.\");",
+      "    }",
+      "    Thread.sleep(Long.parseLong(args[2]));",
+      "    System.exit(Integer.parseInt(args[0]));",
+      "  }",
+      "}");
+
+  @TempDir
+  Path tempDir;
+  private String childPath;
+
+  @BeforeEach
+  public void writeChild() throws IOException {
+    Path child = tempDir.resolve("Child.java");
+    Files.write(child, CHILD_SOURCE.getBytes(StandardCharsets.UTF_8));
+    childPath = child.toString();
+  }
+
+  @Test
+  public void returnsExitCode() {
+    ExternalProcessRunner runner = new ExternalProcessRunner(1);
+    ProcessTiming timing = runner.runProcess(JAVA, childPath, "3", "0", "0");
+    assertTrue(timing.wasRun());
+    assertEquals(3, timing.getExitCode());
+    assertTrue(runner.takeTimingSummary().get().startsWith("1 processes"));
+    // Summary starts over once it has been taken.
+    assertTrue(runner.takeTimingSummary().isEmpty());
+  }
+
+  @Test
+  public void drainsOutput() {
+    // Would never exit if nothing read its output, since the pipe would fill up.
+    ProcessTiming timing = new ExternalProcessRunner(1).runProcess(
+        JAVA, childPath, "0", "100000", "0");
+    assertEquals(0, timing.getExitCode());
+  }
+
+  @Test
+  public void destroysProcessWhenInterrupted() throws Exception {
+    ExternalProcessRunner runner = new ExternalProcessRunner(1);
+    AtomicReference<ProcessTiming> result = new AtomicReference<>();
+    AtomicBoolean stillInterrupted = new AtomicBoolean(false);
+    Thread thread = new Thread(() -> {
+      result.set(runner.runProcess(JAVA, childPath, "0", "0", "600000"));
+      stillInterrupted.set(Thread.currentThread().isInterrupted());
+    });
+    thread.start();
+    ProcessHandle child = waitForChild();
+    thread.interrupt();
+    thread.join(60000);
+
+    assertFalse(thread.isAlive());
+    assertTrue(result.get().wasRun());
+    assertEquals(-1, result.get().getExitCode());
+    assertTrue(stillInterrupted.get());
+    child.onExit().get(60, TimeUnit.SECONDS);
+    assertFalse(child.isAlive());
+  }
+
+  private static ProcessHandle waitForChild() throws InterruptedException {
+    for (int i = 0; i < 600; i++) {
+      Optional<ProcessHandle> child = ProcessHandle.current().children().findFirst();
+      if (child.isPresent()) {
+        return child.get();
+      }
+      Thread.sleep(100);
+    }
+    throw new AssertionError("Child process never started.");
+  }
+}
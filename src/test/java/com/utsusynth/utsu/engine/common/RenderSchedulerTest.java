@@ -0,0 +1,55 @@
+package com.utsusynth.utsu.engine.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link RenderScheduler}. */
+public class RenderSchedulerTest {
+  @Test
+  public void runsUrgentTasksFirst() throws Exception {
+    RenderScheduler scheduler = new RenderScheduler(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    scheduler.startJob(Priority.EXPORT).submit(() -> {
+      blocker.await(); // Keep the only thread busy while the other tasks queue up.
+      return null;
+    });
+
+    List<String> order = new CopyOnWriteArrayList<>();
+    RenderJob export = scheduler.startJob(Priority.EXPORT);
+    RenderJob playback = scheduler.startJob(Priority.PLAYBACK);
+    RenderJob preview = scheduler.startJob(Priority.INTERACTIVE);
+    export.submit(() -> order.add("export1"));
+    export.submit(() -> order.add("export2"));
+    playback.submit(() -> order.add("playback"));
+    Future<Boolean> last = preview.submit(() -> order.add("preview"));
+    blocker.countDown();
+
+    last.get();
+    export.submit(() -> true).get(); // Wait for the rest of the queue.
+    assertEquals(List.of("preview", "playback", "export1", "export2"), order);
+  }
+
+  @Test
+  public void skipsCanceledTasks() throws Exception {
+    RenderScheduler scheduler = new RenderScheduler(1);
+    CountDownLatch blocker = new CountDownLatch(1);
+    RenderJob job = scheduler.startJob(Priority.PLAYBACK);
+    job.submit(() -> {
+      blocker.await();
+      return null;
+    });
+    Future<Boolean> queued = job.submit(() -> true);
+    job.cancel();
+    blocker.countDown();
+
+    assertTrue(queued.isCancelled());
+    assertTrue(job.isCanceled());
+  }
+}
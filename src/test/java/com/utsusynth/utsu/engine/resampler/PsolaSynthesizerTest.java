@@ -0,0 +1,73 @@
+package com.utsusynth.utsu.engine.resampler;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PsolaSynthesizer} and the pitch strings fed into it. */
+public class PsolaSynthesizerTest {
+  private static final double SAMPLE_RATE = 44100;
+
+  @Test
+  public void shiftsPitchUpAnOctave() {
+    PsolaSynthesizer synthesizer = makeVoiceSynthesizer(220, 1000);
+    // Play the middle of the sample at its own speed, but at twice its frequency.
+    float[] output = synthesizer.render(
+        (int) SAMPLE_RATE / 2, timeMs -> 250 + timeMs, (timeMs, freq) -> freq * 2);
+    assertEquals(440, estimateFreq(output, 2000, output.length - 2000), 10);
+  }
+
+  @Test
+  public void keepsPitchWhenStretching() {
+    PsolaSynthesizer synthesizer = makeVoiceSynthesizer(220, 200);
+    // Stretch 200ms of sample across a full second.
+    float[] output = synthesizer.render(
+        (int) SAMPLE_RATE, timeMs -> timeMs / 5, (timeMs, freq) -> freq);
+    assertEquals(220, estimateFreq(output, 2000, output.length - 2000), 10);
+  }
+
+  @Test
+  public void decodesPitchStrings() {
+    assertArrayEquals(
+        new int[] {0, 1, -1, 2047, -2048}, UtsuResampler.decodePitchbends("AAAB//f/gA"));
+    assertArrayEquals(new int[] {5, 5, 5, 5, -5}, UtsuResampler.decodePitchbends("AF#3#/7"));
+    assertArrayEquals(new int[0], UtsuResampler.decodePitchbends(""));
+  }
+
+  // Makes a sample with several harmonics, since PSOLA keeps the shape of the spectrum.
+  private static PsolaSynthesizer makeVoiceSynthesizer(double freq, double lengthMs) {
+    float[] samples = new float[(int) (SAMPLE_RATE * lengthMs / 1000)];
+    for (int i = 0; i < samples.length; i++) {
+      for (int harmonic = 1; harmonic <= 10; harmonic++) {
+        samples[i] += 0.05 * Math.sin(2 * Math.PI * freq * harmonic * i / SAMPLE_RATE);
+      }
+    }
+    double[] frequencies = new double[samples.length / 256 + 1];
+    Arrays.fill(frequencies, freq);
+    return new PsolaSynthesizer(samples, SAMPLE_RATE, frequencies, 256, freq);
+  }
+
+  // Finds the shortest period between 1ms and 10ms that the samples (nearly) repeat at.
+  private static double estimateFreq(float[] samples, int start, int end) {
+    int minLag = (int) (SAMPLE_RATE / 1000);
+    double[] correlations = new double[(int) (SAMPLE_RATE / 100) + 1];
+    double maxCorrelation = 0;
+    for (int lag = minLag; lag < correlations.length; lag++) {
+      for (int i = start; i + lag < end; i++) {
+        correlations[lag] += samples[i] * samples[i + lag];
+      }
+      correlations[lag] /= end - start - lag;
+      maxCorrelation = Math.max(maxCorrelation, correlations[lag]);
+    }
+    for (int lag = minLag + 1; lag < correlations.length - 1; lag++) {
+      boolean isPeak = correlations[lag] >= correlations[lag - 1]
+          && correlations[lag] >= correlations[lag + 1];
+      if (isPeak && correlations[lag] > 0.9 * maxCorrelation) {
+        return SAMPLE_RATE / lag;
+      }
+    }
+    return 0;
+  }
+}
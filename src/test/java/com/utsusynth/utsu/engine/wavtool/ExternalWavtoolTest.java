@@ -0,0 +1,70 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.data.SampleBufferPool;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.engine.common.ExternalProcessRunner;
+import com.utsusynth.utsu.engine.common.ProcessTiming;
+import com.utsusynth.utsu.engine.playback.SampleRingBuffer;
+import com.utsusynth.utsu.files.CacheManager;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link ExternalWavtool}. */
+public class ExternalWavtoolTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void streamsOutputFileOnceRenderIsDone() throws InterruptedException {
+    assertTrue(tempDir.resolve("cache").toFile().mkdirs());
+    SoundFileWriter writer = new SoundFileWriter();
+    // Stands in for the output of the external wavtool.
+    File outputFile = tempDir.resolve("output.wav").toFile();
+    float[] samples = new float[100];
+    Arrays.fill(samples, 0.5f);
+    writer.writeWavData(new WavData(100 / 44.1, samples), outputFile);
+
+    NoOpRunner runner = new NoOpRunner();
+    ExternalWavtool wavtool = new ExternalWavtool(
+        runner,
+        new CacheManager(tempDir.toFile()),
+        new SoundFileReader(new SampleBufferPool()),
+        writer);
+    wavtool.setWavtoolPath(new File("wavtool"));
+    assertTrue(wavtool.supportsStreaming());
+
+    SampleRingBuffer buffer = new SampleRingBuffer(1000);
+    wavtool.startStreamingRender(0, buffer);
+    wavtool.addSilence(10, 0, outputFile, true);
+    assertEquals(1, runner.numProcesses);
+
+    float[] streamed = new float[1000];
+    assertEquals(100, buffer.read(streamed, 0, 1000));
+    assertEquals(0.5, streamed[0], 0.001);
+    assertEquals(0.5, streamed[99], 0.001);
+    assertEquals(-1, buffer.read(streamed, 0, 1000)); // Buffer was closed.
+  }
+
+  /** Runner that only counts the processes it is asked to run. */
+  private static class NoOpRunner extends ExternalProcessRunner {
+    private int numProcesses = 0;
+
+    private NoOpRunner() {
+      super(1);
+    }
+
+    @Override
+    public ProcessTiming runProcess(String... args) {
+      numProcesses++;
+      return null;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link FragmentMixer}. */
+public class FragmentMixerTest {
+  private float[] mixed = new float[0];
+
+  @Test
+  public void addsOverlappingSamples() throws InterruptedException {
+    FragmentMixer mixer = new FragmentMixer(this::append);
+    mixer.add(new float[] {1, 1, 1, 1}, 0, 4);
+    mixer.add(new float[] {2, 2, 2}, 2, 3);
+    mixer.add(new float[] {3}, 0, 1);
+    mixer.finish();
+    assertArrayEquals(new float[] {1, 1, 3, 3, 2, 3}, mixed);
+  }
+
+  @Test
+  public void emitsSamplesBeforeFinishing() throws InterruptedException {
+    FragmentMixer mixer = new FragmentMixer(this::append);
+    mixer.add(new float[] {1, 1, 1}, 0, 3);
+    mixer.add(new float[] {2, 2}, 1, 2);
+    // Only the samples that can no longer be overlapped have been emitted.
+    assertArrayEquals(new float[] {1, 1}, mixed);
+    mixer.finish();
+    assertArrayEquals(new float[] {1, 1, 3, 2}, mixed);
+  }
+
+  @Test
+  public void emitsSilenceWithoutStoringIt() throws InterruptedException {
+    FragmentMixer mixer = new FragmentMixer(this::append);
+    mixer.add(new float[] {1, 1}, 0, 2);
+    mixer.addSilence(3);
+    // Silence is never overlapped, so everything before it is finished too.
+    assertArrayEquals(new float[] {1, 1, 0, 0, 0}, mixed);
+    mixer.add(new float[] {2, 2}, 1, 2);
+    mixer.finish();
+    assertArrayEquals(new float[] {1, 1, 0, 0, 0, 2, 2}, mixed);
+  }
+
+  private void append(float[] samples, int offset, int length) {
+    int oldLength = mixed.length;
+    mixed = Arrays.copyOf(mixed, oldLength + length);
+    System.arraycopy(samples, offset, mixed, oldLength, length);
+  }
+}
@@ -0,0 +1,56 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link MixLayout}. */
+public class MixLayoutTest {
+  @Test
+  public void placesFragmentsLikeTheMixer() {
+    MixLayout layout = new MixLayout();
+    assertEquals(0, layout.addNote("a", 0, 4).getStart());
+    assertEquals(2, layout.addNote("b", 2, 3).getStart());
+    // Overlap can't reach past a silence.
+    assertEquals(5, layout.addSilence(3).getStart());
+    assertEquals(8, layout.addNote("c", 2, 2).getStart());
+  }
+
+  @Test
+  public void findsOnlyChangedRegions() {
+    MixLayout previous = new MixLayout();
+    previous.addNote("a", 0, 10);
+    previous.addNote("b", 2, 10);
+    previous.addNote("c", 2, 10);
+
+    MixLayout current = new MixLayout();
+    current.addNote("a", 0, 10);
+    current.addNote("b2", 2, 10);
+    current.addNote("c", 2, 10);
+
+    List<int[]> regions = current.findChangedRegions(previous, 26, 26);
+    assertEquals(1, regions.size());
+    assertArrayEquals(new int[] {8, 18}, regions.get(0));
+  }
+
+  @Test
+  public void treatsNewSamplesAndUnknownFragmentsAsChanged() {
+    MixLayout previous = new MixLayout();
+    previous.addNote(null, 0, 5);
+    previous.addNote("a", 0, 5);
+
+    MixLayout current = new MixLayout();
+    current.addNote(null, 0, 5);
+    current.addNote("a", 0, 5);
+    current.addNote("b", 0, 5);
+
+    List<int[]> regions = current.findChangedRegions(previous, 10, 15);
+    assertEquals(2, regions.size());
+    assertArrayEquals(new int[] {0, 5}, regions.get(0));
+    assertArrayEquals(new int[] {10, 15}, regions.get(1));
+    assertTrue(MixLayout.mergeRegions(List.of(new int[] {3, 1}), 5).isEmpty());
+  }
+}
@@ -0,0 +1,95 @@
+package com.utsusynth.utsu.engine.wavtool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.StatusBar;
+import com.utsusynth.utsu.common.data.SampleBuffer;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
+import com.utsusynth.utsu.common.data.WavData;
+import com.utsusynth.utsu.engine.common.RenderScheduler;
+import com.utsusynth.utsu.engine.common.RenderScheduler.Priority;
+import com.utsusynth.utsu.files.voicebank.SoundFileReader;
+import com.utsusynth.utsu.files.voicebank.SoundFileWriter;
+import com.utsusynth.utsu.model.song.Note;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link UtsuWavtool}. */
+public class UtsuWavtoolTest {
+  private static final int NUM_SAMPLES = 4410; // 100 ms.
+
+  @TempDir
+  Path tempDir;
+
+  private final SampleBufferPool pool = new SampleBufferPool();
+  private final SoundFileReader reader = new SoundFileReader(pool);
+  private final CountingWriter writer = new CountingWriter();
+  private final UtsuWavtool wavtool = new UtsuWavtool(
+      new SilentStatusBar(), new RenderScheduler(2), pool, reader, writer);
+
+  @Test
+  public void exportAfterPlaybackIsWrittenInChunks() {
+    File inputFile = tempDir.resolve("note.wav").toFile();
+    File playbackFile = tempDir.resolve("playback.wav").toFile();
+    File exportFile = tempDir.resolve("export.wav").toFile();
+
+    render(Priority.PLAYBACK, inputFile, 0.5f, playbackFile);
+    assertTrue(wavtool.hasReusableRender(0));
+
+    render(Priority.EXPORT, inputFile, 0.25f, exportFile);
+    // Only re-mixes write a whole song at once.
+    assertEquals(0, writer.numWholeSongWrites);
+    float playbackSample = readMiddleSample(playbackFile);
+    assertEquals(playbackSample / 2, readMiddleSample(exportFile), 0.001);
+
+    // The next playback still re-mixes against the previous playback, not the export.
+    File nextPlaybackFile = tempDir.resolve("next.wav").toFile();
+    render(Priority.PLAYBACK, inputFile, 0.5f, nextPlaybackFile);
+    assertEquals(1, writer.numWholeSongWrites);
+    assertEquals(playbackSample, readMiddleSample(nextPlaybackFile), 0.001);
+  }
+
+  private void render(Priority priority, File inputFile, float value, File outputFile) {
+    SampleBuffer samples = pool.acquire(NUM_SAMPLES);
+    for (int i = 0; i < NUM_SAMPLES; i++) {
+      samples.getSamples()[i] = value;
+    }
+    samples.setLength(NUM_SAMPLES);
+    wavtool.startRender(0, priority);
+    wavtool.addNewNote(
+        null, new Note(), 100, 0, Optional.of(samples), inputFile, outputFile, false, true);
+  }
+
+  private float readMiddleSample(File wavFile) {
+    SampleBuffer samples = reader.loadSamples(wavFile).get();
+    assertEquals(NUM_SAMPLES, samples.getLength());
+    float middle = samples.getSamples()[NUM_SAMPLES / 2];
+    samples.release();
+    return middle;
+  }
+
+  /** Counts writes of a whole song at once. */
+  private static class CountingWriter extends SoundFileWriter {
+    private int numWholeSongWrites = 0;
+
+    @Override
+    public void writeWavData(WavData wavData, File wavFile) {
+      numWholeSongWrites++;
+      super.writeWavData(wavData, wavFile);
+    }
+  }
+
+  /** Status bar that doesn't need a running JavaFX application. */
+  private static class SilentStatusBar extends StatusBar {
+    private SilentStatusBar() {
+      super(null);
+    }
+
+    @Override
+    public void setProgressAsync(double progress) {}
+  }
+}
@@ -0,0 +1,36 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.data.SampleBuffer;
+import com.utsusynth.utsu.common.data.SampleBufferPool;
+import com.utsusynth.utsu.common.data.WavData;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link SoundFileReader}. */
+public class SoundFileReaderTest {
+  @Test
+  public void loadSamplesMatchesLoadWavData() throws IOException {
+    float[] samples = new float[1000];
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = (float) (Math.sin(i / 10.0) * 0.5);
+    }
+    File wavFile = File.createTempFile("utsu_test", ".wav");
+    wavFile.deleteOnExit();
+    new SoundFileWriter().writeWavData(new WavData(1000 / 44.1, samples), wavFile);
+
+    SoundFileReader reader = new SoundFileReader(new SampleBufferPool());
+    Optional<WavData> wavData = reader.loadWavData(wavFile, message -> null);
+    Optional<SampleBuffer> buffer = reader.loadSamples(wavFile);
+    assertTrue(wavData.isPresent());
+    assertTrue(buffer.isPresent());
+    assertEquals(samples.length, buffer.get().getLength());
+    for (int i = 0; i < samples.length; i++) {
+      assertEquals(wavData.get().getSamples()[i], buffer.get().getSamples()[i], 1e-6);
+    }
+  }
+}
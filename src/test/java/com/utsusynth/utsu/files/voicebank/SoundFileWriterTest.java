@@ -0,0 +1,40 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.data.FrequencyData;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link SoundFileWriter}. */
+public class SoundFileWriterTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void interruptedFrqWriteKeepsPreviousFile() throws IOException {
+    SoundFileWriter writer = new SoundFileWriter();
+    File frqFile = tempDir.resolve("a_wav.frq").toFile();
+    assertTrue(writer.writeFrqData(frequencyData(10), frqFile));
+    byte[] previous = Files.readAllBytes(frqFile.toPath());
+
+    Thread.currentThread().interrupt();
+    try {
+      assertFalse(writer.writeFrqData(frequencyData(100000), frqFile));
+    } finally {
+      Thread.interrupted(); // Don't leave this thread interrupted for other tests.
+    }
+    assertArrayEquals(previous, Files.readAllBytes(frqFile.toPath()));
+    assertArrayEquals(new String[] {"a_wav.frq"}, tempDir.toFile().list());
+  }
+
+  private static FrequencyData frequencyData(int numValues) {
+    return new FrequencyData(440, 256, new double[numValues], new double[numValues]);
+  }
+}
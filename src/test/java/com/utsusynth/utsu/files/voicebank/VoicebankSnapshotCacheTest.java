@@ -0,0 +1,57 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link VoicebankSnapshotCache}. */
+public class VoicebankSnapshotCacheTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void savesAndLoadsParsedOtoFiles() throws IOException {
+    File voicebank = tempDir.resolve("voicebank").toFile();
+    assertTrue(voicebank.mkdirs());
+    File otoFile = new File(voicebank, "oto.ini");
+    Files.write(otoFile.toPath(), "a.wav=a,1,2,3,4,5\n".getBytes(StandardCharsets.UTF_8));
+    ParsedOtoFile parsed = new ParsedOtoFile(
+        otoFile,
+        otoFile.length(),
+        ImmutableMap.of(otoFile.getAbsolutePath(), otoFile.lastModified()),
+        ImmutableList.of(
+            new ParsedOtoFile.Alias("a.wav", "a", new String[] {"1", "2", "3", "4", "5"}, true)));
+
+    VoicebankSnapshotCache cache = new VoicebankSnapshotCache(tempDir.toFile());
+    assertTrue(cache.load(voicebank).isEmpty());
+    cache.save(voicebank, List.of(parsed));
+
+    Map<String, ParsedOtoFile> snapshot = cache.load(voicebank);
+    assertEquals(1, snapshot.size());
+    ParsedOtoFile loaded = snapshot.get(otoFile.getAbsolutePath());
+    assertTrue(loaded.isUpToDate());
+    ParsedOtoFile.Alias alias = loaded.getAliases().get(0);
+    assertEquals("a.wav", alias.getFileName());
+    assertEquals("a", alias.getLyric());
+    assertArrayEquals(new String[] {"1", "2", "3", "4", "5"}, alias.getConfigValues());
+    assertTrue(alias.hasFrq());
+
+    // Any edit to the oto file makes the snapshot out of date.
+    Files.write(otoFile.toPath(), "a.wav=a,1,2,3,4,6\n".getBytes(StandardCharsets.UTF_8));
+    assertTrue(otoFile.setLastModified(otoFile.lastModified() + 2000));
+    assertFalse(loaded.isUpToDate());
+  }
+}
@@ -0,0 +1,55 @@
+package com.utsusynth.utsu.files.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.utsusynth.utsu.common.data.SampleBufferPool;
+import com.utsusynth.utsu.common.data.WavData;
+import java.io.File;
+import java.io.IOException;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link WavFileWriter}. */
+public class WavFileWriterTest {
+  @Test
+  public void writesReadableFileInChunks() throws IOException {
+    File wavFile = File.createTempFile("utsu_test", ".wav");
+    wavFile.deleteOnExit();
+    float[] samples = new float[50000]; // More than fits in the writer's buffer at once.
+    for (int i = 0; i < samples.length; i++) {
+      samples[i] = (float) Math.sin(i / 10.0) * 0.5f;
+    }
+    try (WavFileWriter writer = WavFileWriter.create(wavFile)) {
+      writer.write(samples, 0, 30000);
+      writer.writeSilence(1000);
+      writer.write(samples, 30000, 20000);
+    }
+    assertEquals(44 + 51000 * 2, wavFile.length());
+
+    Optional<WavData> wavData =
+        new SoundFileReader(new SampleBufferPool()).loadWavData(wavFile, message -> null);
+    assertTrue(wavData.isPresent());
+    assertEquals(51000, wavData.get().getSamples().length);
+    assertEquals(samples[100], wavData.get().getSamples()[100], 1e-4);
+    assertEquals(0, wavData.get().getSamples()[30500]);
+    assertEquals(samples[40000], wavData.get().getSamples()[41000], 1e-4);
+  }
+
+  @Test
+  public void overwritesEverythingAfterOffset() throws IOException {
+    File wavFile = File.createTempFile("utsu_test", ".wav");
+    wavFile.deleteOnExit();
+    try (WavFileWriter writer = WavFileWriter.create(wavFile)) {
+      writer.writeSilence(44100); // One second.
+    }
+    try (WavFileWriter writer = WavFileWriter.overwriteAfter(wavFile, 500)) {
+      writer.write(new float[] {0.5f, 0.5f}, 0, 2);
+    }
+    Optional<WavData> wavData =
+        new SoundFileReader(new SampleBufferPool()).loadWavData(wavFile, message -> null);
+    assertTrue(wavData.isPresent());
+    assertEquals(22052, wavData.get().getSamples().length);
+    assertEquals(0.5, wavData.get().getSamples()[22051], 1e-4);
+  }
+}
@@ -0,0 +1,72 @@
+package com.utsusynth.utsu.model.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.utsusynth.utsu.common.exception.NoteAlreadyExistsException;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link NoteList}. */
+public class NoteListTest {
+  @Test
+  public void insertsIntoLongSongs() throws NoteAlreadyExistsException {
+    NoteList noteList = new NoteList();
+    // Long enough to overflow the stack if insertion walked the list recursively.
+    for (int i = 0; i < 100000; i++) {
+      noteList.insertNote(makeNote(240), i * 480);
+    }
+    noteList.insertNote(makeNote(240), 240 + 480 * 500); // Into a gap in the middle.
+    assertEquals(100001, noteList.getSize());
+    assertThrows(NoteAlreadyExistsException.class, () -> noteList.insertNote(makeNote(240), 0));
+
+    NoteIterator iterator = noteList.boundedIterator(new RegionBounds(480 * 500 + 100, 480 * 502));
+    assertEquals(500, iterator.getCurIndex());
+    iterator.next();
+    assertEquals(480 * 500, iterator.getCurDelta());
+    iterator.next();
+    assertEquals(480 * 500 + 240, iterator.getCurDelta());
+    iterator.next();
+    assertEquals(480 * 501, iterator.getCurDelta());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void skipsGapsBeforeRegion() throws NoteAlreadyExistsException {
+    NoteList noteList = new NoteList();
+    noteList.insertNote(makeNote(100), 0);
+    noteList.insertNote(makeNote(100), 1000);
+    NoteIterator iterator = noteList.boundedIterator(new RegionBounds(500, 2000));
+    assertEquals(1, iterator.getCurIndex());
+    iterator.next();
+    assertEquals(1000, iterator.getCurDelta());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void copiesAreUnchangedByEdits() throws NoteAlreadyExistsException {
+    NoteList noteList = new NoteList();
+    noteList.insertNote(makeNote(480), 0);
+    noteList.insertNote(makeNote(480), 480);
+    NoteList copy = noteList.copy();
+
+    noteList.removeNote(0);
+    noteList.insertNote(makeNote(240), 960);
+    noteList.getNote(480).getNote().setLyric("ka");
+
+    assertEquals(2, copy.getSize());
+    assertEquals("a", copy.getNote(480).getNote().getLyric());
+    assertEquals(0, copy.boundedIterator(new RegionBounds(0, 100)).getCurIndex());
+    assertThrows(
+        NoteAlreadyExistsException.class, () -> copy.insertNote(makeNote(240), 0));
+  }
+
+  private static Note makeNote(int duration) {
+    Note note = new Note();
+    note.setDuration(duration);
+    note.setLength(duration);
+    note.setLyric("a");
+    return note;
+  }
+}
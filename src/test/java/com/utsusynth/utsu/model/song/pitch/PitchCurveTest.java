@@ -0,0 +1,62 @@
+package com.utsusynth.utsu.model.song.pitch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.common.collect.ImmutableList;
+import com.utsusynth.utsu.common.data.PitchbendData;
+import com.utsusynth.utsu.model.song.pitch.portamento.PortamentoFactory;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link PitchCurve}. */
+public class PitchCurveTest {
+  private static final PitchbendData FIRST_NOTE = new PitchbendData(
+      ImmutableList.of(-40.0),
+      ImmutableList.of(80.0),
+      ImmutableList.of(),
+      ImmutableList.of("s"));
+  private static final PitchbendData SECOND_NOTE = new PitchbendData(
+      ImmutableList.of(-20.0),
+      ImmutableList.of(30.0, 20.0),
+      ImmutableList.of(5.0),
+      ImmutableList.of("s", "s"),
+      new int[] {50, 100, 20, 10, 10, 0, 0, 0, 0, 0});
+
+  @Test
+  public void rendersPortamentoAndVibrato() {
+    PitchCurve pitchCurve = new PitchCurve(new PortamentoFactory());
+    pitchCurve.addPitchbends(0, 100, FIRST_NOTE, 60, 62);
+    pitchCurve.addPitchbends(100, 100, SECOND_NOTE, 62, 64);
+    assertEquals(
+        "84#1#849F9R9e9q93+D+Q+c+p+1/C/O/b/n/0AA#7#AAApBTB9CmDQD6DtDhDUDI#3#"
+            + "DIDODTDYDbDcDbDYDTDI#6#",
+        pitchCurve.renderPitchbends(-10, 45, 62));
+    assertEquals("AAAAAAAAAAAAAAAAAAAA#6#", pitchCurve.renderPitchbends(30, 45, 64));
+
+    pitchCurve.removePitchbends(100, 100, SECOND_NOTE);
+    assertEquals(
+        "84#1#849F9R9e9q93+D+Q+c+p+1/C/O/b/n/0AA#37#", pitchCurve.renderPitchbends(-10, 45, 62));
+  }
+
+  @Test
+  public void rendersAgainOnlyWhenPitchbendsChange() {
+    PitchCurve pitchCurve = new PitchCurve(new PortamentoFactory());
+    pitchCurve.addPitchbends(0, 100, FIRST_NOTE, 60, 62);
+    pitchCurve.addPitchbends(100, 100, SECOND_NOTE, 62, 64);
+    String firstRender = pitchCurve.renderPitchbends(-10, 15, 62);
+    String secondRender = pitchCurve.renderPitchbends(15, 45, 64);
+
+    // Replacing a note's pitchbends with the same ones keeps every render.
+    pitchCurve.removePitchbends(100, 100, SECOND_NOTE);
+    pitchCurve.addPitchbends(100, 100, SECOND_NOTE, 62, 64);
+    assertSame(firstRender, pitchCurve.renderPitchbends(-10, 15, 62));
+    assertSame(secondRender, pitchCurve.renderPitchbends(15, 45, 64));
+
+    // Changing the second note only affects renders it reaches into.
+    pitchCurve.removePitchbends(100, 100, SECOND_NOTE);
+    pitchCurve.addPitchbends(100, 100, SECOND_NOTE, 60, 64);
+    assertSame(firstRender, pitchCurve.renderPitchbends(-10, 15, 62));
+    assertNotEquals(secondRender, pitchCurve.renderPitchbends(15, 45, 64));
+  }
+}
@@ -0,0 +1,70 @@
+package com.utsusynth.utsu.model.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.utsusynth.utsu.common.data.LyricConfigData;
+import com.utsusynth.utsu.files.PreferencesManager;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/** Tests for {@link Voicebank}. */
+public class VoicebankTest {
+  @TempDir
+  Path tempDir;
+
+  @Test
+  public void resolvesAliasesAgainAfterLyricsChange() {
+    Voicebank voicebank = createVoicebank();
+    assertTrue(voicebank.getLyricConfig("", "ka", "").isEmpty());
+
+    voicebank.addLyricData(lyricData("- ka"));
+    assertEquals("- ka", voicebank.getLyricConfig("", "ka", "").get().getTrueLyric());
+
+    voicebank.removeLyricConfig("- ka");
+    assertTrue(voicebank.getLyricConfig("", "ka", "").isEmpty());
+  }
+
+  private Voicebank createVoicebank() {
+    PreferencesManager preferencesManager = new PreferencesManager(
+        tempDir.toFile(),
+        DocumentBuilderFactory.newInstance(),
+        TransformerFactory.newInstance(),
+        ImmutableMap.of("guessAlias", "ENABLED"));
+    PresampConfig presampConfig = new PresampConfig(
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashMap<>(),
+        new HashSet<>(),
+        new DisjointLyricSet(),
+        new HashMap<>(),
+        new HashSet<>(),
+        new HashMap<>(),
+        new HashSet<>(),
+        new HashSet<>());
+    return new Voicebank(
+        new LyricConfigMap(),
+        new PitchMap(),
+        new HashSet<>(),
+        null,
+        preferencesManager,
+        presampConfig)
+        .toBuilder()
+        .setPathToVoicebank(tempDir.toFile())
+        .build();
+  }
+
+  private LyricConfigData lyricData(String lyric) {
+    File file = tempDir.resolve("ka.wav").toFile();
+    return new LyricConfigData(file, "", lyric, "ka.wav", "", 0, 0, 0, 0, 0);
+  }
+}
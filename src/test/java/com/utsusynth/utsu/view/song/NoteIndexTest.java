@@ -0,0 +1,53 @@
+package com.utsusynth.utsu.view.song;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.utsusynth.utsu.common.utils.RegionBounds;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link NoteIndex}. */
+public class NoteIndexTest {
+  @Test
+  public void findsNotesInRegion() {
+    NoteIndex<String> index = new NoteIndex<>();
+    index.put(0, 480, 10, "a");
+    index.put(480, 2000, 12, "b");
+    index.put(2480, 240, 10, "c");
+    index.put(5000, 480, 20, "d");
+
+    assertEquals(ImmutableList.of("a", "b"), index.getNotes(new RegionBounds(100, 600)));
+    // A long note that starts well before the region is still found.
+    assertEquals(ImmutableList.of("b"), index.getNotes(new RegionBounds(2000, 2480)));
+    assertEquals(ImmutableList.of(), index.getNotes(new RegionBounds(2720, 5000)));
+    assertEquals(ImmutableList.of(), index.getNotes(RegionBounds.INVALID));
+    assertEquals(
+        ImmutableList.of("a", "b", "c", "d"), index.getNotes(RegionBounds.WHOLE_SONG));
+  }
+
+  @Test
+  public void findsNotesInRows() {
+    NoteIndex<String> index = new NoteIndex<>();
+    index.put(0, 480, 10, "a");
+    index.put(480, 480, 12, "b");
+    index.put(960, 480, 10, "c");
+
+    assertEquals(
+        ImmutableList.of("a", "c"), index.getNotes(RegionBounds.WHOLE_SONG, 9, 11));
+    assertEquals(ImmutableList.of("b"), index.getNotes(new RegionBounds(0, 960), 11, 12));
+  }
+
+  @Test
+  public void updatesAfterRemove() {
+    NoteIndex<String> index = new NoteIndex<>();
+    index.put(0, 480, 10, "a");
+    index.put(480, 5000, 12, "b");
+    index.remove(480);
+    index.put(480, 480, 11, "c");
+
+    assertEquals(ImmutableList.of("c"), index.getNotes(new RegionBounds(600, 6000)));
+    assertEquals(ImmutableList.of(), index.getNotes(RegionBounds.WHOLE_SONG, 12, 12));
+    index.clear();
+    assertEquals(ImmutableList.of(), index.getNotes(RegionBounds.WHOLE_SONG));
+  }
+}
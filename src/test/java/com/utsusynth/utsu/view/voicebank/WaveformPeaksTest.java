@@ -0,0 +1,62 @@
+package com.utsusynth.utsu.view.voicebank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link WaveformPeaks}. */
+public class WaveformPeaksTest {
+  @Test
+  public void columnsMatchSamplesWhenAlignedWithBlocks() {
+    float[] samples = randomSamples(16000);
+    WaveformPeaks peaks = new WaveformPeaks(samples, 1000);
+    float[] mins = new float[125];
+    float[] maxes = new float[125];
+    peaks.getColumns(mins, maxes);
+
+    int samplesPerColumn = samples.length / mins.length;
+    assertEquals(3, peaks.getLevel(samplesPerColumn)); // Blocks of 128 samples.
+    for (int column = 0; column < mins.length; column++) {
+      float min = Float.MAX_VALUE;
+      float max = -Float.MAX_VALUE;
+      for (int i = column * samplesPerColumn; i < (column + 1) * samplesPerColumn; i++) {
+        min = Math.min(min, samples[i]);
+        max = Math.max(max, samples[i]);
+      }
+      assertEquals(min, mins[column]);
+      assertEquals(max, maxes[column]);
+    }
+  }
+
+  @Test
+  public void neverDropsPeaksBetweenColumns() {
+    float[] samples = new float[10007];
+    samples[5003] = 1;
+    samples[7777] = -1;
+    WaveformPeaks peaks = new WaveformPeaks(samples, 227);
+    float[] mins = new float[181];
+    float[] maxes = new float[181];
+    peaks.getColumns(mins, maxes);
+
+    float lowest = 0;
+    float highest = 0;
+    for (int column = 0; column < mins.length; column++) {
+      assertTrue(mins[column] <= maxes[column]);
+      lowest = Math.min(lowest, mins[column]);
+      highest = Math.max(highest, maxes[column]);
+    }
+    assertEquals(-1, lowest);
+    assertEquals(1, highest);
+  }
+
+  private static float[] randomSamples(int numSamples) {
+    Random random = new Random(42);
+    float[] samples = new float[numSamples];
+    for (int i = 0; i < numSamples; i++) {
+      samples[i] = random.nextFloat() * 2 - 1;
+    }
+    return samples;
+  }
+}